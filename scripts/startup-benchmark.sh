@@ -0,0 +1,127 @@
+#!/usr/bin/env bash
+# Time to first parse of a fresh instance in three startup modes:
+#   plain       java -jar on the extracted jar
+#   cds         the same with the AppCDS archive from `mvn -Pcds package`
+#   checkpoint  restored from a CRaC checkpoint taken once models were warm (needs a CRaC JDK)
+# "First parse" is the first answer from the CoreNLP tier that is not degraded, i.e. models are
+# loaded and warm; the mean of the next parses shows how close to peak speed the instance is.
+#
+#   mvn -Pcds -DskipTests package
+#   scripts/startup-benchmark.sh [plain] [cds] [checkpoint]
+#
+# Environment: JAVA (default java), CRAC_JAVA (a CRaC JDK's java, default $JAVA), RUNS (3),
+# PORT (18080), HEAP (1g), NEXT (parses timed after the first, 20), APP_ARGS (extra app options).
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+DIR=target/cds
+JAR=$DIR/payment-nlp-0.1.0.jar
+JAVA=${JAVA:-java}
+CRAC_JAVA=${CRAC_JAVA:-$JAVA}
+RUNS=${RUNS:-3}
+PORT=${PORT:-18080}
+HEAP=${HEAP:-1g}
+NEXT=${NEXT:-20}
+APP_ARGS=${APP_ARGS:-}
+MODES=("$@")
+[ ${#MODES[@]} -gt 0 ] || MODES=(plain cds checkpoint)
+
+if [ ! -f "$JAR" ]; then
+  echo "$JAR not found; build it with: mvn -Pcds -DskipTests package" >&2
+  exit 1
+fi
+
+now_ms() { echo $(($(date +%s%N) / 1000000)); }
+
+# Not settled by the fast tier, so it needs the CoreNLP models; the amount varies to miss the cache
+parse() {
+  curl -s -m 30 -H 'Content-Type: application/json' \
+    -d "{\"text\":\"please send Maria Lopez $1 dollars for the tickets\"}" \
+    "http://localhost:$PORT/api/parse" || true
+}
+
+# Starts "$@" in the background, waits for the first warm parse and prints
+# "<ms to first parse> <mean ms of the next parses>"
+measure() {
+  local log=$1 t0 first body i s total=0 amount=$((RANDOM * 100))
+  shift
+  t0=$(now_ms)
+  "$@" >"$log" 2>&1 &
+  local pid=$!
+  while true; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "instance exited before its first parse, see $log" >&2
+      return 1
+    fi
+    body=$(parse $((amount++)))
+    if [ "$(jq -r 'select(.tier == "corenlp" and .degraded == false) | .tier' <<<"$body" 2>/dev/null)" = corenlp ]; then
+      break
+    fi
+    sleep 0.02
+  done
+  first=$(($(now_ms) - t0))
+  for ((i = 0; i < NEXT; i++)); do
+    s=$(now_ms)
+    parse $((amount++)) >/dev/null
+    total=$((total + $(now_ms) - s))
+  done
+  kill "$pid" 2>/dev/null || true
+  wait "$pid" 2>/dev/null || true
+  echo "$first $(awk -v t=$total -v n=$NEXT 'BEGIN { printf "%.1f", n ? t / n : 0 }')"
+}
+
+median() { sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'; }
+
+checkpoint_image() {
+  local image=target/crac
+  if ! "$CRAC_JAVA" -XX:CRaCCheckpointTo=/tmp/crac-probe -version >/dev/null 2>&1; then
+    echo "checkpoint: $CRAC_JAVA has no CRaC support (set CRAC_JAVA to a CRaC JDK); skipped" >&2
+    return 1
+  fi
+  if [ ! -d "$image" ]; then
+    echo "checkpoint: creating $image (the instance exits once models are warm)" >&2
+    local t0
+    t0=$(now_ms)
+    # shellcheck disable=SC2086
+    "$CRAC_JAVA" -XX:CRaCCheckpointTo="$image" -Xmx"$HEAP" -Dnlp.startup.checkpoint=true \
+      -jar "$JAR" --server.port="$PORT" $APP_ARGS >target/crac-checkpoint.log 2>&1 || true
+    if [ ! -d "$image" ]; then
+      echo "checkpoint: no image written, see target/crac-checkpoint.log" >&2
+      return 1
+    fi
+    echo "checkpoint: taken in $(($(now_ms) - t0)) ms" >&2
+  fi
+}
+
+printf '%-11s %5s %18s %18s\n' mode runs "first parse (ms)" "next parses (ms)"
+for mode in "${MODES[@]}"; do
+  case $mode in
+    plain) cmd=("$JAVA" -Xmx"$HEAP" -jar "$JAR" --server.port="$PORT") ;;
+    cds)
+      if [ ! -f "$DIR/application.jsa" ]; then
+        echo "cds: $DIR/application.jsa not found; build with mvn -Pcds package" >&2
+        continue
+      fi
+      cmd=("$JAVA" -XX:SharedArchiveFile="$DIR/application.jsa" -Xmx"$HEAP" -jar "$JAR" --server.port="$PORT")
+      ;;
+    checkpoint)
+      checkpoint_image || continue
+      cmd=("$CRAC_JAVA" -XX:CRaCRestoreFrom=target/crac)
+      ;;
+    *)
+      echo "unknown mode $mode (plain, cds, checkpoint)" >&2
+      exit 2
+      ;;
+  esac
+  # shellcheck disable=SC2206
+  [ "$mode" = checkpoint ] || cmd+=($APP_ARGS)
+  firsts=()
+  nexts=()
+  for ((run = 1; run <= RUNS; run++)); do
+    out=$(measure "target/startup-$mode.log" "${cmd[@]}") || continue 2
+    firsts+=("${out% *}")
+    nexts+=("${out#* }")
+  done
+  printf '%-11s %5d %18s %18s\n' "$mode" "$RUNS" \
+    "$(printf '%s\n' "${firsts[@]}" | median)" "$(printf '%s\n' "${nexts[@]}" | median)"
+done
@@ -0,0 +1,73 @@
+package app.nlp;
+
+import app.nlp.ContactIndex.Contact;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Recipient lookups in one tenant's {@link ContactIndex}, one benchmark per stage that answers:
+ * a handle, an ambiguous first name, a prefix and a typo. Names repeat a few first and last names,
+ * so name words and their trigrams are shared by thousands of contacts, as in a real large list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ContactIndexBenchmark {
+
+  private static final String[] FIRST = {
+    "ana", "juan", "maria", "pedro", "lucia", "john", "sarah", "mike", "gaby", "josé"
+  };
+  private static final String[] LAST = {
+    "ruiz", "smith", "garcía", "lee", "moreno", "chen", "díaz", "brown", "lópez", "muñoz"
+  };
+
+  @Param({"1000", "100000"})
+  public int contacts;
+
+  private ContactIndex index;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(7);
+    List<Contact> batch = new ArrayList<>(contacts);
+    for (int i = 0; i < contacts; i++) {
+      String name =
+          FIRST[random.nextInt(FIRST.length)]
+              + " "
+              + LAST[random.nextInt(LAST.length)]
+              + " "
+              + Integer.toString(i, 36);
+      batch.add(new Contact("c" + i, name, "@user" + i, List.of()));
+    }
+    index = new ContactIndex();
+    index.upsert(batch);
+  }
+
+  @Benchmark
+  public Object handle() {
+    return index.resolve("@user" + (contacts / 2), 5);
+  }
+
+  @Benchmark
+  public Object firstName() {
+    return index.resolve("gaby", 5);
+  }
+
+  @Benchmark
+  public Object prefix() {
+    return index.resolve("gaby ru", 5);
+  }
+
+  @Benchmark
+  public Object typo() {
+    return index.resolve("jhon smith 1a", 5);
+  }
+}
@@ -0,0 +1,26 @@
+package app.nlp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Mixed EN/ES payment utterances shared by the benchmarks (src/jmh/resources/corpus.txt). */
+final class Corpus {
+
+  private Corpus() {}
+
+  static List<String> load() {
+    InputStream in = Corpus.class.getResourceAsStream("/corpus.txt");
+    if (in == null) throw new IllegalStateException("corpus.txt not on the benchmark classpath");
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      for (String line = r.readLine(); line != null; line = r.readLine()) {
+        if (!line.isBlank()) lines.add(line);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,108 @@
+package app.nlp;
+
+import edu.stanford.nlp.pipeline.*;
+import edu.stanford.nlp.util.CoreMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The static helpers on the fallback/fast paths of {@link NlpService}, each run over the whole
+ * corpus per invocation. Run with {@code -prof gc} to see allocation per op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class HelpersBenchmark {
+
+  private static final Set<String> PREPOSITIONS = Set.of("to", "a", "para");
+
+  private List<String> corpus;
+  private List<String> lowered;
+  private List<String> amounts;
+  private List<String> recipients;
+  private List<CoreMap> sentences;
+  private final TextScanner.Hits hits = new TextScanner.Hits();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    corpus = Corpus.load();
+    lowered = corpus.stream().map(s -> s.toLowerCase(Locale.ROOT)).toList();
+    amounts = new ArrayList<>();
+    recipients = new ArrayList<>();
+    for (String s : corpus) {
+      String money = NlpService.findMoneyInText(s);
+      if (money != null) amounts.add(money);
+      int to = s.lastIndexOf(" to ");
+      recipients.add(to >= 0 ? s.substring(to) : " a " + s + "?");
+    }
+    // Only tokens/POS/lemmas are needed for the preposition rule
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize,pos,lemma");
+    props.setProperty("tokenize.options", "ptb3Escaping=false");
+    StanfordCoreNLP base = new StanfordCoreNLP(props);
+    sentences = new ArrayList<>();
+    for (String s : corpus) {
+      Annotation ann = new Annotation(s);
+      base.annotate(ann);
+      sentences.add(
+          ann.get(edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation.class).get(0));
+    }
+  }
+
+  @Benchmark
+  public void normalizeAmount(Blackhole bh) {
+    for (String a : amounts) bh.consume(NlpService.normalizeAmount(a));
+  }
+
+  @Benchmark
+  public void findMoneyInText(Blackhole bh) {
+    for (String s : corpus) bh.consume(NlpService.findMoneyInText(s));
+  }
+
+  // The CoreNLP-tier intent fallback: up to six keyword probes per input
+  @Benchmark
+  public void containsWordIntentScan(Blackhole bh) {
+    for (String low : lowered) {
+      bh.consume(
+          NlpService.containsWord(low, "enviar")
+              || NlpService.containsWord(low, "transferir")
+              || NlpService.containsWord(low, "pagar")
+              || NlpService.containsWord(low, "send")
+              || NlpService.containsWord(low, "transfer")
+              || NlpService.containsWord(low, "pay"));
+    }
+  }
+
+  // The same fallback as one scanner walk that also finds the money mention
+  @Benchmark
+  public void scannerIntentScan(Blackhole bh) {
+    for (String s : corpus) {
+      TextScanner.scan(s, hits);
+      bh.consume(hits.intent);
+      bh.consume(hits.moneyCount);
+    }
+  }
+
+  @Benchmark
+  public void cleanRecipient(Blackhole bh) {
+    for (String r : recipients) bh.consume(NlpService.cleanRecipient(r));
+  }
+
+  @Benchmark
+  public void extractRecipientByPreposition(Blackhole bh) {
+    for (CoreMap s : sentences) {
+      bh.consume(NlpService.extractRecipientByPreposition(s, PREPOSITIONS));
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package app.nlp;
+
+import app.config.NlpProperties;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * End-to-end {@link NlpService#parse} over the EN/ES corpus. {@code tiers=fast} is the production
+ * setup (fast tier first, CoreNLP for the rest); {@code tiers=corenlp} forces every input through
+ * the staged CoreNLP pipeline. {@code models} compares the full and lean model profiles; each runs
+ * in its own fork, so the model heap printed at setup is that profile's alone. The result cache is
+ * off so every call does real work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class NlpServiceBenchmark {
+
+  @Param({"fast", "corenlp"})
+  public String tiers;
+
+  @Param({"full", "lean"})
+  public String models;
+
+  private NlpService nlp;
+  private List<String> corpus;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    NlpProperties props = new NlpProperties();
+    props.getFastTier().setEnabled("fast".equals(tiers));
+    props.getCache().setCapacity(0);
+    props.getAdmission().setEnabled(false);
+    props.getModels().setProfile(models);
+    nlp = new NlpService(props);
+    nlp.start();
+    if (!nlp.awaitReady(Duration.ofMinutes(5))) throw new IllegalStateException("models");
+    System.out.println("# " + models + " models: " + nlp.modelHeapMb() + " MB heap");
+    corpus = Corpus.load();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    nlp.close();
+  }
+
+  @Benchmark
+  public NlpService.ParseResult parse(Cursor cursor) {
+    String input = corpus.get(cursor.next++ % corpus.size());
+    return nlp.parse(input);
+  }
+}
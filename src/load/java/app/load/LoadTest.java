@@ -0,0 +1,586 @@
+package app.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * End-to-end load test of {@code POST /api/parse}. Boots the application in its own JVM (or targets
+ * a running one with {@code --url}), waits until it reports ready and replays the EN/ES corpus of
+ * the JMH benchmarks in two modes: closed loop, where {@code --concurrency} clients each send their
+ * next request when the previous answer arrives, and open loop, where requests arrive at {@code
+ * --rate} per second however fast answers come back. Open-loop latencies are measured from when
+ * each request was due, so a stalled server is not hidden by the client waiting on it. Latencies go
+ * to HdrHistogram; the server's GC and heap are read from its actuator metrics around every
+ * scenario.
+ *
+ * <pre>
+ * mvn -Pload -DskipTests test-compile exec:exec [-Dload.args="--mode closed --concurrency 16"]
+ * </pre>
+ *
+ * <p>Options: {@code --mode closed|open|both} ({@code both}), {@code --concurrency} (8), {@code
+ * --rate} (20), {@code --duration} (60s), {@code --warmup} (20s), {@code --url}, {@code --heap}
+ * (2g), {@code --app-args} (extra application options, default {@code --nlp.cache.capacity=0} so
+ * every request does real work), {@code --corpus FILE}, {@code --baseline FILE} ({@code
+ * src/load/baselines.properties}), {@code --tolerance} (0.3), {@code --max-error-rate} (0.01),
+ * {@code --update true} and {@code --out DIR} ({@code target/load}).
+ *
+ * <p>Each scenario's p99 and throughput are compared with its baseline: the run exits with 1 when
+ * p99 rises or throughput drops by more than the tolerance, or when more than the maximum error
+ * rate of requests fail. {@code --update true} stores the run as the new baseline instead. Full
+ * percentile distributions are written to {@code <out>/<scenario>.hgrm}, the server's GC log and
+ * output to {@code <out>/gc.log} and {@code <out>/app.log}.
+ */
+public final class LoadTest {
+
+  private static final ObjectMapper JSON = new ObjectMapper();
+  private static final Duration REPORT_EVERY = Duration.ofSeconds(5);
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+  private static final int MAX_OPEN_IN_FLIGHT = 1024;
+
+  private LoadTest() {}
+
+  /** Command-line options; see the class comment. */
+  record Options(
+      String mode,
+      int concurrency,
+      int rate,
+      Duration duration,
+      Duration warmup,
+      String url,
+      String heap,
+      String appArgs,
+      Path corpus,
+      Path baseline,
+      double tolerance,
+      double maxErrorRate,
+      boolean update,
+      Path out) {
+
+    static Options parse(String[] args) {
+      Map<String, String> opts = new HashMap<>();
+      for (int i = 0; i < args.length; i++) {
+        if (!args[i].startsWith("--") || i + 1 == args.length) {
+          throw new IllegalArgumentException("Expected --name value, got: " + args[i]);
+        }
+        opts.put(args[i].substring(2), args[++i]);
+      }
+      String mode = opts.getOrDefault("mode", "both");
+      if (!Set.of("closed", "open", "both").contains(mode)) {
+        throw new IllegalArgumentException("--mode must be closed, open or both");
+      }
+      return new Options(
+          mode,
+          Integer.parseInt(opts.getOrDefault("concurrency", "8")),
+          Integer.parseInt(opts.getOrDefault("rate", "20")),
+          DurationStyle.detectAndParse(opts.getOrDefault("duration", "60s")),
+          DurationStyle.detectAndParse(opts.getOrDefault("warmup", "20s")),
+          opts.get("url"),
+          opts.getOrDefault("heap", "2g"),
+          opts.getOrDefault("app-args", "--nlp.cache.capacity=0"),
+          opts.containsKey("corpus") ? Path.of(opts.get("corpus")) : null,
+          Path.of(opts.getOrDefault("baseline", "src/load/baselines.properties")),
+          Double.parseDouble(opts.getOrDefault("tolerance", "0.3")),
+          Double.parseDouble(opts.getOrDefault("max-error-rate", "0.01")),
+          Boolean.parseBoolean(opts.getOrDefault("update", "false")),
+          Path.of(opts.getOrDefault("out", "target/load")));
+    }
+
+    List<String> scenarios() {
+      List<String> names = new ArrayList<>();
+      if (!mode.equals("open")) names.add("closed-c" + concurrency);
+      if (!mode.equals("closed")) names.add("open-r" + rate);
+      return names;
+    }
+  }
+
+  /** Server JVM counters from actuator; as a difference, what happened during one scenario. */
+  record JvmStats(long gcPauses, double gcPauseMs, double allocatedMb, double heapUsedMb) {
+
+    JvmStats minus(JvmStats before) {
+      return new JvmStats(
+          gcPauses - before.gcPauses,
+          gcPauseMs - before.gcPauseMs,
+          allocatedMb - before.allocatedMb,
+          heapUsedMb);
+    }
+  }
+
+  /** One scenario's outcome; {@code latency} holds successful requests only, in microseconds. */
+  record Result(
+      String scenario,
+      long requests,
+      long errors,
+      Map<Integer, Long> statuses,
+      double seconds,
+      Histogram latency,
+      JvmStats jvm) {
+
+    double throughput() {
+      return seconds == 0 ? 0 : (requests - errors) / seconds;
+    }
+
+    double p99Ms() {
+      return latency.getValueAtPercentile(99) / 1000.0;
+    }
+
+    double errorRate() {
+      return requests == 0 ? 0 : (double) errors / requests;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options;
+    try {
+      options = Options.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(
+          "usage: LoadTest [--mode closed|open|both] [--concurrency N] [--rate N] [--duration 60s]"
+              + " [--warmup 20s] [--url URL] [--heap 2g] [--app-args ARGS] [--corpus FILE]"
+              + " [--baseline FILE] [--tolerance 0.3] [--max-error-rate 0.01] [--update true]"
+              + " [--out DIR]");
+      System.exit(2);
+      return;
+    }
+    Files.createDirectories(options.out());
+    List<String> corpus = corpus(options.corpus());
+    Process app = null;
+    String url = options.url();
+    boolean passed = true;
+    try {
+      if (url == null) {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+          port = socket.getLocalPort();
+        }
+        app = boot(options, port);
+        url = "http://localhost:" + port;
+      }
+      Target target = new Target(url, corpus);
+      target.awaitReady(app, Duration.ofMinutes(10));
+      if (!options.warmup().isZero()) {
+        System.out.printf("warm-up: %s closed loop%n", options.warmup());
+        closedLoop(target, "warmup", options.concurrency(), options.warmup());
+      }
+      List<Result> results = new ArrayList<>();
+      for (String scenario : options.scenarios()) {
+        JvmStats before = target.jvmStats();
+        Result result =
+            scenario.startsWith("closed")
+                ? closedLoop(target, scenario, options.concurrency(), options.duration())
+                : openLoop(target, scenario, options.rate(), options.duration());
+        result =
+            new Result(
+                result.scenario(),
+                result.requests(),
+                result.errors(),
+                result.statuses(),
+                result.seconds(),
+                result.latency(),
+                target.jvmStats().minus(before));
+        try (PrintStream hgrm =
+            new PrintStream(options.out().resolve(scenario + ".hgrm").toFile(), "UTF-8")) {
+          result.latency().outputPercentileDistribution(hgrm, 1000.0); // in ms
+        }
+        results.add(result);
+      }
+      System.out.print(report(results));
+      if (options.update()) {
+        writeBaseline(options, results);
+        System.out.println("baseline updated: " + options.baseline());
+      } else {
+        passed = check(readBaseline(options.baseline()), results, options);
+      }
+    } finally {
+      if (app != null) {
+        app.destroy();
+        if (!app.waitFor(30, TimeUnit.SECONDS)) app.destroyForcibly();
+      }
+    }
+    if (!passed) System.exit(1);
+  }
+
+  static List<String> corpus(Path file) throws IOException {
+    List<String> lines;
+    if (file != null) {
+      lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    } else {
+      InputStream in = LoadTest.class.getResourceAsStream("/corpus.txt");
+      if (in == null) throw new IllegalStateException("corpus.txt not on the load-test classpath");
+      try (BufferedReader r =
+          new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+        lines = r.lines().toList();
+      }
+    }
+    List<String> texts = lines.stream().filter(line -> !line.isBlank()).toList();
+    if (texts.isEmpty()) throw new IllegalArgumentException("Corpus is empty");
+    return texts;
+  }
+
+  // Same JVM and class path as this one, GC logged, output to <out>/app.log
+  private static Process boot(Options o, int port) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(ProcessHandle.current().info().command().orElse("java"));
+    command.add("-Xmx" + o.heap());
+    command.add("-Xlog:gc:file=" + o.out().resolve("gc.log"));
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add("app.PaymentNlpApplication");
+    command.add("--server.port=" + port);
+    for (String arg : o.appArgs().trim().split("\\s+")) {
+      if (!arg.isEmpty()) command.add(arg);
+    }
+    System.out.printf("starting the application on port %d (%s)%n", port, o.appArgs());
+    return new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(o.out().resolve("app.log").toFile())
+        .start();
+  }
+
+  /** The service under test: request bodies for the corpus, readiness and actuator metrics. */
+  static final class Target {
+    final HttpClient client =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    final String url;
+    final URI parse;
+    final List<String> bodies;
+
+    Target(String url, List<String> corpus) {
+      this.url = url;
+      this.parse = URI.create(url + "/api/parse");
+      this.bodies =
+          corpus.stream()
+              .map(text -> JSON.createObjectNode().put("text", text).toString())
+              .toList();
+    }
+
+    /** Sends one request; returns the HTTP status, or -1 when it failed or timed out. */
+    int send(int n) {
+      HttpRequest request =
+          HttpRequest.newBuilder(parse)
+              .timeout(REQUEST_TIMEOUT)
+              .header("Content-Type", "application/json")
+              .POST(HttpRequest.BodyPublishers.ofString(bodies.get(n % bodies.size())))
+              .build();
+      try {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+      } catch (IOException e) {
+        return -1;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return -1;
+      }
+    }
+
+    void awaitReady(Process app, Duration timeout) throws Exception {
+      long deadline = System.nanoTime() + timeout.toNanos();
+      URI readiness = URI.create(url + "/actuator/health/readiness");
+      while (true) {
+        if (app != null && !app.isAlive()) {
+          throw new IllegalStateException("The application exited, see its app.log");
+        }
+        try {
+          HttpResponse<Void> response =
+              client.send(
+                  HttpRequest.newBuilder(readiness).build(),
+                  HttpResponse.BodyHandlers.discarding());
+          if (response.statusCode() == 200) return;
+        } catch (IOException e) {
+          // not listening yet
+        }
+        if (System.nanoTime() > deadline) {
+          throw new IllegalStateException(url + " not ready after " + timeout);
+        }
+        Thread.sleep(500);
+      }
+    }
+
+    JvmStats jvmStats() throws InterruptedException {
+      return new JvmStats(
+          (long) metric("jvm.gc.pause", "COUNT", null),
+          metric("jvm.gc.pause", "TOTAL_TIME", null) * 1000,
+          metric("jvm.gc.memory.allocated", "COUNT", null) / (1 << 20),
+          metric("jvm.memory.used", "VALUE", "area:heap") / (1 << 20));
+    }
+
+    // One statistic of an actuator metric; 0 when it is not there (e.g. no GC yet)
+    private double metric(String name, String statistic, String tag) throws InterruptedException {
+      URI uri = URI.create(url + "/actuator/metrics/" + name + (tag == null ? "" : "?tag=" + tag));
+      try {
+        HttpResponse<String> response =
+            client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) return 0;
+        for (JsonNode m : JSON.readTree(response.body()).path("measurements")) {
+          if (statistic.equals(m.path("statistic").asText())) return m.path("value").asDouble();
+        }
+      } catch (IOException e) {
+        // reported as 0
+      }
+      return 0;
+    }
+  }
+
+  // Counts and latencies shared by the clients of one scenario
+  private static final class Tally {
+    final Recorder recorder = new Recorder(3);
+    final Histogram latency = new Histogram(3);
+    final LongAdder requests = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    void record(int status, long startNanos) {
+      long micros = (System.nanoTime() - startNanos) / 1000;
+      requests.increment();
+      statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+      if (status == 200) {
+        recorder.recordValue(micros);
+      } else {
+        errors.increment();
+      }
+    }
+
+    // Prints progress every REPORT_EVERY until the clients are done
+    void report(String scenario, long t0, Future<?> clients) throws Exception {
+      long last = t0;
+      long lastRequests = 0;
+      while (true) {
+        boolean done;
+        try {
+          clients.get(REPORT_EVERY.toMillis(), TimeUnit.MILLISECONDS);
+          done = true;
+        } catch (TimeoutException e) {
+          done = false;
+        }
+        Histogram interval = recorder.getIntervalHistogram();
+        latency.add(interval);
+        long now = System.nanoTime();
+        long total = requests.sum();
+        System.out.printf(
+            "%-12s %5.0fs %8.1f req/s  p50 %7.1f  p99 %7.1f  max %7.1f ms  errors %d%n",
+            scenario,
+            (now - t0) / 1e9,
+            (total - lastRequests) * 1e9 / Math.max(1, now - last),
+            interval.getValueAtPercentile(50) / 1000.0,
+            interval.getValueAtPercentile(99) / 1000.0,
+            interval.getMaxValue() / 1000.0,
+            errors.sum());
+        last = now;
+        lastRequests = total;
+        if (done) return;
+      }
+    }
+
+    Result result(String scenario, long t0) {
+      Map<Integer, Long> counts = new TreeMap<>();
+      statuses.forEach((status, n) -> counts.put(status, n.sum()));
+      return new Result(
+          scenario,
+          requests.sum(),
+          errors.sum(),
+          counts,
+          (System.nanoTime() - t0) / 1e9,
+          latency,
+          null);
+    }
+  }
+
+  /** {@code concurrency} clients, each sending its next request as soon as it has an answer. */
+  static Result closedLoop(Target target, String scenario, int concurrency, Duration duration)
+      throws Exception {
+    Tally tally = new Tally();
+    long t0 = System.nanoTime();
+    long end = t0 + duration.toNanos();
+    try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+      List<Future<?>> running = new ArrayList<>();
+      for (int c = 0; c < concurrency; c++) {
+        int first = c * 7919; // clients start at different corpus lines
+        running.add(
+            clients.submit(
+                () -> {
+                  for (int n = first; System.nanoTime() < end; n++) {
+                    long start = System.nanoTime();
+                    tally.record(target.send(n), start);
+                  }
+                }));
+      }
+      tally.report(scenario, t0, CompletableFuture.runAsync(() -> running.forEach(LoadTest::join)));
+    }
+    return tally.result(scenario, t0);
+  }
+
+  /**
+   * Requests due every {@code 1/rate} seconds. Latency counts from when a request was due, so time
+   * spent behind a slow server (or the in-flight cap) is part of it.
+   */
+  static Result openLoop(Target target, String scenario, int rate, Duration duration)
+      throws Exception {
+    Tally tally = new Tally();
+    Semaphore inFlight = new Semaphore(MAX_OPEN_IN_FLIGHT);
+    long t0 = System.nanoTime();
+    long interval = 1_000_000_000L / rate;
+    long count = duration.toNanos() / interval;
+    AtomicLong sent = new AtomicLong();
+    try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<?> dispatcher =
+          clients.submit(
+              () -> {
+                for (long i = 0; i < count; i++) {
+                  long due = t0 + i * interval;
+                  for (long wait = due - System.nanoTime(); wait > 0; ) {
+                    LockSupport.parkNanos(wait);
+                    wait = due - System.nanoTime();
+                  }
+                  inFlight.acquireUninterruptibly();
+                  int n = (int) sent.getAndIncrement();
+                  clients.execute(
+                      () -> {
+                        try {
+                          tally.record(target.send(n), due);
+                        } finally {
+                          inFlight.release();
+                        }
+                      });
+                }
+                inFlight.acquireUninterruptibly(MAX_OPEN_IN_FLIGHT); // all answered
+              });
+      tally.report(scenario, t0, dispatcher);
+    }
+    return tally.result(scenario, t0);
+  }
+
+  private static void join(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  static String report(List<Result> results) {
+    StringBuilder out = new StringBuilder();
+    for (Result r : results) {
+      Histogram h = r.latency();
+      JvmStats jvm = r.jvm();
+      out.append(
+          String.format(
+              "%n%s: %d requests in %.1f s, %.1f req/s, errors %d %s%n"
+                  + "  latency ms: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n"
+                  + "  server GC: %d pauses, %.0f ms total, %.1f ms mean; allocated %.0f MB/s;"
+                  + " heap used %.0f MB after%n",
+              r.scenario(),
+              r.requests(),
+              r.seconds(),
+              r.throughput(),
+              r.errors(),
+              r.statuses(),
+              h.getValueAtPercentile(50) / 1000.0,
+              h.getValueAtPercentile(90) / 1000.0,
+              h.getValueAtPercentile(99) / 1000.0,
+              h.getValueAtPercentile(99.9) / 1000.0,
+              h.getMaxValue() / 1000.0,
+              jvm.gcPauses(),
+              jvm.gcPauseMs(),
+              jvm.gcPauses() == 0 ? 0 : jvm.gcPauseMs() / jvm.gcPauses(),
+              jvm.allocatedMb() / r.seconds(),
+              jvm.heapUsedMb()));
+    }
+    return out.toString();
+  }
+
+  /**
+   * Compares every result with its baseline ({@code <scenario>.p99Ms} and {@code
+   * <scenario>.throughput}); prints each verdict and returns false if anything regressed.
+   */
+  static boolean check(Properties baseline, List<Result> results, Options o) {
+    boolean ok = true;
+    System.out.println();
+    for (Result r : results) {
+      if (r.errorRate() > o.maxErrorRate()) {
+        System.out.printf(
+            "%s: FAIL error rate %.2f%% > %.2f%%%n",
+            r.scenario(), r.errorRate() * 100, o.maxErrorRate() * 100);
+        ok = false;
+      }
+      String p99 = baseline.getProperty(r.scenario() + ".p99Ms");
+      String throughput = baseline.getProperty(r.scenario() + ".throughput");
+      if (p99 == null || throughput == null) {
+        System.out.printf("%s: no baseline (record one with --update true)%n", r.scenario());
+        continue;
+      }
+      double maxP99 = Double.parseDouble(p99) * (1 + o.tolerance());
+      double minThroughput = Double.parseDouble(throughput) * (1 - o.tolerance());
+      boolean p99Ok = r.p99Ms() <= maxP99;
+      boolean throughputOk = r.throughput() >= minThroughput;
+      System.out.printf(
+          "%s: %s p99 %.1f ms (baseline %s, limit %.1f); %s throughput %.1f req/s (baseline %s,"
+              + " limit %.1f)%n",
+          r.scenario(),
+          p99Ok ? "ok" : "FAIL",
+          r.p99Ms(),
+          p99,
+          maxP99,
+          throughputOk ? "ok" : "FAIL",
+          r.throughput(),
+          throughput,
+          minThroughput);
+      ok &= p99Ok && throughputOk;
+    }
+    return ok;
+  }
+
+  static Properties readBaseline(Path file) throws IOException {
+    Properties baseline = new Properties();
+    if (Files.exists(file)) {
+      try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        baseline.load(in);
+      }
+    }
+    return baseline;
+  }
+
+  // Keeps other scenarios' entries; keys sorted so diffs stay small
+  static void writeBaseline(Options o, List<Result> results) throws IOException {
+    Path file = o.baseline();
+    Map<String, String> entries = new TreeMap<>();
+    readBaseline(file).forEach((k, v) -> entries.put((String) k, (String) v));
+    for (Result r : results) {
+      entries.put(r.scenario() + ".p99Ms", String.format(Locale.ROOT, "%.1f", r.p99Ms()));
+      entries.put(r.scenario() + ".throughput", String.format(Locale.ROOT, "%.1f", r.throughput()));
+    }
+    StringBuilder out = new StringBuilder();
+    out.append("# LoadTest baselines: <scenario>.p99Ms and <scenario>.throughput (req/s)\n");
+    out.append(
+        String.format(
+            "# Recorded %s on %d cores against %s; rerecord with --update true on the machine"
+                + " that runs the check%n",
+            LocalDate.now(),
+            Runtime.getRuntime().availableProcessors(),
+            o.url() != null ? o.url() : "-Xmx" + o.heap() + " " + o.appArgs()));
+    entries.forEach((k, v) -> out.append(k).append('=').append(v).append('\n'));
+    if (file.getParent() != null) Files.createDirectories(file.getParent());
+    Files.writeString(file, out, StandardCharsets.UTF_8);
+  }
+}
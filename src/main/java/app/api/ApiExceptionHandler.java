@@ -0,0 +1,25 @@
+package app.api;
+
+import app.nlp.ParseRejectedException;
+import java.util.Map;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+  // Saturation is transient: tell clients to back off briefly rather than fail hard
+  @ExceptionHandler(ParseRejectedException.class)
+  public ResponseEntity<Map<String, String>> rejected(ParseRejectedException e) {
+    HttpStatus status =
+        e.reason() == ParseRejectedException.Reason.QUEUE_FULL
+            ? HttpStatus.TOO_MANY_REQUESTS
+            : HttpStatus.SERVICE_UNAVAILABLE;
+    return ResponseEntity.status(status)
+        .header(HttpHeaders.RETRY_AFTER, "1")
+        .body(Map.of("error", e.reason().name(), "message", e.getMessage()));
+  }
+}
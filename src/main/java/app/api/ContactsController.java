@@ -0,0 +1,88 @@
+package app.api;
+
+import app.nlp.ContactIndex.Contact;
+import app.nlp.ContactIndex.Match;
+import app.nlp.RecipientResolver;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+@Schema(name = "Contact", description = "Contacto de un tenant para resolver destinatarios")
+record ContactRequest(
+    @Schema(description = "Id del contacto en el sistema de origen", example = "c-123") String id,
+    @Schema(description = "Nombre para mostrar", example = "Gabriela Ruiz") String name,
+    @Schema(description = "Handle, con o sin @", example = "@gaby") String handle,
+    @Schema(
+            description = "Otros nombres con que el usuario se refiere a él",
+            example = "[\"gaby\"]")
+        List<String> aliases) {}
+
+@RestController
+@RequestMapping("/api/tenants/{tenant}/contacts")
+@Tag(name = "Contacts", description = "Per-tenant contact lists used to resolve recipients")
+public class ContactsController {
+
+  private final RecipientResolver contacts;
+
+  public ContactsController(RecipientResolver contacts) {
+    this.contacts = contacts;
+  }
+
+  @PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Add or replace contacts",
+      description =
+          "Upserts the given contacts by id; other contacts of the tenant are kept, so this takes"
+              + " a full list or just the changes.",
+      responses = {
+        @ApiResponse(responseCode = "200", description = "Contacts indexed"),
+        @ApiResponse(
+            responseCode = "400",
+            description = "A null contact, a contact without id, or without name and handle")
+      })
+  public Map<String, Object> upsert(
+      @PathVariable(name = "tenant") String tenant, @RequestBody List<ContactRequest> body) {
+    List<Contact> batch = new ArrayList<>(body.size());
+    try {
+      for (ContactRequest c : body) {
+        if (c == null) throw new IllegalArgumentException("null contact");
+        batch.add(new Contact(c.id(), c.name(), c.handle(), c.aliases()));
+      }
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+    return Map.of(
+        "tenant", tenant, "upserted", batch.size(), "contacts", contacts.upsert(tenant, batch));
+  }
+
+  @DeleteMapping("/{id}")
+  @Operation(summary = "Remove a contact")
+  public ResponseEntity<Void> remove(
+      @PathVariable(name = "tenant") String tenant, @PathVariable(name = "id") String id) {
+    return contacts.remove(tenant, id)
+        ? ResponseEntity.noContent().build()
+        : ResponseEntity.notFound().build();
+  }
+
+  @GetMapping(path = "/resolve", produces = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Candidate contacts for a recipient",
+      description =
+          "Best candidates first with their score and match kind (handle, name, alias, token,"
+              + " prefix, fuzzy), whatever the score; /api/parse?tenant= reports only the best one"
+              + " and only above nlp.contacts.min-score.")
+  public List<Match> resolve(
+      @PathVariable(name = "tenant") String tenant,
+      @RequestParam(name = "recipient") String recipient) {
+    return contacts.candidates(tenant, recipient);
+  }
+}
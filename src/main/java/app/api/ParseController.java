@@ -1,14 +1,34 @@
 package app.api;
 
+import app.nlp.ContactIndex.Match;
 import app.nlp.NlpService;
+import app.nlp.NlpService.Evidence;
 import app.nlp.NlpService.ParseResult;
+import app.nlp.NlpService.ParseTrace;
+import app.nlp.RecipientResolver;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 @Schema(
     name = "ParseRequest",
@@ -23,18 +43,85 @@ record ParseResponse(
     @Schema(example = "send") String intent,
     @Schema(example = "$15") String amountText,
     @Schema(example = "15.0") Double amountValue,
+    @Schema(description = "Monto exacto tal como se escribió", example = "1234.50")
+        BigDecimal amountExact,
+    @Schema(description = "Monto en unidades menores de la moneda (ISO 4217)", example = "123450")
+        Long amountMinorUnits,
     @Schema(example = "USD") String currency,
-    @Schema(example = "gaby") String recipient) {}
+    @Schema(example = "gaby") String recipient,
+    @Schema(
+            description =
+                "Contacto del tenant al que corresponde el destinatario, con su puntaje; solo con"
+                    + " tenant y si supera nlp.contacts.min-score")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        Match contact,
+    @Schema(description = "Tier que respondió: fast (regex/léxico) o corenlp", example = "fast")
+        String tier,
+    @Schema(description = "Idioma detectado (en|es); define el pipeline de CoreNLP", example = "en")
+        String language,
+    @Schema(
+            description = "true si CoreNLP se omitió o se cortó (modelos cargando, plazo agotado)",
+            example = "false")
+        boolean degraded,
+    @Schema(description = "true si el texto superó el largo máximo y se recortó", example = "false")
+        boolean truncated,
+    @Schema(
+            description =
+                "Por campo encontrado: regla de origen, confianza (0-1) y posición [begin, end) en"
+                    + " el texto de entrada")
+        Map<String, Evidence> evidence,
+    @Schema(description = "Traza de reglas aplicadas; solo con trace=true o X-Parse-Trace")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        ParseTrace trace) {
+
+  static ParseResponse from(ParseResult r) {
+    return from(r, null);
+  }
+
+  static ParseResponse from(ParseResult r, Match contact) {
+    return new ParseResponse(
+        r.intent,
+        r.amountText,
+        r.amountValue,
+        r.amountExact,
+        r.amountMinorUnits(),
+        r.currency,
+        r.recipient,
+        contact,
+        r.tier,
+        r.language,
+        r.degraded,
+        r.truncated,
+        r.evidence(),
+        r.trace);
+  }
+}
+
+@Schema(
+    name = "BatchLineError",
+    description = "Línea del lote NDJSON que no se pudo leer; las demás se procesan igual")
+record BatchLineError(
+    @Schema(description = "Número de línea de entrada (desde 1)", example = "2") int line,
+    @Schema(example = "Unexpected character ('n' (code 110))") String error) {}
 
 @RestController
 @RequestMapping("/api")
 @Tag(name = "Parse", description = "NLP parsing for payment-like requests")
 public class ParseController {
 
+  static final String NDJSON = "application/x-ndjson";
+  static final String TRACE_HEADER = "X-Parse-Trace";
+  static final String BUDGET_HEADER = "X-Parse-Budget-Ms";
+  static final String TENANT_HEADER = "X-Tenant-Id";
+
   private final NlpService nlp;
+  private final RecipientResolver contacts;
+  private final ObjectMapper json;
 
-  public ParseController(NlpService nlp) {
+  public ParseController(NlpService nlp, RecipientResolver contacts, ObjectMapper json) {
     this.nlp = nlp;
+    this.contacts = contacts;
+    this.json = json;
   }
 
   @PostMapping(
@@ -44,7 +131,42 @@ public class ParseController {
   @Operation(
       summary = "Parse natural language payment request",
       description =
-          "Extracts intent (send/pay/transfer), amount, currency and recipient from free text (English/Spanish).",
+          "Extracts intent (send/pay/transfer), amount, currency and recipient from free text"
+              + " (English/Spanish). With trace=true (or header X-Parse-Trace: true) the response"
+              + " also explains which rule produced each field. budgetMs (or header"
+              + " X-Parse-Budget-Ms) lowers this request's time budget; past it the answer is"
+              + " flagged degraded. With tenant (or header X-Tenant-Id) the recipient is also"
+              + " resolved against that tenant's contacts.",
+      responses = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Parsed successfully",
+            content =
+                @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ParseResponse.class)))
+      })
+  public ParseResponse parse(
+      @RequestBody ParseRequest req,
+      @RequestParam(name = "trace", defaultValue = "false") boolean trace,
+      @RequestHeader(name = TRACE_HEADER, defaultValue = "false") boolean traceHeader,
+      @RequestParam(name = "budgetMs", required = false) Long budgetMs,
+      @RequestHeader(name = BUDGET_HEADER, required = false) Long budgetHeader,
+      @RequestParam(name = "tenant", required = false) String tenant,
+      @RequestHeader(name = TENANT_HEADER, required = false) String tenantHeader) {
+    ParseResult r = nlp.parse(req.text(), trace || traceHeader, budget(budgetMs, budgetHeader));
+    return respond(r, tenant != null ? tenant : tenantHeader);
+  }
+
+  @PostMapping(
+      path = "/parse/async",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Parse natural language payment request (async)",
+      description =
+          "Same as /parse, but the request thread is released while the text is parsed; the"
+              + " response is written when the parse completes.",
       responses = {
         @ApiResponse(
             responseCode = "200",
@@ -54,8 +176,147 @@ public class ParseController {
                     mediaType = "application/json",
                     schema = @Schema(implementation = ParseResponse.class)))
       })
-  public ParseResponse parse(@RequestBody ParseRequest req) {
-    ParseResult r = nlp.parse(req.text());
-    return new ParseResponse(r.intent, r.amountText, r.amountValue, r.currency, r.recipient);
+  public CompletableFuture<ParseResponse> parseAsync(
+      @RequestBody ParseRequest req,
+      @RequestParam(name = "trace", defaultValue = "false") boolean trace,
+      @RequestHeader(name = TRACE_HEADER, defaultValue = "false") boolean traceHeader,
+      @RequestParam(name = "budgetMs", required = false) Long budgetMs,
+      @RequestHeader(name = BUDGET_HEADER, required = false) Long budgetHeader,
+      @RequestParam(name = "tenant", required = false) String tenant,
+      @RequestHeader(name = TENANT_HEADER, required = false) String tenantHeader) {
+    String t = tenant != null ? tenant : tenantHeader;
+    return nlp.parseAsync(req.text(), trace || traceHeader, budget(budgetMs, budgetHeader))
+        .thenApply(r -> respond(r, t));
+  }
+
+  // Resolution runs after extraction and only when the caller names a tenant
+  private ParseResponse respond(ParseResult r, String tenant) {
+    Match contact =
+        tenant == null || r.recipient == null ? null : contacts.resolve(tenant, r.recipient);
+    return ParseResponse.from(r, contact);
+  }
+
+  // Clients may only tighten nlp.limits.budget: a larger one would undo the protection it gives
+  private Duration budget(Long param, Long header) {
+    Long ms = param != null ? param : header;
+    Duration max = nlp.budget();
+    if (ms == null) return max;
+    if (ms <= 0) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "budgetMs must be positive");
+    }
+    Duration asked = Duration.ofMillis(ms);
+    return max.isZero() || asked.compareTo(max) < 0 ? asked : max;
+  }
+
+  @PostMapping(
+      path = "/parse/multi",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Parse every payment instruction in a text",
+      description =
+          "Splits the text into sentences, and into clauses when \"and\"/\"y\"/\",\" separates"
+              + " two amounts, then parses them in parallel. Returns one result per instruction in"
+              + " text order; an instruction without a verb inherits the previous intent. Text past"
+              + " nlp.limits.max-input-length is cut before splitting, and budgetMs (or header"
+              + " X-Parse-Budget-Ms) bounds the whole call as for /parse.",
+      responses = {
+        @ApiResponse(responseCode = "200", description = "Parsed successfully"),
+        @ApiResponse(
+            responseCode = "413",
+            description = "More instructions than nlp.multi.max-instructions")
+      })
+  public List<ParseResponse> parseMulti(
+      @RequestBody ParseRequest req,
+      @RequestParam(name = "trace", defaultValue = "false") boolean trace,
+      @RequestHeader(name = TRACE_HEADER, defaultValue = "false") boolean traceHeader,
+      @RequestParam(name = "budgetMs", required = false) Long budgetMs,
+      @RequestHeader(name = BUDGET_HEADER, required = false) Long budgetHeader,
+      @RequestParam(name = "tenant", required = false) String tenant,
+      @RequestHeader(name = TENANT_HEADER, required = false) String tenantHeader) {
+    String t = tenant != null ? tenant : tenantHeader;
+    Duration budget = budget(budgetMs, budgetHeader);
+    List<String> instructions = nlp.splitInstructions(req.text());
+    if (instructions.size() > nlp.maxInstructions()) {
+      throw new ResponseStatusException(
+          HttpStatus.PAYLOAD_TOO_LARGE,
+          "Text has more than " + nlp.maxInstructions() + " instructions");
+    }
+    return nlp.parseInstructions(req.text(), instructions, trace || traceHeader, budget).stream()
+        .map(r -> respond(r, t))
+        .toList();
+  }
+
+  @PostMapping(
+      path = "/parse/batch",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Parse a batch of texts",
+      description =
+          "Parses an array of texts in parallel on the batch worker pool; results keep input order.",
+      responses = {
+        @ApiResponse(responseCode = "200", description = "Parsed successfully"),
+        @ApiResponse(responseCode = "413", description = "More texts than nlp.batch.max-size")
+      })
+  public List<ParseResponse> parseBatch(@RequestBody List<String> texts) {
+    if (texts.size() > nlp.maxBatchSize()) {
+      throw new ResponseStatusException(
+          HttpStatus.PAYLOAD_TOO_LARGE, "Batch exceeds " + nlp.maxBatchSize() + " texts");
+    }
+    return nlp.parseBatch(texts).stream().map(ParseResponse::from).toList();
+  }
+
+  @PostMapping(path = "/parse/batch", consumes = NDJSON, produces = NDJSON)
+  @Operation(
+      summary = "Parse a stream of texts (NDJSON)",
+      description =
+          "Each input line is a JSON string or {\"text\": ...}; each output line is a ParseResponse"
+              + " in input order, or {\"line\": n, \"error\": ...} for a line that is not valid"
+              + " JSON. Lines are parsed in chunks of nlp.batch.max-size, so input size is"
+              + " unbounded.")
+  public void parseBatchStream(InputStream body, HttpServletResponse response) throws IOException {
+    response.setContentType(NDJSON);
+    BufferedReader in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    OutputStream out = response.getOutputStream();
+    List<BatchLine> chunk = new ArrayList<>();
+    int number = 0;
+    for (String line = in.readLine(); line != null; line = in.readLine()) {
+      number++;
+      if (line.isBlank()) continue;
+      chunk.add(lineOf(number, line));
+      if (chunk.size() >= nlp.maxBatchSize()) writeChunk(chunk, out);
+    }
+    writeChunk(chunk, out);
+  }
+
+  /** One input line of an NDJSON batch: its text, or why it could not be read. */
+  private record BatchLine(String text, BatchLineError error) {}
+
+  // Earlier chunks are already flushed when a bad line arrives, so it can no longer fail the
+  // request: it becomes an error row in its place and the stream goes on
+  private BatchLine lineOf(int number, String line) {
+    try {
+      JsonNode node = json.readTree(line);
+      if (node.isTextual()) return new BatchLine(node.textValue(), null);
+      JsonNode text = node.get("text");
+      return new BatchLine((text == null || text.isNull()) ? null : text.asText(), null);
+    } catch (JsonProcessingException e) {
+      return new BatchLine(null, new BatchLineError(number, e.getOriginalMessage()));
+    }
+  }
+
+  private void writeChunk(List<BatchLine> chunk, OutputStream out) throws IOException {
+    if (chunk.isEmpty()) return;
+    List<String> texts =
+        chunk.stream().filter(l -> l.error() == null).map(BatchLine::text).toList();
+    Iterator<ParseResult> results = nlp.parseBatch(texts).iterator();
+    for (BatchLine l : chunk) {
+      Object row = l.error() != null ? l.error() : ParseResponse.from(results.next());
+      out.write(json.writeValueAsBytes(row));
+      out.write('\n');
+    }
+    out.flush();
+    chunk.clear();
   }
 }
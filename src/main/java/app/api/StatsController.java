@@ -0,0 +1,44 @@
+package app.api;
+
+import app.nlp.NlpService;
+import app.nlp.RecipientResolver;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "Stats", description = "Runtime counters of the NLP service")
+public class StatsController {
+
+  private final NlpService nlp;
+  private final RecipientResolver contacts;
+
+  public StatsController(NlpService nlp, RecipientResolver contacts) {
+    this.nlp = nlp;
+    this.contacts = contacts;
+  }
+
+  @GetMapping(path = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Parser counters",
+      description =
+          "How often each staged annotator (base, ner, depparse) was needed, plus result-cache, on-disk store and single-flight counters, admission-control gauges, model load times and heap, per-language pipelines, the lexicon in use and indexed contacts.")
+  public Map<String, Object> stats() {
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("stages", nlp.stageHits());
+    out.put("cache", nlp.cacheStats());
+    out.put("store", nlp.storeStats());
+    out.put("singleFlight", nlp.singleFlightStats());
+    out.put("admission", nlp.admissionStats());
+    out.put("modelLoadMillis", nlp.modelLoadMillis());
+    out.put("modelHeapMb", nlp.modelHeapMb());
+    out.put("languages", nlp.languageStats());
+    out.put("lexicon", nlp.lexiconStats());
+    out.put("contacts", contacts.stats());
+    return out;
+  }
+}
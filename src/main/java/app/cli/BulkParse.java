@@ -0,0 +1,332 @@
+package app.cli;
+
+import app.config.NlpProperties;
+import app.nlp.NlpService;
+import app.nlp.NlpService.ParseResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a JSONL or CSV file through {@link NlpService} without the web server and writes one JSON
+ * line per record, in input order. The input is streamed through a file channel; records are parsed
+ * in chunks on the batch worker pool. After every chunk the output is forced to disk and the input
+ * byte offset is checkpointed, so rerunning the same command after a crash resumes where it stopped
+ * instead of starting over.
+ *
+ * <pre>
+ * java -Dloader.main=app.cli.BulkParse -cp target/payment-nlp-0.1.0.jar \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --in chats.jsonl --out parsed.jsonl [--field text] [--id id] [--threads 0] [--chunk 1000]
+ *     [--models full|lean] [--checkpoint parsed.jsonl.ckpt] [--store DIR]
+ * </pre>
+ *
+ * <p>With {@code --store} results persist in that result store directory (see {@code
+ * nlp.store.path}), so replaying texts parsed by an earlier run (or by a stopped service's store)
+ * reads them from disk instead of running CoreNLP again.
+ */
+public final class BulkParse {
+
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  private BulkParse() {}
+
+  /** Command-line options; see the class comment. */
+  record Options(
+      Path in,
+      Path out,
+      Path checkpoint,
+      boolean csv,
+      String field,
+      String idField,
+      int threads,
+      int chunk,
+      String models,
+      String store) {
+
+    static Options parse(String[] args) {
+      Map<String, String> opts = new HashMap<>();
+      for (int i = 0; i < args.length; i++) {
+        if (!args[i].startsWith("--") || i + 1 == args.length) {
+          throw new IllegalArgumentException("Expected --name value, got: " + args[i]);
+        }
+        opts.put(args[i].substring(2), args[++i]);
+      }
+      if (!opts.containsKey("in") || !opts.containsKey("out")) {
+        throw new IllegalArgumentException("--in and --out are required");
+      }
+      Path in = Path.of(opts.get("in"));
+      Path out = Path.of(opts.get("out"));
+      String format = opts.getOrDefault("format", in.toString().endsWith(".csv") ? "csv" : "jsonl");
+      return new Options(
+          in,
+          out,
+          Path.of(opts.getOrDefault("checkpoint", out + ".ckpt")),
+          format.equalsIgnoreCase("csv"),
+          opts.getOrDefault("field", "text"),
+          opts.get("id"),
+          Integer.parseInt(opts.getOrDefault("threads", "0")),
+          Integer.parseInt(opts.getOrDefault("chunk", "1000")),
+          opts.getOrDefault("models", "full"),
+          opts.getOrDefault("store", ""));
+    }
+
+    NlpProperties properties() {
+      NlpProperties props = new NlpProperties();
+      props.getBatch().setThreads(threads);
+      props.getCompute().setThreads(threads); // where the batch workers' parses run
+      props.getBatch().setMaxSize(chunk);
+      props.getModels().setProfile(models);
+      props.getStartup().setAsyncLoad(false); // never emit degraded answers
+      props.getLexicon().setReloadInterval(Duration.ZERO);
+      props.getLimits().setBudget(Duration.ZERO); // offline: no deadline, full answers only
+      props.getStore().setPath(store);
+      return props;
+    }
+  }
+
+  /** What a run did; {@code resumedAt} is the input offset it started from (0 for a fresh run). */
+  record Summary(long records, long errors, long resumedAt, long bytes, long nanos) {
+    double recordsPerSecond() {
+      return nanos == 0 ? 0 : records * 1e9 / nanos;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options;
+    try {
+      options = Options.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(
+          "usage: BulkParse --in FILE --out FILE [--format jsonl|csv] [--field text] [--id FIELD]"
+              + " [--threads N] [--chunk N] [--models full|lean] [--checkpoint FILE] [--store DIR]");
+      System.exit(2);
+      return;
+    }
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    NlpService nlp = new NlpService(options.properties(), registry);
+    try {
+      nlp.start();
+      Summary summary = run(options, nlp);
+      System.out.print(report(summary, registry));
+    } finally {
+      nlp.close();
+    }
+  }
+
+  static Summary run(Options o, NlpService nlp) throws IOException {
+    long t0 = System.nanoTime();
+    Checkpoint resume = Checkpoint.read(o.checkpoint());
+    try (LineReader in = new LineReader(o.in(), 1 << 20);
+        FileChannel outChannel =
+            FileChannel.open(o.out(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      int column = -1;
+      if (o.csv()) {
+        String header = in.next();
+        column = header == null ? -1 : Csv.split(header).indexOf(o.field());
+        if (column < 0) throw new IllegalArgumentException("CSV has no column " + o.field());
+      }
+      long record = 0;
+      if (resume != null) {
+        if (resume.inputSize() > in.size()) {
+          throw new IllegalStateException(o.checkpoint() + " does not belong to " + o.in());
+        }
+        in.seek(resume.inputOffset());
+        record = resume.records();
+      }
+      long startOffset = in.offset();
+      // Anything written after the last checkpoint is redone
+      long outPos = resume != null ? resume.outputBytes() : 0;
+      outChannel.truncate(outPos);
+      outChannel.position(outPos);
+      OutputStream out = new BufferedOutputStream(Channels.newOutputStream(outChannel), 1 << 16);
+
+      long parsed = 0;
+      long errors = 0;
+      List<Pending> chunk = new ArrayList<>(o.chunk());
+      String line;
+      do {
+        long offset = in.offset();
+        line = in.next();
+        if (line != null && !line.isBlank()) {
+          chunk.add(pending(o, column, ++record, offset, line));
+        }
+        if (chunk.size() == o.chunk() || (line == null && !chunk.isEmpty())) {
+          errors += write(nlp, chunk, out);
+          parsed += chunk.size();
+          chunk.clear();
+          out.flush();
+          outChannel.force(false);
+          new Checkpoint(in.offset(), record, outChannel.position(), in.size())
+              .write(o.checkpoint());
+        }
+      } while (line != null);
+      Files.deleteIfExists(o.checkpoint()); // finished: nothing to resume
+      return new Summary(
+          parsed, errors, startOffset, in.offset() - startOffset, System.nanoTime() - t0);
+    }
+  }
+
+  // One input record: its text, or why it could not be read
+  private record Pending(long record, long offset, String id, String text, String error) {}
+
+  private static Pending pending(Options o, int column, long record, long offset, String line) {
+    try {
+      if (o.csv()) {
+        List<String> cells = Csv.split(line);
+        return new Pending(
+            record, offset, null, column < cells.size() ? cells.get(column) : null, null);
+      }
+      JsonNode node = JSON.readTree(line);
+      String text = node.isTextual() ? node.textValue() : textOf(node.get(o.field()));
+      String id = o.idField() != null ? textOf(node.get(o.idField())) : null;
+      return new Pending(record, offset, id, text, null);
+    } catch (JsonProcessingException e) {
+      return new Pending(record, offset, null, null, "Malformed record: " + e.getOriginalMessage());
+    }
+  }
+
+  private static String textOf(JsonNode node) {
+    return node == null || node.isNull() ? null : node.asText();
+  }
+
+  private static int write(NlpService nlp, List<Pending> chunk, OutputStream out)
+      throws IOException {
+    List<String> texts = new ArrayList<>(chunk.size());
+    for (Pending p : chunk) texts.add(p.error() == null ? p.text() : null);
+    List<ParseResult> results = nlp.parseBatch(texts);
+    int errors = 0;
+    for (int i = 0; i < chunk.size(); i++) {
+      Pending p = chunk.get(i);
+      Map<String, Object> row = new LinkedHashMap<>();
+      row.put("record", p.record());
+      row.put("offset", p.offset());
+      if (p.id() != null) row.put("id", p.id());
+      if (p.error() != null) {
+        row.put("error", p.error());
+        errors++;
+      } else {
+        ParseResult r = results.get(i);
+        row.put("intent", r.intent);
+        row.put("amountText", r.amountText);
+        row.put("amountValue", r.amountValue);
+        row.put("amountExact", r.amountExact);
+        row.put("amountMinorUnits", r.amountMinorUnits());
+        row.put("currency", r.currency);
+        row.put("recipient", r.recipient);
+        row.put("tier", r.tier);
+        row.put("language", r.language);
+        if (r.truncated) row.put("truncated", true);
+        row.put("evidence", r.evidence());
+      }
+      out.write(JSON.writeValueAsBytes(row));
+      out.write('\n');
+    }
+    return errors;
+  }
+
+  static String report(Summary s, MeterRegistry registry) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(
+        String.format(
+            Locale.ROOT,
+            "%d records (%d malformed), %.1f MB in %.1f s: %.1f records/s%s%n",
+            s.records(),
+            s.errors(),
+            s.bytes() / 1e6,
+            s.nanos() / 1e9,
+            s.recordsPerSecond(),
+            s.resumedAt() > 0 ? " (resumed at byte " + s.resumedAt() + ")" : ""));
+    appendTimers(sb, registry, "nlp.parse", "tier", "answered by");
+    appendTimers(sb, registry, "nlp.stage", "stage", "CoreNLP stage");
+    return sb.toString();
+  }
+
+  private static void appendTimers(
+      StringBuilder sb, MeterRegistry registry, String name, String tag, String label) {
+    List<Timer> timers = new ArrayList<>(registry.find(name).timers());
+    timers.sort(Comparator.comparingDouble((Timer t) -> -t.totalTime(TimeUnit.MILLISECONDS)));
+    for (Timer t : timers) {
+      sb.append(
+          String.format(
+              Locale.ROOT,
+              "  %-13s %-18s %9d calls %10.1f ms total %8.3f ms mean%n",
+              label,
+              t.getId().getTag(tag),
+              t.count(),
+              t.totalTime(TimeUnit.MILLISECONDS),
+              t.mean(TimeUnit.MILLISECONDS)));
+    }
+  }
+
+  /** Progress marker: input consumed up to {@code inputOffset}, output valid up to its bytes. */
+  record Checkpoint(long inputOffset, long records, long outputBytes, long inputSize) {
+
+    static Checkpoint read(Path file) throws IOException {
+      if (!Files.exists(file)) return null;
+      Properties p = new Properties();
+      try (Reader r = Files.newBufferedReader(file)) {
+        p.load(r);
+      }
+      return new Checkpoint(
+          Long.parseLong(p.getProperty("inputOffset")),
+          Long.parseLong(p.getProperty("records")),
+          Long.parseLong(p.getProperty("outputBytes")),
+          Long.parseLong(p.getProperty("inputSize")));
+    }
+
+    // Written to a temp file and moved into place so a crash never leaves half a checkpoint
+    void write(Path file) throws IOException {
+      Properties p = new Properties();
+      p.setProperty("inputOffset", Long.toString(inputOffset));
+      p.setProperty("records", Long.toString(records));
+      p.setProperty("outputBytes", Long.toString(outputBytes));
+      p.setProperty("inputSize", Long.toString(inputSize));
+      Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+      try (Writer w = Files.newBufferedWriter(tmp)) {
+        p.store(w, "BulkParse checkpoint");
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  /** RFC 4180 fields of one line (quoted fields may contain commas and doubled quotes). */
+  static final class Csv {
+    private Csv() {}
+
+    static List<String> split(String line) {
+      List<String> cells = new ArrayList<>();
+      StringBuilder cell = new StringBuilder();
+      boolean quoted = false;
+      for (int i = 0; i < line.length(); i++) {
+        char c = line.charAt(i);
+        if (quoted) {
+          if (c != '"') cell.append(c);
+          else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+            cell.append(line.charAt(++i));
+          else quoted = false;
+        } else if (c == '"') {
+          quoted = true;
+        } else if (c == ',') {
+          cells.add(cell.toString());
+          cell.setLength(0);
+        } else {
+          cell.append(c);
+        }
+      }
+      cells.add(cell.toString());
+      return cells;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package app.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines from a file through a {@link FileChannel} and one reused direct buffer, keeping
+ * the byte offset where the next line starts so a run can checkpoint and later resume with {@link
+ * #seek}. Files of any size stream in constant memory (plus the longest line).
+ */
+final class LineReader implements Closeable {
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private byte[] line = new byte[256]; // current line, may span buffer refills
+  private long offset; // byte offset right after the last line returned
+  private boolean eof;
+
+  LineReader(Path file, int bufferSize) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    buffer.flip(); // empty until the first read
+  }
+
+  /** Continues reading at {@code position}, which must be a line start (e.g. a checkpoint). */
+  void seek(long position) throws IOException {
+    channel.position(position);
+    buffer.clear().flip();
+    offset = position;
+    eof = false;
+  }
+
+  /** Byte offset where the next line starts. */
+  long offset() {
+    return offset;
+  }
+
+  long size() throws IOException {
+    return channel.size();
+  }
+
+  /** Next line without its terminator ("\n" or "\r\n"), or null at end of file. */
+  String next() throws IOException {
+    int len = 0;
+    while (true) {
+      if (!buffer.hasRemaining()) {
+        if (eof || !fill()) {
+          if (len == 0) return null;
+          return decode(len); // last line without a trailing newline
+        }
+      }
+      byte b = buffer.get();
+      offset++;
+      if (b == '\n') return decode(len);
+      if (len == line.length) line = Arrays.copyOf(line, len * 2);
+      line[len++] = b;
+    }
+  }
+
+  private boolean fill() throws IOException {
+    buffer.clear();
+    int n = channel.read(buffer);
+    buffer.flip();
+    if (n <= 0) eof = true;
+    return n > 0;
+  }
+
+  private String decode(int len) {
+    if (len > 0 && line[len - 1] == '\r') len--;
+    return new String(line, 0, len, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,218 @@
+package app.cli;
+
+import app.config.NlpProperties;
+import app.nlp.IntentClassifier;
+import app.nlp.IntentClassifier.Example;
+import app.nlp.NlpService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Trains an {@link IntentClassifier} from a labelled JSONL corpus ({@code {"text": "...", "intent":
+ * "pay"}}, with {@code null} or {@code "none"} for text that is not a payment instruction), saves
+ * it, and reports accuracy and latency on a held-out split. With {@code --compare} the held-out
+ * texts also go through the CoreNLP tier with and without the model, so the report shows what the
+ * model buys against depparse on this corpus.
+ *
+ * <pre>
+ * java -Dloader.main=app.cli.TrainIntentClassifier -cp target/payment-nlp-0.1.0.jar \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --corpus intents.jsonl --out intents.bin [--buckets 65536] [--epochs 20] [--holdout 0.2]
+ *     [--seed 42] [--compare true] [--models full|lean]
+ * </pre>
+ */
+public final class TrainIntentClassifier {
+
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  private TrainIntentClassifier() {}
+
+  /** Command-line options; see the class comment. */
+  record Options(
+      Path corpus,
+      Path out,
+      int buckets,
+      int epochs,
+      double holdout,
+      long seed,
+      boolean compare,
+      String models) {
+
+    static Options parse(String[] args) {
+      Map<String, String> opts = new HashMap<>();
+      for (int i = 0; i < args.length; i++) {
+        if (!args[i].startsWith("--") || i + 1 == args.length) {
+          throw new IllegalArgumentException("Expected --name value, got: " + args[i]);
+        }
+        opts.put(args[i].substring(2), args[++i]);
+      }
+      if (!opts.containsKey("corpus") || !opts.containsKey("out")) {
+        throw new IllegalArgumentException("--corpus and --out are required");
+      }
+      double holdout = Double.parseDouble(opts.getOrDefault("holdout", "0.2"));
+      if (holdout < 0 || holdout >= 1) {
+        throw new IllegalArgumentException("--holdout must be in [0, 1): " + holdout);
+      }
+      return new Options(
+          Path.of(opts.get("corpus")),
+          Path.of(opts.get("out")),
+          Integer.parseInt(opts.getOrDefault("buckets", "65536")),
+          Integer.parseInt(opts.getOrDefault("epochs", "20")),
+          holdout,
+          Long.parseLong(opts.getOrDefault("seed", "42")),
+          Boolean.parseBoolean(opts.getOrDefault("compare", "false")),
+          opts.getOrDefault("models", "full"));
+    }
+
+    // CoreNLP tier on every input: no fast path, no cache, no deadline
+    NlpProperties properties(Path model) {
+      NlpProperties props = new NlpProperties();
+      props.getModels().setProfile(models);
+      props.getFastTier().setEnabled(false);
+      props.getCache().setCapacity(0);
+      props.getStartup().setAsyncLoad(false);
+      props.getLexicon().setReloadInterval(Duration.ZERO);
+      props.getLimits().setBudget(Duration.ZERO);
+      props.getClassifier().setPath(model == null ? "" : model.toString());
+      return props;
+    }
+  }
+
+  /** Accuracy and per-text latency of one way of finding the intent on the held-out texts. */
+  record Row(String name, int correct, int total, long[] nanos, long depparseRuns) {
+    double accuracy() {
+      return total == 0 ? 0 : (double) correct / total;
+    }
+
+    double meanMillis() {
+      return nanos.length == 0 ? 0 : Arrays.stream(nanos).average().orElse(0) / 1e6;
+    }
+
+    double percentileMillis(double q) {
+      if (nanos.length == 0) return 0;
+      long[] sorted = nanos.clone();
+      Arrays.sort(sorted);
+      return sorted[(int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1)] / 1e6;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options;
+    try {
+      options = Options.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(
+          "usage: TrainIntentClassifier --corpus FILE.jsonl --out FILE [--buckets N] [--epochs N]"
+              + " [--holdout 0.2] [--seed N] [--compare true] [--models full|lean]");
+      System.exit(2);
+      return;
+    }
+    System.out.print(report(run(options)));
+  }
+
+  static List<Row> run(Options o) throws IOException {
+    List<Example> examples = read(o.corpus());
+    Collections.shuffle(examples, new Random(o.seed()));
+    int test = (int) Math.round(examples.size() * o.holdout());
+    List<Example> heldOut = examples.subList(0, test);
+    List<Example> training = examples.subList(test, examples.size());
+
+    IntentClassifier model = IntentClassifier.train(training, o.buckets(), o.epochs(), o.seed());
+    model.save(o.out());
+
+    List<Row> rows = new ArrayList<>();
+    if (heldOut.isEmpty()) return rows;
+    rows.add(measure("classifier", heldOut, text -> model.predict(text).label(), null));
+    if (o.compare()) {
+      rows.add(measure("corenlp", heldOut, o.properties(null)));
+      rows.add(measure("corenlp+classifier", heldOut, o.properties(o.out())));
+    }
+    return rows;
+  }
+
+  static List<Example> read(Path corpus) throws IOException {
+    List<Example> examples = new ArrayList<>();
+    try (LineReader in = new LineReader(corpus, 1 << 16)) {
+      String line;
+      while ((line = in.next()) != null) {
+        if (line.isBlank()) continue;
+        JsonNode node = JSON.readTree(line);
+        JsonNode text = node.get("text");
+        if (text == null || !text.isTextual()) {
+          throw new IllegalArgumentException(corpus + ": record without text: " + line);
+        }
+        JsonNode intent = node.get("intent");
+        String label = intent == null || intent.isNull() ? IntentClassifier.NONE : intent.asText();
+        examples.add(new Example(text.textValue(), label));
+      }
+    }
+    return examples;
+  }
+
+  private static String intentOf(NlpService nlp, String text) {
+    String intent = nlp.parse(text).intent;
+    return intent == null ? IntentClassifier.NONE : intent;
+  }
+
+  private static Row measure(String name, List<Example> examples, NlpProperties props) {
+    NlpService nlp = new NlpService(props);
+    try {
+      nlp.start();
+      return measure(name, examples, text -> intentOf(nlp, text), nlp);
+    } finally {
+      nlp.close();
+    }
+  }
+
+  private static Row measure(
+      String name, List<Example> examples, Function<String, String> intent, NlpService nlp) {
+    // One untimed pass so the first timed call does not pay for class loading and JIT
+    for (Example e : examples) intent.apply(e.text());
+    long depparse = nlp == null ? 0 : nlp.stageHits().get("depparse");
+    long[] nanos = new long[examples.size()];
+    int correct = 0;
+    for (int i = 0; i < examples.size(); i++) {
+      Example e = examples.get(i);
+      long t0 = System.nanoTime();
+      String predicted = intent.apply(e.text());
+      nanos[i] = System.nanoTime() - t0;
+      if (predicted.equals(e.label())) correct++;
+    }
+    long runs = nlp == null ? 0 : nlp.stageHits().get("depparse") - depparse;
+    return new Row(name, correct, examples.size(), nanos, runs);
+  }
+
+  static String report(List<Row> rows) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(
+        String.format(
+            Locale.ROOT,
+            "%-20s %9s %9s %9s %9s %14s%n",
+            "intent from",
+            "accuracy",
+            "mean ms",
+            "p50 ms",
+            "p99 ms",
+            "depparse runs"));
+    for (Row r : rows) {
+      sb.append(
+          String.format(
+              Locale.ROOT,
+              "%-20s %8.1f%% %9.3f %9.3f %9.3f %8d/%-5d%n",
+              r.name(),
+              r.accuracy() * 100,
+              r.meanMillis(),
+              r.percentileMillis(0.5),
+              r.percentileMillis(0.99),
+              r.depparseRuns(),
+              r.total()));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,69 @@
+package app.config;
+
+import app.nlp.NlpService;
+import java.time.Duration;
+import org.crac.CheckpointException;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import org.crac.RestoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * With {@code nlp.startup.checkpoint=true}, takes a CRaC checkpoint once CoreNLP models are loaded
+ * and warmed up, so new instances restore a JVM that is ready to parse instead of loading models
+ * and JIT-compiling again. The JVM must be a CRaC JDK started with {@code
+ * -XX:CRaCCheckpointTo=DIR}: it exits after the checkpoint, and {@code java
+ * -XX:CRaCRestoreFrom=DIR} resumes right after it. Spring stops the web server around the
+ * checkpoint and this closes the service's files; both come back on restore. On other JDKs the
+ * request is logged and the service keeps running.
+ */
+@Component
+public final class NlpCheckpoint implements Resource {
+
+  private static final Logger log = LoggerFactory.getLogger(NlpCheckpoint.class);
+
+  private final NlpService nlp;
+  private final boolean enabled;
+
+  public NlpCheckpoint(NlpService nlp, NlpProperties config) {
+    this.nlp = nlp;
+    this.enabled = config.getStartup().isCheckpoint();
+    Core.getGlobalContext().register(this);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onReady() {
+    if (enabled) Thread.ofPlatform().name("nlp-checkpoint").start(this::checkpoint);
+  }
+
+  private void checkpoint() {
+    if (!nlp.awaitReady(Duration.ofHours(1))) {
+      log.warn("No CRaC checkpoint: CoreNLP models did not become ready");
+      return;
+    }
+    log.info("CoreNLP models ready, taking CRaC checkpoint");
+    try {
+      Core.checkpointRestore();
+      log.info("Restored from CRaC checkpoint");
+    } catch (UnsupportedOperationException e) {
+      log.warn("nlp.startup.checkpoint is set but this JVM has no CRaC support; not checkpointing");
+    } catch (CheckpointException | RestoreException e) {
+      log.error("CRaC checkpoint/restore failed", e);
+    }
+  }
+
+  @Override
+  public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+    nlp.beforeCheckpoint();
+  }
+
+  @Override
+  public void afterRestore(Context<? extends Resource> context) throws Exception {
+    nlp.afterRestore();
+  }
+}
@@ -0,0 +1,26 @@
+package app.config;
+
+import app.nlp.NlpService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports OUT_OF_SERVICE until CoreNLP models are loaded and warmed up. Part of the readiness group
+ * (see application.properties) so orchestrators only route traffic to warm instances.
+ */
+@Component("nlp")
+public class NlpHealthIndicator implements HealthIndicator {
+
+  private final NlpService nlp;
+
+  public NlpHealthIndicator(NlpService nlp) {
+    this.nlp = nlp;
+  }
+
+  @Override
+  public Health health() {
+    Health.Builder health = nlp.isReady() ? Health.up() : Health.outOfService();
+    return health.withDetail("modelLoadMillis", nlp.modelLoadMillis()).build();
+  }
+}
@@ -0,0 +1,456 @@
+package app.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/** Tunables for {@link app.nlp.NlpService}, bound from {@code nlp.*} properties. */
+@ConfigurationProperties(prefix = "nlp")
+public class NlpProperties {
+
+  private final FastTier fastTier = new FastTier();
+  private final Cache cache = new Cache();
+  private final Batch batch = new Batch();
+  private final Admission admission = new Admission();
+  private final Startup startup = new Startup();
+  private final Multi multi = new Multi();
+  private final Lexicon lexicon = new Lexicon();
+  private final Languages languages = new Languages();
+  private final Models models = new Models();
+  private final Compute compute = new Compute();
+  private final Limits limits = new Limits();
+  private final Classifier classifier = new Classifier();
+  private final Store store = new Store();
+  private final Contacts contacts = new Contacts();
+
+  public FastTier getFastTier() {
+    return fastTier;
+  }
+
+  public Cache getCache() {
+    return cache;
+  }
+
+  public Batch getBatch() {
+    return batch;
+  }
+
+  public Admission getAdmission() {
+    return admission;
+  }
+
+  public Startup getStartup() {
+    return startup;
+  }
+
+  public Multi getMulti() {
+    return multi;
+  }
+
+  public Lexicon getLexicon() {
+    return lexicon;
+  }
+
+  public Languages getLanguages() {
+    return languages;
+  }
+
+  public Models getModels() {
+    return models;
+  }
+
+  public Compute getCompute() {
+    return compute;
+  }
+
+  public Limits getLimits() {
+    return limits;
+  }
+
+  public Classifier getClassifier() {
+    return classifier;
+  }
+
+  public Store getStore() {
+    return store;
+  }
+
+  public Contacts getContacts() {
+    return contacts;
+  }
+
+  /** Regex/lexicon first tier that answers easy utterances without CoreNLP. */
+  public static class FastTier {
+    private boolean enabled = true;
+    // Longer inputs always escalate; they are rarely "easy" and the regexes get costlier
+    private int maxTokens = 16;
+    private int maxRecipientTokens = 3;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxTokens() {
+      return maxTokens;
+    }
+
+    public void setMaxTokens(int maxTokens) {
+      this.maxTokens = maxTokens;
+    }
+
+    public int getMaxRecipientTokens() {
+      return maxRecipientTokens;
+    }
+
+    public void setMaxRecipientTokens(int maxRecipientTokens) {
+      this.maxRecipientTokens = maxRecipientTokens;
+    }
+  }
+
+  /** Result cache in front of the CoreNLP tier; capacity 0 disables it. */
+  public static class Cache {
+    private int capacity = 10_000;
+    private Duration ttl = Duration.ofMinutes(10);
+    private String policy = "LRU"; // LRU|FIFO
+
+    public int getCapacity() {
+      return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+      this.capacity = capacity;
+    }
+
+    public Duration getTtl() {
+      return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+      this.ttl = ttl;
+    }
+
+    public String getPolicy() {
+      return policy;
+    }
+
+    public void setPolicy(String policy) {
+      this.policy = policy;
+    }
+  }
+
+  /** On-disk result store behind the cache, kept across restarts; an empty path disables it. */
+  public static class Store {
+    private String path = "";
+    private DataSize maxSize = DataSize.ofMegabytes(256); // oldest segments go past this
+    private DataSize segmentSize = DataSize.ofMegabytes(16);
+    private int writeQueue = 1024; // results waiting for the writer thread; more are dropped
+
+    public String getPath() {
+      return path;
+    }
+
+    public void setPath(String path) {
+      this.path = path;
+    }
+
+    public DataSize getMaxSize() {
+      return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public DataSize getSegmentSize() {
+      return segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+      this.segmentSize = segmentSize;
+    }
+
+    public int getWriteQueue() {
+      return writeQueue;
+    }
+
+    public void setWriteQueue(int writeQueue) {
+      this.writeQueue = writeQueue;
+    }
+  }
+
+  /** Recipient resolution against per-tenant contact lists (see app.nlp.RecipientResolver). */
+  public static class Contacts {
+    // Best candidate's score needed to report a resolved contact
+    private double minScore = 0.7;
+    private int maxCandidates = 5;
+
+    public double getMinScore() {
+      return minScore;
+    }
+
+    public void setMinScore(double minScore) {
+      this.minScore = minScore;
+    }
+
+    public int getMaxCandidates() {
+      return maxCandidates;
+    }
+
+    public void setMaxCandidates(int maxCandidates) {
+      this.maxCandidates = maxCandidates;
+    }
+  }
+
+  /** Batch endpoint limits and its dedicated worker pool. */
+  public static class Batch {
+    private int maxSize = 1_000;
+    // 0 = one less than the available cores, leaving room for interactive requests
+    private int threads = 0;
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(int threads) {
+      this.threads = threads;
+    }
+  }
+
+  /** Concurrency limit, wait queue and timeout for interactive CoreNLP parses. */
+  public static class Admission {
+    private boolean enabled = true;
+    private int maxInFlight = 0; // 0 = number of available cores
+    private int maxQueue = 64;
+    private Duration maxWait = Duration.ofMillis(500);
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxInFlight() {
+      return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+      this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxQueue() {
+      return maxQueue;
+    }
+
+    public void setMaxQueue(int maxQueue) {
+      this.maxQueue = maxQueue;
+    }
+
+    public Duration getMaxWait() {
+      return maxWait;
+    }
+
+    public void setMaxWait(Duration maxWait) {
+      this.maxWait = maxWait;
+    }
+  }
+
+  /** Bounds on the work one request can cause, so a pathological input cannot hold a thread. */
+  public static class Limits {
+    // CoreNLP-tier time per request, admission wait included; 0 = no deadline
+    private Duration budget = Duration.ofSeconds(2);
+    private int maxInputLength = 1_000; // chars, longer inputs are truncated; 0 = no limit
+
+    public Duration getBudget() {
+      return budget;
+    }
+
+    public void setBudget(Duration budget) {
+      this.budget = budget;
+    }
+
+    public int getMaxInputLength() {
+      return maxInputLength;
+    }
+
+    public void setMaxInputLength(int maxInputLength) {
+      this.maxInputLength = maxInputLength;
+    }
+  }
+
+  /** Optional trained intent model consulted instead of the dependency parse. */
+  public static class Classifier {
+    private String path = ""; // model written by app.cli.TrainIntentClassifier; empty = off
+    // Below this probability the prediction is ignored and depparse decides as before
+    private double minConfidence = 0.9;
+
+    public String getPath() {
+      return path;
+    }
+
+    public void setPath(String path) {
+      this.path = path;
+    }
+
+    public double getMinConfidence() {
+      return minConfidence;
+    }
+
+    public void setMinConfidence(double minConfidence) {
+      this.minConfidence = minConfidence;
+    }
+  }
+
+  /** Multi-instruction parsing: one text, several payments, parsed in parallel. */
+  public static class Multi {
+    private int maxInstructions = 20;
+    private int threads = 0; // 0 = number of available cores
+
+    public int getMaxInstructions() {
+      return maxInstructions;
+    }
+
+    public void setMaxInstructions(int maxInstructions) {
+      this.maxInstructions = maxInstructions;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(int threads) {
+      this.threads = threads;
+    }
+  }
+
+  /** Platform threads that run CoreNLP annotation for requests served on virtual threads. */
+  public static class Compute {
+    private int threads = 0; // 0 = number of available cores
+    // Virtual-thread callers hand annotation to the pool instead of pinning a carrier thread
+    private boolean offloadVirtualThreads = true;
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(int threads) {
+      this.threads = threads;
+    }
+
+    public boolean isOffloadVirtualThreads() {
+      return offloadVirtualThreads;
+    }
+
+    public void setOffloadVirtualThreads(boolean offloadVirtualThreads) {
+      this.offloadVirtualThreads = offloadVirtualThreads;
+    }
+  }
+
+  /** Which CoreNLP model set to load; see the README for heap targets per profile. */
+  public static class Models {
+    // full: CoreNLP defaults (three NER CRFs, SUTime). lean: one NER CRF plus numeric
+    // classifiers, no SUTime; same POS/lemma/depparse models
+    private String profile = "full";
+
+    public String getProfile() {
+      return profile;
+    }
+
+    public void setProfile(String profile) {
+      this.profile = profile;
+    }
+  }
+
+  /** Languages that get their own CoreNLP pipeline; utterances are routed by language ID. */
+  public static class Languages {
+    // en|es; the first is the default for undetected text. Languages without models on the
+    // classpath are skipped (Spanish needs the -Pspanish build)
+    private List<String> enabled = new ArrayList<>(List.of("en", "es"));
+
+    public List<String> getEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(List<String> enabled) {
+      this.enabled = enabled;
+    }
+  }
+
+  /** Intent keywords and currency words/symbols; see {@code lexicon.txt} for the format. */
+  public static class Lexicon {
+    private String path = ""; // empty = the lexicon bundled in the jar
+    // How often the file's modification time is checked; 0 disables hot reload
+    private Duration reloadInterval = Duration.ofSeconds(30);
+
+    public String getPath() {
+      return path;
+    }
+
+    public void setPath(String path) {
+      this.path = path;
+    }
+
+    public Duration getReloadInterval() {
+      return reloadInterval;
+    }
+
+    public void setReloadInterval(Duration reloadInterval) {
+      this.reloadInterval = reloadInterval;
+    }
+  }
+
+  /** Model loading and warm-up before the service reports ready. */
+  public static class Startup {
+    // Load models on background threads; the fast tier answers (degraded) until they are ready
+    private boolean asyncLoad = true;
+    // Take a CRaC checkpoint once models are loaded and warm (needs a CRaC JDK; see README)
+    private boolean checkpoint = false;
+    private List<String> warmupSamples =
+        new ArrayList<>(
+            List.of(
+                "send $15 to gaby",
+                "pay John 20 dollars for lunch",
+                "transfer €1,234.50 to @alex99",
+                "enviar 20 euros a Juan",
+                "quiero pagar 15 dólares a mi mamá"));
+
+    public boolean isAsyncLoad() {
+      return asyncLoad;
+    }
+
+    public void setAsyncLoad(boolean asyncLoad) {
+      this.asyncLoad = asyncLoad;
+    }
+
+    public boolean isCheckpoint() {
+      return checkpoint;
+    }
+
+    public void setCheckpoint(boolean checkpoint) {
+      this.checkpoint = checkpoint;
+    }
+
+    public List<String> getWarmupSamples() {
+      return warmupSamples;
+    }
+
+    public void setWarmupSamples(List<String> warmupSamples) {
+      this.warmupSamples = warmupSamples;
+    }
+  }
+}
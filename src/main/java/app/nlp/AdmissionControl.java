@@ -0,0 +1,94 @@
+package app.nlp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounds concurrent CoreNLP parses on the shared pipeline. Up to {@code maxInFlight} parses run at
+ * once; up to {@code maxQueue} more wait (FIFO) for at most {@code maxWaitNanos}; anything beyond
+ * that is rejected immediately so bursts turn into fast 429/503s instead of tail latency.
+ */
+final class AdmissionControl {
+
+  private final int maxInFlight;
+  private final int maxQueue;
+  private final long maxWaitNanos;
+  private final Semaphore permits;
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder timedOut = new LongAdder();
+
+  AdmissionControl(int maxInFlight, int maxQueue, long maxWaitNanos) {
+    this.maxInFlight = maxInFlight;
+    this.maxQueue = maxQueue;
+    this.maxWaitNanos = maxWaitNanos;
+    this.permits = new Semaphore(maxInFlight, true);
+  }
+
+  <T> T run(Supplier<T> work) {
+    acquire();
+    try {
+      return work.get();
+    } finally {
+      permits.release();
+    }
+  }
+
+  private void acquire() {
+    // Timed tryAcquire honours fairness, so requests already queued keep their turn
+    if (tryAcquire(0)) return;
+    if (waiting.incrementAndGet() > maxQueue) {
+      waiting.decrementAndGet();
+      rejected.increment();
+      throw new ParseRejectedException(
+          ParseRejectedException.Reason.QUEUE_FULL, "Parse queue full (" + maxQueue + " waiting)");
+    }
+    try {
+      if (!tryAcquire(maxWaitNanos)) {
+        timedOut.increment();
+        throw new ParseRejectedException(
+            ParseRejectedException.Reason.WAIT_TIMEOUT,
+            "No parse worker available within "
+                + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)
+                + " ms");
+      }
+    } finally {
+      waiting.decrementAndGet();
+    }
+  }
+
+  private boolean tryAcquire(long nanos) {
+    try {
+      boolean ok = permits.tryAcquire(nanos, TimeUnit.NANOSECONDS);
+      if (ok) admitted.increment();
+      return ok;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a parse worker", e);
+    }
+  }
+
+  int inFlight() {
+    return maxInFlight - permits.availablePermits();
+  }
+
+  int queueDepth() {
+    return waiting.get();
+  }
+
+  Map<String, Long> stats() {
+    Map<String, Long> out = new LinkedHashMap<>();
+    out.put("inFlight", (long) inFlight());
+    out.put("queueDepth", (long) queueDepth());
+    out.put("admitted", admitted.sum());
+    out.put("rejected", rejected.sum());
+    out.put("timedOut", timedOut.sum());
+    return out;
+  }
+}
@@ -0,0 +1,365 @@
+package app.nlp;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Exact money amounts from text: "$1,234.50", "1.234,50 €", "20,5 euros", "$5k", "2 mil pesos",
+ * "veinticinco dólares", "twenty-five dollars". Values are {@link BigDecimal}s built from the
+ * matched chars in place, never through {@code double} or a cleaned-up copy of the string.
+ *
+ * <p>Separators: with both '.' and ',' present the last one is the decimal mark. A lone separator
+ * followed by exactly three digits is read as grouping ("1.500" and "1,500" are 1500); otherwise it
+ * is the decimal mark ("20,5", "12.50").
+ */
+public final class AmountParser {
+
+  /** An amount and its ISO 4217 currency code (null when the currency is unknown). */
+  public record Amount(BigDecimal value, String currency) {
+
+    /** The value in minor units (cents, yen...) per the currency's ISO 4217 exponent, or null. */
+    public Long minorUnits() {
+      return AmountParser.minorUnits(value, currency);
+    }
+  }
+
+  // Number-word lexicon kinds: plain values, "hundred" multiplier, 10^n scale words
+  private static final int KIND_VALUE = 1;
+  private static final int KIND_HUNDRED = 2;
+  private static final int KIND_SCALE = 3;
+
+  private static final CharTrie NUMBERS = new CharTrie();
+
+  static {
+    String[] en = {
+      "zero",
+      "one",
+      "two",
+      "three",
+      "four",
+      "five",
+      "six",
+      "seven",
+      "eight",
+      "nine",
+      "ten",
+      "eleven",
+      "twelve",
+      "thirteen",
+      "fourteen",
+      "fifteen",
+      "sixteen",
+      "seventeen",
+      "eighteen",
+      "nineteen"
+    };
+    String[] es = {
+      "cero",
+      "uno",
+      "dos",
+      "tres",
+      "cuatro",
+      "cinco",
+      "seis",
+      "siete",
+      "ocho",
+      "nueve",
+      "diez",
+      "once",
+      "doce",
+      "trece",
+      "catorce",
+      "quince",
+      "dieciseis",
+      "diecisiete",
+      "dieciocho",
+      "diecinueve",
+      "veinte",
+      "veintiuno",
+      "veintidos",
+      "veintitres",
+      "veinticuatro",
+      "veinticinco",
+      "veintiseis",
+      "veintisiete",
+      "veintiocho",
+      "veintinueve"
+    };
+    for (int i = 0; i < en.length; i++) NUMBERS.put(en[i], KIND_VALUE, i, null);
+    for (int i = 0; i < es.length; i++) NUMBERS.put(es[i], KIND_VALUE, i, null);
+    String[] enTens = {
+      "twenty", "thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety"
+    };
+    String[] esTens = {
+      "veinte", "treinta", "cuarenta", "cincuenta", "sesenta", "setenta", "ochenta", "noventa"
+    };
+    for (int i = 0; i < enTens.length; i++) {
+      NUMBERS.put(enTens[i], KIND_VALUE, (i + 2) * 10, null);
+      NUMBERS.put(esTens[i], KIND_VALUE, (i + 2) * 10, null);
+    }
+    String[] esHundreds = {
+      "doscientos",
+      "trescientos",
+      "cuatrocientos",
+      "quinientos",
+      "seiscientos",
+      "setecientos",
+      "ochocientos",
+      "novecientos"
+    };
+    for (int i = 0; i < esHundreds.length; i++) {
+      NUMBERS.put(esHundreds[i], KIND_VALUE, (i + 2) * 100, null);
+      String feminine = esHundreds[i].substring(0, esHundreds[i].length() - 2) + "as";
+      NUMBERS.put(feminine, KIND_VALUE, (i + 2) * 100, null);
+    }
+    for (String w : new String[] {"un", "una"}) NUMBERS.put(w, KIND_VALUE, 1, null);
+    for (String w : new String[] {"veintiun", "veintiuna"}) NUMBERS.put(w, KIND_VALUE, 21, null);
+    for (String w : new String[] {"cien", "ciento"}) NUMBERS.put(w, KIND_VALUE, 100, null);
+    NUMBERS.put("hundred", KIND_HUNDRED, 0, null);
+    for (String w : new String[] {"thousand", "mil"}) NUMBERS.put(w, KIND_SCALE, 3, null);
+    for (String w : new String[] {"million", "millions", "millon", "millones"}) {
+      NUMBERS.put(w, KIND_SCALE, 6, null);
+    }
+  }
+
+  private AmountParser() {}
+
+  /**
+   * Parses a money expression at the start of {@code text}: symbol-first ("$5k", "about €20"), or a
+   * number followed by a currency word or symbol ("20,5 euros", "1.234,50 €", "veinte dólares").
+   * Returns null when the text does not start with one.
+   */
+  public static Amount parse(CharSequence text) {
+    return parse(Lexicon.defaults(), text);
+  }
+
+  /** Like {@link #parse(CharSequence)} with the currency words and symbols of {@code lex}. */
+  static Amount parse(Lexicon lex, CharSequence text) {
+    TextScanner.Money m = TextScanner.parseMoneyAt(lex, text);
+    return m != null ? new Amount(m.amount(text), m.currency) : null;
+  }
+
+  /** Parses a bare number ("1.234,50", "5k", "twenty-five"); null unless the whole text is one. */
+  public static BigDecimal parseNumber(CharSequence text) {
+    int from = 0;
+    int to = text.length();
+    while (from < to && TextScanner.isSpace(text.charAt(from))) from++;
+    while (to > from && TextScanner.isSpace(text.charAt(to - 1))) to--;
+    if (from == to || numberEnd(text, from) != to) return null;
+    return numberValue(text, from, to);
+  }
+
+  /** {@code value} in minor units of {@code currency} (HALF_EVEN), or null if either is unknown. */
+  public static Long minorUnits(BigDecimal value, String currency) {
+    if (value == null || currency == null) return null;
+    int digits;
+    try {
+      digits = Currency.getInstance(currency).getDefaultFractionDigits();
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    if (digits < 0) return null;
+    try {
+      return value.setScale(digits, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    } catch (ArithmeticException e) {
+      return null;
+    }
+  }
+
+  // ---- lexing, shared with TextScanner ----
+
+  /** Mutable parse state; only allocated when a value is wanted, scanning passes null. */
+  private static final class Num {
+    long unscaled;
+    int scale; // digits after the decimal mark
+    int exp; // power-of-ten multiplier from "k", "mil", "million"...
+    BigDecimal big; // set instead of unscaled when there are more than 18 digits
+  }
+
+  /** End of the number (digits or number words) starting at {@code i}; {@code i} if none. */
+  static int numberEnd(CharSequence s, int i) {
+    if (i >= s.length()) return i;
+    char c = s.charAt(i);
+    if (c >= '0' && c <= '9') return lexDigits(s, i, null);
+    if (TextScanner.isWordChar(c)) return lexWords(s, i, null);
+    return i;
+  }
+
+  /** Value of the number spanning {@code [from, to)}, as found by {@link #numberEnd}. */
+  static BigDecimal numberValue(CharSequence s, int from, int to) {
+    Num num = new Num();
+    char c = s.charAt(from);
+    if (c >= '0' && c <= '9') lexDigits(s, from, num);
+    else lexWords(s, from, num);
+    BigDecimal value = num.big != null ? num.big : BigDecimal.valueOf(num.unscaled, num.scale);
+    if (num.exp > 0) {
+      value = value.movePointRight(num.exp);
+      if (value.scale() < 0) value = value.setScale(0);
+    }
+    return value;
+  }
+
+  private static int lexDigits(CharSequence s, int i, Num out) {
+    int n = s.length();
+    int k = digitsEnd(s, i);
+    int firstRun = k - i;
+    int seps = 0;
+    int dots = 0;
+    int firstSep = -1;
+    int lastSep = -1;
+    int lastRun = 0;
+    boolean middleRunsOf3 = true;
+    while (k + 1 < n && isSeparator(s.charAt(k)) && isDigit(s.charAt(k + 1))) {
+      if (seps > 0 && lastRun != 3) middleRunsOf3 = false;
+      if (s.charAt(k) == '.') dots++;
+      if (firstSep < 0) firstSep = k;
+      lastSep = k;
+      seps++;
+      int runStart = k + 1;
+      k = digitsEnd(s, runStart);
+      lastRun = k - runStart;
+    }
+    int end = k;
+    int decimalAt = -1;
+    if (seps > 0) {
+      int commas = seps - dots;
+      boolean groupedHead = middleRunsOf3 && firstRun <= 3 && s.charAt(i) != '0';
+      if (dots > 0 && commas > 0) {
+        // 1,234.50 / 1.234,50: the last separator is the decimal mark and must appear once
+        int lastKind = s.charAt(lastSep) == '.' ? dots : commas;
+        if (lastKind == 1 && (seps == 1 || groupedHead)) decimalAt = lastSep;
+        else end = firstSep;
+      } else if (seps == 1) {
+        if (!(lastRun == 3 && firstRun <= 3 && s.charAt(i) != '0')) decimalAt = lastSep;
+      } else if (!(groupedHead && lastRun == 3)) {
+        end = firstSep; // 1.2.3 is not a number we understand; keep the leading integer
+      }
+    }
+    int digitsEnd = end;
+    // Multipliers: "5k", "2M" attached, or a scale word after it ("5 mil", "2 million")
+    int exp = 0;
+    if (end < n && !isWordCharAt(s, end + 1)) {
+      char suffix = s.charAt(end);
+      if (suffix == 'k' || suffix == 'K') exp = 3;
+      else if (suffix == 'm' || suffix == 'M') exp = 6;
+      if (exp > 0) end++;
+    }
+    if (exp == 0) {
+      int ws = skipSpaces(s, end);
+      if (ws > end) {
+        int we = wordEnd(s, ws);
+        int node = NUMBERS.find(s, ws, we, KIND_SCALE);
+        if (node >= 0) {
+          exp = NUMBERS.num(node);
+          end = we;
+        }
+      }
+    }
+    if (out != null) {
+      out.exp = exp;
+      readDigits(s, i, digitsEnd, decimalAt, out);
+    }
+    return end;
+  }
+
+  private static void readDigits(CharSequence s, int from, int to, int decimalAt, Num out) {
+    long unscaled = 0;
+    int digits = 0;
+    int scale = 0;
+    for (int k = from; k < to; k++) {
+      char c = s.charAt(k);
+      if (!isDigit(c)) continue;
+      unscaled = unscaled * 10 + (c - '0');
+      digits++;
+      if (decimalAt >= 0 && k > decimalAt) scale++;
+    }
+    if (digits <= 18) {
+      out.unscaled = unscaled;
+      out.scale = scale;
+      return;
+    }
+    StringBuilder sb = new StringBuilder(to - from);
+    for (int k = from; k < to; k++) {
+      char c = s.charAt(k);
+      if (isDigit(c)) sb.append(c);
+    }
+    out.big = new BigDecimal(sb.toString()).movePointLeft(scale);
+  }
+
+  // "twenty-five", "one hundred and five", "treinta y cinco", "dos mil quinientos"
+  private static int lexWords(CharSequence s, int i, Num out) {
+    int n = s.length();
+    int end = i;
+    long total = 0;
+    long current = 0;
+    int k = i;
+    while (k < n) {
+      int we = wordEnd(s, k);
+      int node = NUMBERS.find(s, k, we);
+      if (node < 0) break;
+      switch (NUMBERS.kind(node)) {
+        case KIND_VALUE -> current += NUMBERS.num(node);
+        case KIND_HUNDRED -> current = Math.max(current, 1) * 100;
+        default -> {
+          total += Math.max(current, 1) * pow10(NUMBERS.num(node));
+          current = 0;
+        }
+      }
+      end = we;
+      // Connectors between number words: "-", "y", "and"
+      int j = skipSpaces(s, we);
+      if (j < n && s.charAt(j) == '-') {
+        j = skipSpaces(s, j + 1);
+      } else {
+        int ce = wordEnd(s, j);
+        if (isConnector(s, j, ce)) j = skipSpaces(s, ce);
+      }
+      k = j;
+    }
+    if (out != null) out.unscaled = total + current;
+    return end;
+  }
+
+  private static boolean isConnector(CharSequence s, int from, int to) {
+    int len = to - from;
+    if (len == 1) return TextScanner.fold(s.charAt(from)) == 'y';
+    return len == 3
+        && TextScanner.fold(s.charAt(from)) == 'a'
+        && TextScanner.fold(s.charAt(from + 1)) == 'n'
+        && TextScanner.fold(s.charAt(from + 2)) == 'd';
+  }
+
+  private static long pow10(int exp) {
+    long p = 1;
+    for (int i = 0; i < exp; i++) p *= 10;
+    return p;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isSeparator(char c) {
+    return c == '.' || c == ',';
+  }
+
+  private static boolean isWordCharAt(CharSequence s, int i) {
+    return i < s.length() && (TextScanner.isWordChar(s.charAt(i)) || isDigit(s.charAt(i)));
+  }
+
+  private static int digitsEnd(CharSequence s, int i) {
+    while (i < s.length() && isDigit(s.charAt(i))) i++;
+    return i;
+  }
+
+  private static int skipSpaces(CharSequence s, int i) {
+    while (i < s.length() && TextScanner.isSpace(s.charAt(i))) i++;
+    return i;
+  }
+
+  private static int wordEnd(CharSequence s, int i) {
+    while (i < s.length() && TextScanner.isWordChar(s.charAt(i))) i++;
+    return i;
+  }
+}
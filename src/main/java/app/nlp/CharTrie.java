@@ -0,0 +1,92 @@
+package app.nlp;
+
+import java.util.Arrays;
+
+/**
+ * Array-backed char trie over accent- and case-folded keywords. Each keyword node carries a kind,
+ * an int payload and a string payload; lookups walk the text in place without allocating. Node 0 is
+ * the root, -1 means "no node".
+ */
+final class CharTrie {
+
+  private char[] label = new char[256];
+  private int[] firstChild = new int[256];
+  private int[] sibling = new int[256];
+  private int[] kind = new int[256];
+  private int[] num = new int[256];
+  private String[] value = new String[256];
+  private int size = 1;
+
+  CharTrie() {
+    firstChild[0] = -1;
+    sibling[0] = -1;
+  }
+
+  void put(String key, int kind, int num, String value) {
+    int node = 0;
+    for (int i = 0; i < key.length(); i++) {
+      char c = TextScanner.fold(key.charAt(i));
+      int next = child(node, c);
+      if (next < 0) {
+        next = newNode(c);
+        sibling[next] = firstChild[node];
+        firstChild[node] = next;
+      }
+      node = next;
+    }
+    this.kind[node] = kind;
+    this.num[node] = num;
+    this.value[node] = value;
+  }
+
+  /** Node of the keyword spelled by text[from, to) (folded), or -1. */
+  int find(CharSequence text, int from, int to) {
+    int node = 0;
+    for (int i = from; i < to && node >= 0; i++)
+      node = child(node, TextScanner.fold(text.charAt(i)));
+    return node > 0 && kind[node] != 0 ? node : -1;
+  }
+
+  /** Node of the keyword spelled by text[from, to) if it has the given kind, or -1. */
+  int find(CharSequence text, int from, int to, int kind) {
+    int node = find(text, from, to);
+    return node >= 0 && this.kind[node] == kind ? node : -1;
+  }
+
+  int kind(int node) {
+    return kind[node];
+  }
+
+  int num(int node) {
+    return num[node];
+  }
+
+  String value(int node) {
+    return value[node];
+  }
+
+  private int child(int node, char c) {
+    for (int n = firstChild[node]; n >= 0; n = sibling[n]) {
+      if (label[n] == c) return n;
+    }
+    return -1;
+  }
+
+  private int newNode(char c) {
+    if (size == label.length) grow();
+    label[size] = c;
+    firstChild[size] = -1;
+    sibling[size] = -1;
+    return size++;
+  }
+
+  private void grow() {
+    int n = label.length * 2;
+    label = Arrays.copyOf(label, n);
+    firstChild = Arrays.copyOf(firstChild, n);
+    sibling = Arrays.copyOf(sibling, n);
+    kind = Arrays.copyOf(kind, n);
+    num = Arrays.copyOf(num, n);
+    value = Arrays.copyOf(value, n);
+  }
+}
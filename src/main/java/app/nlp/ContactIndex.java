@@ -0,0 +1,616 @@
+package app.nlp;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One tenant's contacts, indexed to resolve an extracted recipient ("gaby", "@alex99", "my mom",
+ * "Jhon Smith") to a contact id in microseconds. Names, handles, aliases and single name words are
+ * case and accent folded into terms, one per distinct text with the contacts that own it, kept in
+ * an array-backed char trie, which answers exact matches (the node the query spells) and prefixes
+ * (the terms below it), and in a character-trigram index for typos. Cheaper stages run first and
+ * fuzzy matching only when they found nothing convincing.
+ *
+ * <p>Updates are incremental: replacing or removing a contact bumps its slot's version, which makes
+ * its entries in the owner lists stale; lookups skip them, and the tables are rebuilt from the live
+ * contacts once stale entries outnumber live ones. Lookups share a read lock, updates take the
+ * write lock.
+ */
+public final class ContactIndex {
+
+  /** A contact as the tenant's contact list has it; handle and aliases are optional. */
+  public record Contact(String id, String name, String handle, List<String> aliases) {
+    public Contact {
+      if (id == null || id.isBlank()) throw new IllegalArgumentException("contact without id");
+      if (isBlank(name) && isBlank(handle)) {
+        throw new IllegalArgumentException("contact " + id + " has neither name nor handle");
+      }
+      aliases = aliases == null ? List.of() : List.copyOf(aliases);
+    }
+  }
+
+  /**
+   * A candidate contact: {@code score} in [0, 1] and the kind of {@code match} (handle, name,
+   * alias, token, prefix, fuzzy). The best candidate's score is lowered when another contact
+   * matches about as well, so an ambiguous "John" does not pass for a resolution.
+   */
+  public record Match(String contactId, String name, double score, String match) {}
+
+  private static final byte HANDLE = 0;
+  private static final byte NAME = 1;
+  private static final byte ALIAS = 2;
+  private static final byte TOKEN = 3; // one word of a multi-word name
+  private static final String[] KINDS = {"handle", "name", "alias", "token"};
+  private static final double[] EXACT = {1.0, 0.98, 0.98, 0.85};
+  private static final int PREFIX_LIMIT = 64; // owners looked at below the query's trie node
+  private static final double MIN_DICE = 0.5; // trigram overlap a fuzzy candidate needs
+  private static final int FUZZY_POSTINGS = 2048; // trigram postings a fuzzy lookup reads at most
+  private static final int FUZZY_LIMIT = 32; // best-overlap candidates scored by edit distance
+  private static final double FUZZY = 0.85; // score of a fuzzy match at edit similarity 1
+  private static final double TIE = 0.05;
+  private static final double AMBIGUOUS = 0.7;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private static final int[] NONE = {};
+
+  // Contacts by slot; freed slots are reused, with a new version
+  private final Map<String, Integer> slotById = new HashMap<>();
+  private Contact[] contacts = new Contact[64];
+  private int[][] termsOf = new int[64][];
+  private int[] version = new int[64];
+  private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+  private int slots;
+
+  // Terms: folded text, distinct trigram count, owners as {slot << 2 | kind, version} pairs
+  private String[] termText;
+  private int[] termGrams;
+  private int[][] owners;
+  private int[] ownerInts; // used length of owners[t]
+  private int[] tokensFrom; // where the TOKEN owners start in owners[t]
+  private int[] liveOwners;
+  private int terms;
+  private int deadTerms; // terms without a live owner
+  private long ownerEntries;
+  private long staleOwners;
+
+  // Trie (first-child/next-sibling, as in CharTrie); node 0 is the root
+  private char[] label;
+  private int[] firstChild;
+  private int[] sibling;
+  private int[] termAt; // term spelled by the node, -1 if none
+  private int nodes;
+
+  // Trigram -> ids of the terms containing it, ascending (ids only ever grow)
+  private Map<Long, Postings> grams;
+
+  public ContactIndex() {
+    clearTables();
+  }
+
+  private static boolean isBlank(String s) {
+    return s == null || s.isBlank();
+  }
+
+  // -------- Updates --------
+
+  /** Adds or replaces contacts (by id). */
+  public void upsert(Collection<Contact> batch) {
+    lock.writeLock().lock();
+    try {
+      for (Contact c : batch) {
+        Integer slot = slotById.get(c.id());
+        if (slot != null) kill(slot);
+        else slot = newSlot(c.id());
+        contacts[slot] = c;
+        addTerms(slot, c);
+      }
+      if (staleOwners > 1024 && staleOwners > ownerEntries - staleOwners) rebuild();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Removes a contact; false if there was none with that id. */
+  public boolean remove(String id) {
+    lock.writeLock().lock();
+    try {
+      Integer slot = slotById.remove(id);
+      if (slot == null) return false;
+      kill(slot);
+      contacts[slot] = null;
+      freeSlots.push(slot);
+      if (staleOwners > 1024 && staleOwners > ownerEntries - staleOwners) rebuild();
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return slotById.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private int newSlot(String id) {
+    int slot;
+    if (!freeSlots.isEmpty()) {
+      slot = freeSlots.pop();
+    } else {
+      slot = slots++;
+      if (slot == contacts.length) {
+        contacts = Arrays.copyOf(contacts, slot * 2);
+        termsOf = Arrays.copyOf(termsOf, slot * 2);
+        version = Arrays.copyOf(version, slot * 2);
+      }
+    }
+    slotById.put(id, slot);
+    return slot;
+  }
+
+  private void kill(int slot) {
+    for (int t : termsOf[slot]) {
+      if (--liveOwners[t] == 0) deadTerms++;
+      staleOwners++;
+    }
+    termsOf[slot] = NONE;
+    version[slot]++;
+  }
+
+  private void addTerms(int slot, Contact c) {
+    List<Integer> ids = new ArrayList<>();
+    if (!isBlank(c.handle())) addTerm(slot, HANDLE, normalize(c.handle()), ids);
+    if (!isBlank(c.name())) {
+      String name = normalize(c.name());
+      addTerm(slot, NAME, name, ids);
+      String[] words = name.split(" ");
+      if (words.length > 1) for (String w : words) addTerm(slot, TOKEN, w, ids);
+    }
+    for (String alias : c.aliases()) {
+      if (!isBlank(alias)) addTerm(slot, ALIAS, normalize(alias), ids);
+    }
+    termsOf[slot] = ids.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private void addTerm(int slot, byte kind, String text, List<Integer> ids) {
+    if (text.isEmpty()) return;
+    int node = insert(text);
+    int t = termAt[node];
+    if (t < 0) {
+      t = newTerm(text);
+      termAt[node] = t;
+    } else if (liveOwners[t] == 0) {
+      deadTerms--;
+    }
+    int[] o = owners[t];
+    int n = ownerInts[t];
+    if (n == o.length) owners[t] = o = Arrays.copyOf(o, Math.max(2, n * 2));
+    o[n] = slot << 2 | kind;
+    o[n + 1] = version[slot];
+    ownerInts[t] = n + 2;
+    if (kind != TOKEN) {
+      // Whole-term owners go ahead of the (possibly thousands of) owners of a name word
+      int first = tokensFrom[t];
+      int a = o[first], b = o[first + 1];
+      o[first] = o[n];
+      o[first + 1] = o[n + 1];
+      o[n] = a;
+      o[n + 1] = b;
+      tokensFrom[t] = first + 2;
+    }
+    liveOwners[t]++;
+    ownerEntries++;
+    ids.add(t);
+  }
+
+  private int newTerm(String text) {
+    if (terms == termText.length) growTerms();
+    int t = terms++;
+    termText[t] = text;
+    owners[t] = NONE;
+    ownerInts[t] = 0;
+    tokensFrom[t] = 0;
+    long[] g = trigrams(text);
+    termGrams[t] = g.length;
+    for (long gram : g) grams.computeIfAbsent(gram, k -> new Postings()).add(t);
+    return t;
+  }
+
+  // Drops dead terms and stale owners by re-adding the live contacts to empty tables
+  private void rebuild() {
+    clearTables();
+    for (int slot = 0; slot < slots; slot++) {
+      if (contacts[slot] != null) addTerms(slot, contacts[slot]);
+    }
+  }
+
+  private void clearTables() {
+    termText = new String[256];
+    termGrams = new int[256];
+    owners = new int[256][];
+    ownerInts = new int[256];
+    tokensFrom = new int[256];
+    liveOwners = new int[256];
+    terms = 0;
+    deadTerms = 0;
+    ownerEntries = 0;
+    staleOwners = 0;
+    label = new char[256];
+    firstChild = new int[256];
+    sibling = new int[256];
+    termAt = new int[256];
+    firstChild[0] = -1;
+    sibling[0] = -1;
+    termAt[0] = -1;
+    nodes = 1;
+    grams = new HashMap<>();
+  }
+
+  private void growTerms() {
+    int n = termText.length * 2;
+    termText = Arrays.copyOf(termText, n);
+    termGrams = Arrays.copyOf(termGrams, n);
+    owners = Arrays.copyOf(owners, n);
+    ownerInts = Arrays.copyOf(ownerInts, n);
+    tokensFrom = Arrays.copyOf(tokensFrom, n);
+    liveOwners = Arrays.copyOf(liveOwners, n);
+  }
+
+  private int insert(String text) {
+    int node = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      int next = child(node, c);
+      if (next < 0) {
+        if (nodes == label.length) growNodes();
+        next = nodes++;
+        label[next] = c;
+        firstChild[next] = -1;
+        termAt[next] = -1;
+        sibling[next] = firstChild[node];
+        firstChild[node] = next;
+      }
+      node = next;
+    }
+    return node;
+  }
+
+  private void growNodes() {
+    int n = label.length * 2;
+    label = Arrays.copyOf(label, n);
+    firstChild = Arrays.copyOf(firstChild, n);
+    sibling = Arrays.copyOf(sibling, n);
+    termAt = Arrays.copyOf(termAt, n);
+  }
+
+  private int child(int node, char c) {
+    for (int n = firstChild[node]; n >= 0; n = sibling[n]) {
+      if (label[n] == c) return n;
+    }
+    return -1;
+  }
+
+  // -------- Lookups --------
+
+  /** Best candidates for a recipient as extracted from text, best first (at most {@code limit}). */
+  public List<Match> resolve(String recipient, int limit) {
+    String q = recipient == null ? "" : normalize(recipient);
+    if (q.isEmpty() || limit <= 0) return List.of();
+    Top best = new Top(limit + 1); // one more than asked, to see whether the best has a close rival
+    lock.readLock().lock();
+    try {
+      int node = find(q);
+      if (node >= 0) {
+        if (termAt[node] >= 0) offerOwners(best, termAt[node], -1, null, Integer.MAX_VALUE);
+        if (q.length() >= 2) prefixes(best, node, q.length());
+      }
+      if (best.max() < EXACT[TOKEN] && q.length() >= 3) fuzzy(best, q);
+      return ranked(best, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private int find(String q) {
+    int node = 0;
+    for (int i = 0; i < q.length() && node >= 0; i++) node = child(node, q.charAt(i));
+    return node;
+  }
+
+  /**
+   * Offers up to {@code max} live owners of a term, at {@code score} as {@code kind} or, when
+   * {@code kind} is null, at the exact-match score of each owner's own kind; returns how many.
+   * Stops once no owner left could make it into {@code best}.
+   */
+  private int offerOwners(Top best, int t, double score, String kind, int max) {
+    int[] o = owners[t];
+    int offered = 0;
+    for (int i = 0; i < ownerInts[t] && offered < max; i += 2) {
+      int k = o[i] & 3;
+      double s = kind == null ? EXACT[k] : score;
+      if (best.full() && s <= best.floor && (kind != null || i >= tokensFrom[t])) break;
+      int slot = o[i] >>> 2;
+      if (version[slot] != o[i + 1]) continue;
+      best.offer(slot, s, kind == null ? KINDS[k] : kind);
+      offered++;
+    }
+    return offered;
+  }
+
+  // Terms that continue the query, shortest first; more of the term typed scores higher, so the
+  // walk is over as soon as one would not make it into best
+  private void prefixes(Top best, int node, int typed) {
+    if (best.full() && 0.5 + 0.3 * typed / (typed + 1) <= best.floor) return;
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (int n = firstChild[node]; n >= 0; n = sibling[n]) queue.add(n);
+    int seen = 0;
+    while (!queue.isEmpty() && seen < PREFIX_LIMIT) {
+      int n = queue.poll();
+      int t = termAt[n];
+      if (t >= 0) {
+        double score = 0.5 + 0.3 * typed / termText[t].length();
+        if (best.full() && score <= best.floor) return;
+        seen += offerOwners(best, t, score, "prefix", PREFIX_LIMIT - seen);
+      }
+      for (int c = firstChild[n]; c >= 0; c = sibling[c]) queue.add(c);
+    }
+  }
+
+  /**
+   * Terms sharing enough trigrams with the query (Dice coefficient), scored by edit similarity.
+   * Posting lists are read rarest first and only up to {@link #FUZZY_POSTINGS} ids: the grams that
+   * tell contacts apart are the rare ones, while " sm" or "ith" can be in a tenth of a large list.
+   * Counts are exact when everything fit; past the budget a term is kept if it could still reach
+   * {@link #MIN_DICE} with every unread gram, and ranked by the grams seen. Only the terms with the
+   * highest counts are looked up at all.
+   */
+  private void fuzzy(Top best, String q) {
+    long[] qg = trigrams(q);
+    Postings[] lists = new Postings[qg.length];
+    int n = 0;
+    for (long g : qg) {
+      Postings p = grams.get(g);
+      if (p != null) lists[n++] = p;
+    }
+    int minShared = (int) Math.ceil(MIN_DICE * qg.length / (2 - MIN_DICE));
+    if (n < minShared) return;
+    Arrays.sort(lists, 0, n, Comparator.comparingInt(p -> p.size));
+    IntCounter shared = new IntCounter(Math.min(FUZZY_POSTINGS, total(lists, n)));
+    int read = 0; // lists counted in full
+    int budget = FUZZY_POSTINGS;
+    for (int i = 0; i < n && budget > 0; i++) {
+      int take = Math.min(lists[i].size, budget);
+      for (int k = 0; k < take; k++) shared.increment(lists[i].ids[k]);
+      budget -= take;
+      if (take == lists[i].size) read++;
+    }
+
+    // Lowest count still needed for FUZZY_LIMIT candidates; ties at it are looked at up to a cap
+    int[] byCount = new int[n + 1];
+    for (int e = 0; e < shared.keys.length; e++)
+      if (shared.keys[e] >= 0) byCount[shared.counts[e]]++;
+    int floor = n;
+    int above = 0;
+    while (floor > 1 && above + byCount[floor] < FUZZY_LIMIT) above += byCount[floor--];
+    int ties = FUZZY_LIMIT * 4;
+    long[] ranked = new long[above + Math.min(byCount[floor], ties)]; // dice, term
+    int size = 0;
+    for (int e = 0; e < shared.keys.length && size < ranked.length; e++) {
+      int t = shared.keys[e];
+      int s = shared.counts[e];
+      if (t < 0 || s < floor || (s == floor && ties-- <= 0) || liveOwners[t] == 0) continue;
+      if (2.0 * (s + n - read) / (qg.length + termGrams[t]) < MIN_DICE) continue;
+      long dice = Math.round(2e6 * s / (qg.length + termGrams[t]));
+      ranked[size++] = dice << 32 | t;
+    }
+    Arrays.sort(ranked, 0, size);
+    for (int i = size - 1; i >= Math.max(0, size - FUZZY_LIMIT); i--) {
+      int t = (int) ranked[i];
+      String term = termText[t];
+      double similarity =
+          1.0 - (double) editDistance(q, term) / Math.max(q.length(), term.length());
+      double score = Math.round(FUZZY * similarity * 100) / 100.0;
+      offerOwners(best, t, score, "fuzzy", best.slots.length);
+    }
+  }
+
+  private static int total(Postings[] lists, int n) {
+    int sum = 0;
+    for (int i = 0; i < n && sum < FUZZY_POSTINGS; i++) sum += lists[i].size;
+    return sum;
+  }
+
+  // Optimal string alignment distance: insertions, deletions, substitutions and transpositions
+  static int editDistance(String a, String b) {
+    int[] prev2 = new int[b.length() + 1];
+    int[] prev = new int[b.length() + 1];
+    int[] cur = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) prev[j] = j;
+    for (int i = 1; i <= a.length(); i++) {
+      cur[0] = i;
+      for (int j = 1; j <= b.length(); j++) {
+        int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        int d = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+        if (i > 1
+            && j > 1
+            && a.charAt(i - 1) == b.charAt(j - 2)
+            && a.charAt(i - 2) == b.charAt(j - 1)) {
+          d = Math.min(d, prev2[j - 2] + 1);
+        }
+        cur[j] = d;
+      }
+      int[] t = prev2;
+      prev2 = prev;
+      prev = cur;
+      cur = t;
+    }
+    return prev[b.length()];
+  }
+
+  private List<Match> ranked(Top best, int limit) {
+    List<Match> all = new ArrayList<>(best.size);
+    for (int i = 0; i < best.size; i++) {
+      Contact c = contacts[best.slots[i]];
+      all.add(
+          new Match(
+              c.id(), c.name() != null ? c.name() : c.handle(), best.scores[i], best.kinds[i]));
+    }
+    all.sort(Comparator.comparingDouble(Match::score).reversed().thenComparing(Match::contactId));
+    if (all.size() > 1 && all.get(1).score() >= all.get(0).score() - TIE) {
+      Match top = all.get(0);
+      all.set(
+          0,
+          new Match(
+              top.contactId(),
+              top.name(),
+              Math.round(top.score() * AMBIGUOUS * 100) / 100.0,
+              top.match()));
+    }
+    return List.copyOf(all.size() > limit ? all.subList(0, limit) : all);
+  }
+
+  Map<String, Integer> stats() {
+    lock.readLock().lock();
+    try {
+      Map<String, Integer> out = new LinkedHashMap<>();
+      out.put("contacts", slotById.size());
+      out.put("terms", terms - deadTerms);
+      out.put("deadTerms", deadTerms);
+      out.put("trieNodes", nodes);
+      out.put("trigrams", grams.size());
+      return out;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // -------- Text --------
+
+  /**
+   * Lower case, accents stripped ("Mamá" and "mama", "Muñoz" and "munoz" are equal), a leading '@'
+   * dropped and every run of other non-alphanumerics turned into one space.
+   */
+  static String normalize(String s) {
+    String plain = NlpService.stripAccents(s);
+    StringBuilder sb = new StringBuilder(plain.length());
+    boolean gap = false;
+    for (int i = 0; i < plain.length(); i++) {
+      char c = plain.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        if (gap && sb.length() > 0) sb.append(' ');
+        gap = false;
+        sb.append(Character.toLowerCase(c));
+      } else {
+        gap = true;
+      }
+    }
+    return sb.toString();
+  }
+
+  // Distinct trigrams of " text ", three 16-bit chars packed into a long, sorted
+  private static long[] trigrams(String text) {
+    String padded = ' ' + text + ' ';
+    long[] out = new long[padded.length() - 2];
+    for (int i = 0; i < out.length; i++) {
+      out[i] =
+          ((long) padded.charAt(i) << 32)
+              | ((long) padded.charAt(i + 1) << 16)
+              | padded.charAt(i + 2);
+    }
+    Arrays.sort(out);
+    int n = 0;
+    for (int i = 0; i < out.length; i++) if (i == 0 || out[i] != out[i - 1]) out[n++] = out[i];
+    return Arrays.copyOf(out, n);
+  }
+
+  private static final class Postings {
+    int[] ids = new int[4];
+    int size;
+
+    void add(int t) {
+      if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+      ids[size++] = t;
+    }
+  }
+
+  /**
+   * The best match per contact for at most {@code capacity} contacts. A contact pushed out can only
+   * come back with a higher score, which then beats the one that pushed it out, so what is left is
+   * the exact top {@code capacity} without holding a match for every contact offered.
+   */
+  private static final class Top {
+    final int[] slots;
+    final double[] scores;
+    final String[] kinds;
+    int size;
+    double floor; // lowest score kept, once full
+
+    Top(int capacity) {
+      slots = new int[capacity];
+      scores = new double[capacity];
+      kinds = new String[capacity];
+    }
+
+    void offer(int slot, double score, String kind) {
+      if (slot < 0 || (size == slots.length && score <= floor)) return;
+      int worst = 0;
+      for (int i = 0; i < size; i++) {
+        if (slots[i] == slot) {
+          if (score > scores[i]) {
+            scores[i] = score;
+            kinds[i] = kind;
+            if (size == slots.length) floor = min();
+          }
+          return;
+        }
+        if (scores[i] < scores[worst]) worst = i;
+      }
+      if (size < slots.length) worst = size++;
+      slots[worst] = slot;
+      scores[worst] = score;
+      kinds[worst] = kind;
+      if (size == slots.length) floor = min();
+    }
+
+    private double min() {
+      double min = scores[0];
+      for (int i = 1; i < size; i++) min = Math.min(min, scores[i]);
+      return min;
+    }
+
+    boolean full() {
+      return size == slots.length;
+    }
+
+    double max() {
+      double max = 0;
+      for (int i = 0; i < size; i++) max = Math.max(max, scores[i]);
+      return max;
+    }
+  }
+
+  // Term id -> count, open addressing; sized for the postings it will see
+  private static final class IntCounter {
+    final int[] keys;
+    final int[] counts;
+
+    IntCounter(int expected) {
+      int capacity = Integer.highestOneBit(Math.max(8, expected) * 2 - 1) << 1;
+      keys = new int[capacity];
+      counts = new int[capacity];
+      Arrays.fill(keys, -1);
+    }
+
+    void increment(int key) {
+      int mask = keys.length - 1;
+      int i = (key * 0x9E3779B9) >>> 7 & mask;
+      while (keys[i] != key && keys[i] != -1) i = (i + 1) & mask;
+      keys[i] = key;
+      counts[i]++;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package app.nlp;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.AnnotationPipeline;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time budget of one CoreNLP-tier parse. Arming it on the parsing thread schedules an interrupt for
+ * when the budget runs out; CoreNLP's tagger, CRF and dependency parser check the interrupt flag as
+ * they go and throw {@link RuntimeInterruptedException}, so a pathological input gives its thread
+ * back on time instead of holding it for seconds. The caller then answers with what the cheaper
+ * rules found so far. Close it on the same thread: a late interrupt never leaks past {@link
+ * #close()}.
+ */
+final class Deadline implements AutoCloseable {
+
+  private static final Deadline NONE = new Deadline(null);
+
+  private final Thread thread; // null: no budget
+  private ScheduledFuture<?> timer;
+  private boolean expired;
+  private boolean closed;
+
+  private Deadline(Thread thread) {
+    this.thread = thread;
+  }
+
+  /** Starts the clock for the current thread; {@code budgetNanos <= 0} means no deadline. */
+  static Deadline arm(ScheduledExecutorService timers, long startNanos, long budgetNanos) {
+    if (budgetNanos <= 0) return NONE;
+    Deadline d = new Deadline(Thread.currentThread());
+    long left = startNanos + budgetNanos - System.nanoTime();
+    if (left <= 0) {
+      d.expired = true; // spent waiting for admission: don't start at all
+    } else {
+      d.timer = timers.schedule(d::expire, left, TimeUnit.NANOSECONDS);
+    }
+    return d;
+  }
+
+  private synchronized void expire() {
+    if (closed) return;
+    expired = true;
+    thread.interrupt();
+  }
+
+  synchronized boolean expired() {
+    return expired;
+  }
+
+  /**
+   * Runs one annotator stage unless the budget is already spent. Returns false when it was skipped
+   * or cut short; the annotation must then be treated as missing this stage.
+   */
+  boolean annotate(AnnotationPipeline stage, Annotation ann) {
+    if (expired()) return false;
+    try {
+      stage.annotate(ann);
+      return true;
+    } catch (RuntimeInterruptedException e) {
+      if (!expired()) throw e; // someone else interrupted us (e.g. a cancelled batch)
+      return false;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (thread == null) return;
+    boolean fired;
+    synchronized (this) {
+      closed = true;
+      fired = expired && timer != null;
+    }
+    if (timer != null) timer.cancel(false);
+    // expire() interrupts under the lock, so once closed no interrupt can still be on its way
+    if (fired) Thread.interrupted();
+  }
+}
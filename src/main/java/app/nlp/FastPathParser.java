@@ -0,0 +1,178 @@
+package app.nlp;
+
+import app.nlp.NlpService.Evidence;
+import app.nlp.NlpService.ParseResult;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * First parsing tier: resolves "boring" utterances ("send $15 to @gaby", "pagar 20 euros a Juan")
+ * with the intent lexicon, the money scanner and a preposition rule, without touching CoreNLP.
+ * Anything ambiguous is reported as not confident so the caller can escalate.
+ */
+final class FastPathParser {
+
+  private static final Set<String> PREPOSITIONS = Set.of("to", "a", "para");
+  // Words that end a recipient phrase: other prepositions, conjunctions, time adverbs
+  private static final Set<String> RECIPIENT_STOP =
+      Set.of(
+          "for",
+          "from",
+          "on",
+          "at",
+          "by",
+          "with",
+          "in",
+          "of",
+          "and",
+          "or",
+          "now",
+          "today",
+          "tomorrow",
+          "please",
+          "por",
+          "de",
+          "con",
+          "en",
+          "y",
+          "o",
+          "hoy",
+          "mañana",
+          "ahora");
+  // Any of these means the utterance needs real parsing
+  private static final Set<String> NEGATIONS =
+      Set.of("not", "don't", "dont", "never", "no", "cancel", "nunca", "cancelar");
+  private static final String LEADING_PUNCT = "¿¡\"'([";
+  private static final String TRAILING_PUNCT = ".,!?;:\"')]";
+  private static final Pattern SENTENCE_BREAK = Pattern.compile("[.!?]\\s+\\p{L}");
+
+  private final int maxTokens;
+  private final int maxRecipientTokens;
+
+  FastPathParser(int maxTokens, int maxRecipientTokens) {
+    this.maxTokens = maxTokens;
+    this.maxRecipientTokens = maxRecipientTokens;
+  }
+
+  /** Best-effort fast-tier result and whether it is safe to return without escalating. */
+  record Attempt(ParseResult result, boolean confident) {}
+
+  /** A token and the offset of its first char in the input. */
+  record Token(String text, int begin) {
+    int end() {
+      return begin + text.length();
+    }
+  }
+
+  Attempt parse(String input) {
+    return parse(input, Lexicon.defaults());
+  }
+
+  Attempt parse(String input, Lexicon lex) {
+    ParseResult out = new ParseResult();
+    out.tier = ParseResult.TIER_FAST;
+    out.input = input;
+    List<Token> tokens = tokenize(input);
+    boolean confident = tokens.size() <= maxTokens && !SENTENCE_BREAK.matcher(input).find();
+
+    // 1) intent: exactly one canonical intent among the tokens
+    for (Token tok : tokens) {
+      String lw = tok.text().toLowerCase(Locale.ROOT);
+      if (NEGATIONS.contains(lw)) confident = false;
+      String canonical = lex.intent(tok.text());
+      if (canonical == null) continue;
+      if (out.intent == null) {
+        out.intent = canonical;
+        out.intentEvidence = Evidence.of("intent", "fast", tok.begin(), tok.end());
+      } else if (!out.intent.equals(canonical)) {
+        confident = false;
+      }
+    }
+
+    // 2) amount: exactly one money mention, normalized with the shared rules
+    TextScanner.Hits hits = TextScanner.scan(lex, input);
+    TextScanner.Money money = hits.money();
+    if (money != null) {
+      out.amountText = money.text(input);
+      out.setAmount(money.amount(input), money.currency);
+      out.amountEvidence = Evidence.of("amount", "fast", money.start, money.end);
+    }
+    if (hits.moneyCount != 1) confident = false;
+
+    // 3) recipient: first non-empty phrase after "to"/"a"/"para"; a second one is ambiguous
+    int candidates = 0;
+    for (int i = 0; i < tokens.size(); i++) {
+      if (!PREPOSITIONS.contains(tokens.get(i).text().toLowerCase(Locale.ROOT))) continue;
+      List<Token> phrase = recipientPhrase(lex, tokens, i + 1);
+      if (phrase.isEmpty()) continue;
+      if (++candidates == 1) {
+        StringJoiner words = new StringJoiner(" ");
+        for (Token t : phrase) words.add(t.text());
+        out.recipient = NlpService.cleanRecipient(words.toString());
+        int begin = phrase.get(0).begin();
+        int end = phrase.get(phrase.size() - 1).end();
+        out.recipientEvidence = Evidence.of("recipient", "fast", input, begin, end, out.recipient);
+        if (phrase.size() > maxRecipientTokens) confident = false;
+      }
+    }
+    if (candidates > 1) confident = false;
+
+    confident &=
+        out.intent != null
+            && out.amountValue != null
+            && out.currency != null
+            && out.recipient != null
+            && !out.recipient.isEmpty();
+    if (!confident) doubt(out); // only returned as a degraded answer
+    return new Attempt(out, confident);
+  }
+
+  // An ambiguous utterance makes every field found in it less certain
+  private static void doubt(ParseResult out) {
+    if (out.intentEvidence != null) out.intentEvidence = out.intentEvidence.scaled(0.7);
+    if (out.amountEvidence != null) out.amountEvidence = out.amountEvidence.scaled(0.7);
+    if (out.recipientEvidence != null) out.recipientEvidence = out.recipientEvidence.scaled(0.7);
+  }
+
+  private static List<Token> recipientPhrase(Lexicon lex, List<Token> tokens, int from) {
+    List<Token> phrase = new ArrayList<>();
+    for (int j = from; j < tokens.size(); j++) {
+      String w = tokens.get(j).text();
+      String lw = w.toLowerCase(Locale.ROOT);
+      if (!w.startsWith("@")) {
+        char c = w.charAt(0);
+        if (!Character.isLetter(c)) break; // punctuation, digits, currency symbols
+        if (PREPOSITIONS.contains(lw) || RECIPIENT_STOP.contains(lw)) break;
+        if (NEGATIONS.contains(lw) || lex.intent(w) != null) break;
+      }
+      phrase.add(tokens.get(j));
+    }
+    return phrase;
+  }
+
+  /** Whitespace tokenizer that peels leading/trailing punctuation into their own tokens. */
+  static List<Token> tokenize(String input) {
+    List<Token> tokens = new ArrayList<>();
+    int n = input.length();
+    int i = 0;
+    while (i < n) {
+      if (Character.isWhitespace(input.charAt(i))) {
+        i++;
+        continue;
+      }
+      int b = i;
+      int e = i;
+      while (e < n && !Character.isWhitespace(input.charAt(e))) e++;
+      i = e;
+      while (b < e && LEADING_PUNCT.indexOf(input.charAt(b)) >= 0) {
+        tokens.add(new Token(String.valueOf(input.charAt(b)), b));
+        b++;
+      }
+      int tail = e;
+      while (tail > b && TRAILING_PUNCT.indexOf(input.charAt(tail - 1)) >= 0) tail--;
+      if (tail > b) tokens.add(new Token(input.substring(b, tail), b));
+      for (int k = tail; k < e; k++) tokens.add(new Token(String.valueOf(input.charAt(k)), k));
+    }
+    return tokens;
+  }
+}
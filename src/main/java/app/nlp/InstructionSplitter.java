@@ -0,0 +1,103 @@
+package app.nlp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits free text into candidate payment instructions: sentences first, then clauses joined by a
+ * conjunction or comma when both sides carry their own amount ("pay John $20 and Ana 15 euros"). A
+ * conjunction between names alone ("send $5 to Tom and Jerry") is not a split point.
+ */
+final class InstructionSplitter {
+
+  private static final Set<String> CONJUNCTIONS = Set.of("and", "then", "plus", "y", "luego", "e");
+  // Abbreviations whose trailing '.' does not end a sentence
+  private static final Set<String> ABBREVIATIONS =
+      Set.of("mr", "mrs", "ms", "dr", "sr", "sra", "srta", "st", "jr", "inc", "co", "ltd");
+
+  private InstructionSplitter() {}
+
+  static List<String> split(String input) {
+    return split(input, Lexicon.defaults());
+  }
+
+  static List<String> split(String input, Lexicon lex) {
+    List<String> out = new ArrayList<>();
+    if (input == null || input.isBlank()) return out;
+    int start = 0;
+    for (int i = 0; i < input.length(); i++) {
+      if (isSentenceEnd(input, i)) {
+        splitClauses(lex, input, start, i + 1, out);
+        start = i + 1;
+      }
+    }
+    splitClauses(lex, input, start, input.length(), out);
+    return out;
+  }
+
+  // '.', '!', '?', ';' followed by whitespace or end of text, or a line break
+  private static boolean isSentenceEnd(String s, int i) {
+    char c = s.charAt(i);
+    if (c == '\n') return true;
+    if (c != '.' && c != '!' && c != '?' && c != ';') return false;
+    if (i + 1 < s.length() && !TextScanner.isSpace(s.charAt(i + 1))) return false;
+    return c != '.' || !ABBREVIATIONS.contains(wordBefore(s, i));
+  }
+
+  private static String wordBefore(String s, int end) {
+    int b = end;
+    while (b > 0 && TextScanner.isWordChar(s.charAt(b - 1))) b--;
+    return s.substring(b, end).toLowerCase(Locale.ROOT);
+  }
+
+  // The sentence is scanned for money once; a separator splits when the nearest mention before it
+  // lies inside the current clause and another mention follows it, so the cost stays linear
+  private static void splitClauses(Lexicon lex, String s, int from, int to, List<String> out) {
+    TextScanner.Hits money = TextScanner.scanMoneySpans(lex, s.subSequence(from, to));
+    int before = -1; // last mention that ends by i
+    int after = 0; // first mention that starts at or after the separator's end
+    int start = from;
+    int i = from;
+    while (i < to) {
+      int sepEnd = separatorEnd(s, i, to);
+      if (sepEnd > i) {
+        while (before + 1 < money.moneyCount && from + money.moneyEnd(before + 1) <= i) before++;
+        while (after < money.moneyCount && from + money.moneyStart(after) < sepEnd) after++;
+        if (before >= 0 && from + money.moneyStart(before) >= start && after < money.moneyCount) {
+          add(s, start, i, out);
+          start = sepEnd;
+          i = sepEnd;
+          continue;
+        }
+      }
+      i++;
+    }
+    add(s, start, to, out);
+  }
+
+  /** End of a clause separator (",", or a conjunction word) starting at {@code i}, else i. */
+  private static int separatorEnd(String s, int i, int to) {
+    char c = s.charAt(i);
+    if (c == ',') {
+      // A comma between digits is a thousands separator, not a clause break
+      boolean inNumber =
+          i > 0
+              && i + 1 < to
+              && Character.isDigit(s.charAt(i - 1))
+              && Character.isDigit(s.charAt(i + 1));
+      return inNumber ? i : i + 1;
+    }
+    if (!TextScanner.isWordChar(c) || (i > 0 && TextScanner.isWordChar(s.charAt(i - 1)))) return i;
+    int e = i;
+    while (e < to && TextScanner.isWordChar(s.charAt(e))) e++;
+    String word = s.substring(i, e).toLowerCase(Locale.ROOT);
+    return CONJUNCTIONS.contains(word) ? e : i;
+  }
+
+  private static void add(String s, int from, int to, List<String> out) {
+    String part = s.substring(from, to).strip();
+    if (!part.isEmpty() && !TextScanner.isAllPunct(part)) out.add(part);
+  }
+}
@@ -0,0 +1,226 @@
+package app.nlp;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Small trained intent model: hashed word unigrams, word bigrams and in-word char trigrams feeding
+ * a multinomial logistic regression. Prediction is one pass over the text and a dot product per
+ * label (microseconds), which lets a confident prediction stand in for the dependency parse when
+ * the lexicon rules find no intent. Text is case and accent folded and every number reads as one
+ * token, so "Envíale 20" and "enviale 35" share features.
+ *
+ * <p>Labels are canonical intents plus {@link #NONE} for text that is not a payment instruction.
+ * Train with {@link #train} (or the {@code app.cli.TrainIntentClassifier} command) and persist with
+ * {@link #save}; instances are immutable and thread-safe.
+ */
+public final class IntentClassifier {
+
+  /** Label for text without a payment intent. */
+  public static final String NONE = "none";
+
+  /** One labelled utterance; {@code label} is a canonical intent or {@link #NONE}. */
+  public record Example(String text, String label) {}
+
+  /** Most likely label and its softmax probability. */
+  public record Prediction(String label, double probability) {}
+
+  private static final int MAGIC = 0x494e5443; // "INTC"
+  private static final int VERSION = 1;
+  // Seeds keep the three feature kinds apart in the shared hash space
+  private static final int SEED_WORD = 0x2f1a3b7d;
+  private static final int SEED_BIGRAM = 0x5bd1e995;
+  private static final int SEED_TRIGRAM = 0x1b873593;
+  private static final int FNV_PRIME = 0x01000193;
+
+  private final String[] labels;
+  private final int mask; // buckets - 1
+  private final float[] weights; // [label * buckets + bucket]
+  private final float[] bias;
+
+  private IntentClassifier(String[] labels, int buckets, float[] weights, float[] bias) {
+    this.labels = labels;
+    this.mask = buckets - 1;
+    this.weights = weights;
+    this.bias = bias;
+  }
+
+  public List<String> labels() {
+    return List.of(labels);
+  }
+
+  /** Hash of labels and weights: equal for the same model file, whoever loaded it. */
+  public int fingerprint() {
+    return 31 * (31 * Arrays.hashCode(labels) + Arrays.hashCode(bias)) + Arrays.hashCode(weights);
+  }
+
+  public Prediction predict(CharSequence text) {
+    double[] p = probabilities(features(text, mask));
+    int best = 0;
+    for (int k = 1; k < p.length; k++) if (p[k] > p[best]) best = k;
+    return new Prediction(labels[best], p[best]);
+  }
+
+  private double[] probabilities(int[] features) {
+    int buckets = mask + 1;
+    double[] scores = new double[labels.length];
+    double max = Double.NEGATIVE_INFINITY;
+    for (int k = 0; k < labels.length; k++) {
+      double s = bias[k];
+      int base = k * buckets;
+      for (int f : features) s += weights[base + f];
+      scores[k] = s;
+      max = Math.max(max, s);
+    }
+    double sum = 0;
+    for (int k = 0; k < scores.length; k++) {
+      scores[k] = Math.exp(scores[k] - max);
+      sum += scores[k];
+    }
+    for (int k = 0; k < scores.length; k++) scores[k] /= sum;
+    return scores;
+  }
+
+  /**
+   * Fits a model with AdaGrad-scaled SGD on the log loss, {@code epochs} passes in a seeded random
+   * order. {@code buckets} (a power of two) bounds the model at {@code labels * buckets} floats
+   * whatever the vocabulary; collisions only matter once it is small next to the feature count.
+   */
+  public static IntentClassifier train(List<Example> examples, int buckets, int epochs, long seed) {
+    if (Integer.bitCount(buckets) != 1) {
+      throw new IllegalArgumentException("buckets must be a power of two: " + buckets);
+    }
+    if (examples.isEmpty()) throw new IllegalArgumentException("no training examples");
+    SortedSet<String> names = new TreeSet<>();
+    for (Example e : examples) names.add(e.label());
+    String[] labels = names.toArray(new String[0]);
+    Map<String, Integer> index = new HashMap<>();
+    for (int k = 0; k < labels.length; k++) index.put(labels[k], k);
+
+    int[][] features = new int[examples.size()][];
+    int[] gold = new int[examples.size()];
+    for (int i = 0; i < examples.size(); i++) {
+      features[i] = features(examples.get(i).text(), buckets - 1);
+      gold[i] = index.get(examples.get(i).label());
+    }
+    IntentClassifier model =
+        new IntentClassifier(
+            labels, buckets, new float[labels.length * buckets], new float[labels.length]);
+    float[] g2 = new float[model.weights.length]; // AdaGrad squared-gradient sums
+    float[] b2 = new float[labels.length];
+    double rate = 0.5;
+    Random random = new Random(seed);
+    int[] order = new int[examples.size()];
+    for (int i = 0; i < order.length; i++) order[i] = i;
+    for (int epoch = 0; epoch < epochs; epoch++) {
+      for (int i = order.length - 1; i > 0; i--) {
+        int j = random.nextInt(i + 1);
+        int t = order[i];
+        order[i] = order[j];
+        order[j] = t;
+      }
+      for (int i : order) {
+        double[] p = model.probabilities(features[i]);
+        for (int k = 0; k < labels.length; k++) {
+          float grad = (float) (p[k] - (k == gold[i] ? 1 : 0));
+          if (grad == 0) continue;
+          b2[k] += grad * grad;
+          model.bias[k] -= (float) (rate * grad / Math.sqrt(b2[k]));
+          int base = k * buckets;
+          for (int f : features[i]) {
+            int w = base + f;
+            g2[w] += grad * grad;
+            model.weights[w] -= (float) (rate * grad / Math.sqrt(g2[w]));
+          }
+        }
+      }
+    }
+    return model;
+  }
+
+  // Hashed feature ids; duplicates are kept so repeated words weigh more, as in a bag of words
+  static int[] features(CharSequence text, int mask) {
+    int[] out = new int[16];
+    int n = 0;
+    int prev = 0; // hash of the previous word, 0 at the start
+    int len = text.length();
+    int i = 0;
+    while (i < len) {
+      char c = text.charAt(i);
+      if (!TextScanner.isWordChar(c)) {
+        i++;
+        continue;
+      }
+      int end = i;
+      boolean number = true;
+      while (end < len && TextScanner.isWordChar(text.charAt(end))) {
+        if (!Character.isDigit(text.charAt(end))) number = false;
+        end++;
+      }
+      int word = number ? 0x7fffffff : hash(SEED_WORD, text, i, end);
+      if (n + 3 + (end - i) > out.length) out = Arrays.copyOf(out, (out.length + end - i) * 2);
+      out[n++] = word & mask;
+      out[n++] = (mix(SEED_BIGRAM, prev) * FNV_PRIME ^ word) & mask;
+      prev = word;
+      if (!number) {
+        // "^pa", "pag", ..., "ar$" with '^'/'$' marking the word edges
+        for (int k = i - 1; k + 2 <= end; k++) {
+          int h = SEED_TRIGRAM;
+          for (int m = k; m <= k + 2; m++) {
+            char ch = m < i ? '^' : m >= end ? '$' : TextScanner.fold(text.charAt(m));
+            h = (h ^ ch) * FNV_PRIME;
+          }
+          out[n++] = h & mask;
+        }
+      }
+      i = end;
+    }
+    out[n++] = (mix(SEED_BIGRAM, prev) * FNV_PRIME) & mask; // last word, end of text
+    return Arrays.copyOf(out, n);
+  }
+
+  private static int hash(int seed, CharSequence text, int from, int to) {
+    int h = seed;
+    for (int i = from; i < to; i++) h = (h ^ TextScanner.fold(text.charAt(i))) * FNV_PRIME;
+    return h;
+  }
+
+  private static int mix(int seed, int h) {
+    return (seed ^ h) * FNV_PRIME;
+  }
+
+  public void save(Path file) throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(mask + 1);
+      out.writeInt(labels.length);
+      for (String label : labels) out.writeUTF(label);
+      for (float b : bias) out.writeFloat(b);
+      for (float w : weights) out.writeFloat(w);
+    }
+  }
+
+  public static IntentClassifier load(Path file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) throw new IOException(file + " is not an intent model");
+      int version = in.readInt();
+      if (version != VERSION) throw new IOException(file + ": unsupported version " + version);
+      int buckets = in.readInt();
+      String[] labels = new String[in.readInt()];
+      if (Integer.bitCount(buckets) != 1 || labels.length == 0) {
+        throw new IOException(file + ": corrupt header");
+      }
+      for (int k = 0; k < labels.length; k++) labels[k] = in.readUTF();
+      float[] bias = new float[labels.length];
+      for (int k = 0; k < bias.length; k++) bias[k] = in.readFloat();
+      float[] weights = new float[labels.length * buckets];
+      for (int w = 0; w < weights.length; w++) weights[w] = in.readFloat();
+      return new IntentClassifier(labels, buckets, weights, bias);
+    }
+  }
+}
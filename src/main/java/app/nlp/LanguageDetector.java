@@ -0,0 +1,64 @@
+package app.nlp;
+
+/**
+ * Cheap English/Spanish language ID for routing to a per-language CoreNLP pipeline. One walk over
+ * the text scores function words, common payment words and Spanish-only characters (ñ, ¿, ¡,
+ * accented vowels); no model, no allocation. Payment utterances are short and these cues are dense
+ * in them, so the scores rarely tie; ties go to the caller's default.
+ */
+final class LanguageDetector {
+
+  static final String ENGLISH = "en";
+  static final String SPANISH = "es";
+
+  private static final int KIND_EN = 1;
+  private static final int KIND_ES = 2;
+
+  // "a" is left out on purpose: it is both a Spanish preposition and the English article
+  private static final String[] ENGLISH_WORDS =
+      ("to the for and my your please of i me you with on from is send pay transfer wire "
+              + "dollars bucks pounds today tomorrow now mom dad rent lunch owe")
+          .split(" ");
+  private static final String[] SPANISH_WORDS =
+      ("para de del al el la los las y que en por con mi tu su un una favor quiero enviar "
+              + "envia envie pagar paga pague transferir transfiere mandar manda abonar dolares "
+              + "libras hoy manana ahora mama papa renta alquiler almuerzo debo")
+          .split(" ");
+
+  private static final CharTrie WORDS = new CharTrie();
+
+  static {
+    for (String w : ENGLISH_WORDS) WORDS.put(w, KIND_EN, 0, ENGLISH);
+    for (String w : SPANISH_WORDS) WORDS.put(w, KIND_ES, 0, SPANISH);
+  }
+
+  private LanguageDetector() {}
+
+  /** "en" or "es" by majority of cues; {@code fallback} when there are none or they tie. */
+  static String detect(CharSequence text, String fallback) {
+    int score = 0; // > 0 leans Spanish
+    int n = text.length();
+    int i = 0;
+    while (i < n) {
+      char c = text.charAt(i);
+      if (!TextScanner.isWordChar(c)) {
+        if (c == '¿' || c == '¡') score += 2;
+        i++;
+        continue;
+      }
+      int end = i;
+      boolean accented = false;
+      while (end < n && TextScanner.isWordChar(text.charAt(end))) {
+        if (text.charAt(end) > 0x7f) accented = true;
+        end++;
+      }
+      int node = WORDS.find(text, i, end);
+      if (node >= 0) score += WORDS.kind(node) == KIND_ES ? 1 : -1;
+      else if (accented) score++; // "dólares", "mañana", "envía" not in the lists
+      i = end;
+    }
+    if (score > 0) return SPANISH;
+    if (score < 0) return ENGLISH;
+    return fallback;
+  }
+}
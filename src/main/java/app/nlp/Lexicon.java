@@ -0,0 +1,190 @@
+package app.nlp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Intent keywords, currency words and currency symbols compiled into char tries. Instances are
+ * immutable: updating the lexicon means parsing a new one and swapping the reference, so readers
+ * never lock. Lookups walk the text in place, so their cost depends on the word, not on how many
+ * entries or languages the lexicon holds.
+ *
+ * <p>File format, one entry per line ({@code #} starts a comment):
+ *
+ * <pre>
+ * intent send = enviar, mandar     keywords; when a text has several, earlier lines win
+ * currency USD = dollar, dollars   currency words accepted after an amount
+ * symbol USD = $                   currency symbols before or after an amount
+ * </pre>
+ */
+final class Lexicon {
+
+  static final String DEFAULT_RESOURCE = "/lexicon.txt";
+
+  private static final int KIND_INTENT = 1;
+  private static final int KIND_CURRENCY = 2;
+
+  private final CharTrie words = new CharTrie(); // intent keywords and currency words
+  private final CharTrie symbols = new CharTrie(); // one-char keys
+  private final List<String> canonicalIntents = new ArrayList<>();
+  private int[] intentIndexByRank = new int[16];
+  private int intentKeywords;
+  private int currencyWords;
+  private int currencySymbols;
+  private long fingerprint; // CRC-32 of the entry lines, comments and blank lines excluded
+  private final String source;
+
+  private Lexicon(String source) {
+    this.source = source;
+  }
+
+  private static final class Defaults {
+    static final Lexicon INSTANCE = loadDefault();
+
+    private static Lexicon loadDefault() {
+      try (InputStream in = Lexicon.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+        if (in == null) throw new IllegalStateException(DEFAULT_RESOURCE + " not on classpath");
+        return parse(new InputStreamReader(in, StandardCharsets.UTF_8), "classpath:lexicon.txt");
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /** The lexicon shipped in the jar. */
+  static Lexicon defaults() {
+    return Defaults.INSTANCE;
+  }
+
+  static Lexicon load(Path path) throws IOException {
+    try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      return parse(in, path.toString());
+    }
+  }
+
+  /** Compiles a lexicon; malformed lines fail with their line number. */
+  static Lexicon parse(Reader reader, String source) throws IOException {
+    Lexicon lex = new Lexicon(source);
+    BufferedReader in = new BufferedReader(reader);
+    CRC32 crc = new CRC32();
+    int lineNo = 0;
+    for (String line = in.readLine(); line != null; line = in.readLine()) {
+      lineNo++;
+      int hash = line.indexOf('#');
+      if (hash >= 0) line = line.substring(0, hash);
+      if (line.isBlank()) continue;
+      crc.update((line.strip() + '\n').getBytes(StandardCharsets.UTF_8));
+      int eq = line.indexOf('=');
+      String[] head = eq > 0 ? line.substring(0, eq).trim().split("\\s+") : new String[0];
+      if (head.length != 2) {
+        throw new IllegalArgumentException(
+            source + ":" + lineNo + ": expected '<intent|currency|symbol> <name> = <entries>'");
+      }
+      String name = head[1];
+      for (String entry : line.substring(eq + 1).split(",")) {
+        String e = entry.trim();
+        if (e.isEmpty()) continue;
+        switch (head[0]) {
+          case "intent" -> lex.addIntent(e, name);
+          case "currency" -> {
+            lex.words.put(e, KIND_CURRENCY, 0, name);
+            lex.currencyWords++;
+          }
+          case "symbol" -> {
+            if (e.length() != 1) {
+              throw new IllegalArgumentException(
+                  source + ":" + lineNo + ": currency symbols are single characters: " + e);
+            }
+            lex.symbols.put(e, KIND_CURRENCY, 0, name);
+            lex.currencySymbols++;
+          }
+          default -> throw new IllegalArgumentException(
+              source + ":" + lineNo + ": unknown entry kind '" + head[0] + "'");
+        }
+      }
+    }
+    if (lex.intentKeywords == 0) throw new IllegalArgumentException(source + ": no intents");
+    lex.fingerprint = crc.getValue();
+    return lex;
+  }
+
+  private void addIntent(String keyword, String canonical) {
+    int index = canonicalIntents.indexOf(canonical);
+    if (index < 0) {
+      if (canonicalIntents.size() == Long.SIZE) {
+        throw new IllegalArgumentException(source + ": more than 64 canonical intents");
+      }
+      index = canonicalIntents.size();
+      canonicalIntents.add(canonical);
+    }
+    int rank = intentKeywords++;
+    if (rank == intentIndexByRank.length) {
+      intentIndexByRank = Arrays.copyOf(intentIndexByRank, rank * 2);
+    }
+    intentIndexByRank[rank] = index;
+    words.put(keyword, KIND_INTENT, rank, canonical);
+  }
+
+  // ---- lookups (text[from, to) is folded on the fly) ----
+
+  /** Trie node of the intent keyword text[from, to), or -1. */
+  int intentNode(CharSequence text, int from, int to) {
+    return words.find(text, from, to, KIND_INTENT);
+  }
+
+  String intentOf(int node) {
+    return words.value(node);
+  }
+
+  /** Priority of a keyword: its position in the file, lower wins. */
+  int intentRank(int node) {
+    return words.num(node);
+  }
+
+  /** Bit of the keyword's canonical intent, to count distinct intents in a text. */
+  long intentBit(int node) {
+    return 1L << intentIndexByRank[words.num(node)];
+  }
+
+  /** Canonical intent of a whole word or lemma ("enviar" -> send), or null. */
+  String intent(CharSequence word) {
+    if (word == null) return null;
+    int node = intentNode(word, 0, word.length());
+    return node >= 0 ? intentOf(node) : null;
+  }
+
+  /** ISO code of the currency word text[from, to), or null. */
+  String currencyWord(CharSequence text, int from, int to) {
+    int node = words.find(text, from, to, KIND_CURRENCY);
+    return node >= 0 ? words.value(node) : null;
+  }
+
+  /** ISO code of a currency symbol, or null for symbols the lexicon does not know. */
+  String currencySymbol(CharSequence text, int at) {
+    int node = symbols.find(text, at, at + 1, KIND_CURRENCY);
+    return node >= 0 ? symbols.value(node) : null;
+  }
+
+  String source() {
+    return source;
+  }
+
+  /** Changes whenever the entries do (not for comments or formatting); stable across restarts. */
+  long fingerprint() {
+    return fingerprint;
+  }
+
+  Map<String, Object> stats() {
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("source", source);
+    out.put("intents", canonicalIntents.size());
+    out.put("intentKeywords", intentKeywords);
+    out.put("currencyWords", currencyWords);
+    out.put("currencySymbols", currencySymbols);
+    return out;
+  }
+}
@@ -0,0 +1,66 @@
+package app.nlp;
+
+import edu.stanford.nlp.pipeline.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads CoreNLP annotators one at a time on background threads so independent models (POS, NER,
+ * depparse) load in parallel. CoreNLP's own AnnotatorPool serializes construction behind a single
+ * lock; this plays the same JVM-wide caching role without the lock.
+ */
+final class ModelLoader {
+
+  private static final Logger log = LoggerFactory.getLogger(ModelLoader.class);
+  private static final AnnotatorImplementations IMPL = new AnnotatorImplementations();
+  private static final Map<String, CompletableFuture<Loaded>> LOADED = new ConcurrentHashMap<>();
+  private static final ExecutorService LOADER =
+      Executors.newCachedThreadPool(
+          r -> {
+            Thread t = new Thread(r, "nlp-model-loader");
+            t.setDaemon(true);
+            return t;
+          });
+
+  /** A loaded annotator and how long it took, for the startup report. */
+  record Loaded(String name, Annotator annotator, long loadMillis) {}
+
+  private ModelLoader() {}
+
+  /**
+   * Starts (or joins) loading one annotator; identical name+props share a single instance. A load
+   * that failed (out of memory, a model jar missing mid-deploy) is not kept: the next call starts a
+   * new one.
+   */
+  static CompletableFuture<Loaded> load(String name, Properties props) {
+    String key = name + new TreeMap<>(props);
+    return LOADED.compute(
+        key,
+        (k, f) ->
+            f == null || f.isCompletedExceptionally()
+                ? CompletableFuture.supplyAsync(() -> create(name, props), LOADER)
+                : f);
+  }
+
+  private static Loaded create(String name, Properties props) {
+    long t0 = System.nanoTime();
+    Annotator annotator =
+        switch (name) {
+          case "tokenize" -> IMPL.tokenizer(props);
+          case "pos" -> IMPL.posTagger(props);
+          case "lemma" -> IMPL.morpha(props, false);
+          case "ner" -> IMPL.ner(props);
+          case "entitymentions" -> IMPL.entityMentions(props, name);
+          case "depparse" -> IMPL.dependencies(props);
+          default -> throw new IllegalArgumentException("Unsupported annotator: " + name);
+        };
+    long millis = (System.nanoTime() - t0) / 1_000_000;
+    log.info("Loaded CoreNLP annotator {} in {} ms", name, millis);
+    return new Loaded(name, annotator, millis);
+  }
+}
@@ -1,343 +1,1566 @@
 package app.nlp;
 
+import app.config.NlpProperties;
 import edu.stanford.nlp.ling.*;
 import edu.stanford.nlp.pipeline.*;
 import edu.stanford.nlp.semgraph.*;
 import edu.stanford.nlp.util.*;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 @Service
-public class NlpService {
-
-  private final StanfordCoreNLP pipeline;
-  // Map possible (lemmatized or raw) intent words in EN/ES -> canonical intent
-  private static final Map<String, String> INTENT_MAP =
-      Map.ofEntries(
-          Map.entry("pay", "pay"),
-          Map.entry("send", "send"),
-          Map.entry("transfer", "transfer"),
-          // Spanish
-          Map.entry("pagar", "pay"),
-          Map.entry("enviar", "send"),
-          Map.entry("transferir", "transfer"));
+public final class NlpService {
+
+  private static final Logger log = LoggerFactory.getLogger(NlpService.class);
+
+  // Staged pipelines applied incrementally to the same Annotation (see parseWithCoreNlp)
+  private record Pipelines(
+      String language,
+      AnnotationPipeline base, // tokenize(+ssplit),pos,lemma (no lemma outside English)
+      AnnotationPipeline ner, // ner,entitymentions
+      AnnotationPipeline depparse) {}
+
+  // One pipeline per enabled language with models on the classpath; null until loaded and warm
+  private volatile Map<String, Pipelines> pipelines;
+  private final CompletableFuture<Map<String, Pipelines>> ready = new CompletableFuture<>();
+  private final List<String> warmupSamples;
+  private final boolean asyncLoad; // nlp.startup.async-load
+  private final AtomicBoolean started = new AtomicBoolean();
+  private final List<String> languages; // loaded languages, the first is the default
+  private final boolean leanModels; // nlp.models.profile=lean
+  private volatile long modelHeapBytes = -1; // heap retained by models, -1 until measured
+  private final Map<String, Long> modelLoadMillis = new ConcurrentHashMap<>();
+  private final ParseMetrics metrics;
+  private final FastPathParser fastPath; // also serves best-effort answers while loading
+  private final boolean fastTierEnabled;
+  private final ParseCache cache; // null when nlp.cache.capacity is 0
+  private final ResultStore store; // null unless nlp.store.path is set
+  private final ExecutorService batchExecutor;
+  private final int maxBatchSize;
+  private final ExecutorService multiExecutor;
+  private final int maxInstructions;
+  private final AdmissionControl admission; // null when admission control is disabled
+  private final long budgetNanos; // default CoreNLP-tier deadline, 0 = none
+  private final int maxInputLength;
+  // Interrupts parses over budget; also schedules retries of a failed model load
+  private final ScheduledThreadPoolExecutor deadlineTimer;
+  private final IntentClassifier classifier; // null unless nlp.classifier.path is set
+  private final double classifierMinConfidence;
+  private final Map<Flight, CompletableFuture<ParseResult>> inFlight = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor computeExecutor; // CoreNLP work handed off by virtual threads
+  private final boolean offloadVirtualThreads;
+  private final ExecutorService asyncExecutor; // one virtual thread per parseAsync call
+  // Intent keywords and currencies; replaced wholesale on reload, read once per parse
+  private volatile Lexicon lexicon;
+  // Shared while a result is written to the cache or store, exclusive while a reload swaps the
+  // lexicon and clears them: no answer of the old lexicon lands after the clear
+  private final ReadWriteLock lexiconSwap = new ReentrantReadWriteLock();
+  private final Path lexiconPath; // null when using the bundled lexicon
+  private volatile FileTime lexiconModified;
+  private final long lexiconReloadMillis; // 0 when hot reload is off
+  private final ScheduledExecutorService lexiconWatcher; // null when hot reload is off
 
   public NlpService() {
-    Properties props = new Properties();
-    // Include 'entitymentions' to populate sentence-level CoreEntityMention list
-    props.setProperty("annotators", "tokenize,ssplit,pos,lemma,ner,entitymentions,depparse");
-    props.setProperty("ner.applyFineGrained", "false");
-    props.setProperty("tokenize.options", "ptb3Escaping=false"); // keeps @handles, €
-    this.pipeline = new StanfordCoreNLP(props);
+    this(new NlpProperties());
   }
 
-  public ParseResult parse(String input) {
-    ParseResult out = new ParseResult();
-    if (input == null || input.isBlank()) return out;
-    Annotation ann = new Annotation(input);
-    pipeline.annotate(ann);
+  public NlpService(NlpProperties config) {
+    this(config, new SimpleMeterRegistry());
+  }
 
-    List<CoreMap> sentences = ann.get(CoreAnnotations.SentencesAnnotation.class);
+  @Autowired
+  public NlpService(NlpProperties config, MeterRegistry registry) {
+    this.metrics = new ParseMetrics(registry);
+    NlpProperties.FastTier fast = config.getFastTier();
+    this.fastPath = new FastPathParser(fast.getMaxTokens(), fast.getMaxRecipientTokens());
+    this.fastTierEnabled = fast.isEnabled();
+    NlpProperties.Cache cacheConfig = config.getCache();
+    this.cache =
+        cacheConfig.getCapacity() > 0
+            ? new ParseCache(
+                cacheConfig.getCapacity(),
+                cacheConfig.getTtl().toNanos(),
+                ParseCache.Policy.valueOf(cacheConfig.getPolicy().toUpperCase(Locale.ROOT)))
+            : null;
+    NlpProperties.Batch batch = config.getBatch();
+    int threads =
+        batch.getThreads() > 0
+            ? batch.getThreads()
+            : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    this.batchExecutor = Executors.newFixedThreadPool(threads, daemonThreads("nlp-batch-"));
+    this.maxBatchSize = batch.getMaxSize();
+    NlpProperties.Multi multi = config.getMulti();
+    this.multiExecutor =
+        Executors.newFixedThreadPool(
+            multi.getThreads() > 0
+                ? multi.getThreads()
+                : Runtime.getRuntime().availableProcessors(),
+            daemonThreads("nlp-multi-"));
+    this.maxInstructions = multi.getMaxInstructions();
+    NlpProperties.Admission adm = config.getAdmission();
+    this.admission =
+        adm.isEnabled()
+            ? new AdmissionControl(
+                adm.getMaxInFlight() > 0
+                    ? adm.getMaxInFlight()
+                    : Runtime.getRuntime().availableProcessors(),
+                adm.getMaxQueue(),
+                adm.getMaxWait().toNanos())
+            : null;
+    NlpProperties.Limits limits = config.getLimits();
+    this.budgetNanos = limits.getBudget().toNanos();
+    this.maxInputLength = limits.getMaxInputLength();
+    this.deadlineTimer = new ScheduledThreadPoolExecutor(1, daemonThreads("nlp-deadline-"));
+    deadlineTimer.setRemoveOnCancelPolicy(true); // nearly every deadline is cancelled, not hit
+    NlpProperties.Classifier model = config.getClassifier();
+    this.classifier = model.getPath().isBlank() ? null : loadClassifier(Path.of(model.getPath()));
+    this.classifierMinConfidence = model.getMinConfidence();
+    NlpProperties.Lexicon lex = config.getLexicon();
+    this.lexiconPath = lex.getPath().isBlank() ? null : Path.of(lex.getPath());
+    if (lexiconPath == null) {
+      this.lexicon = Lexicon.defaults();
+    } else {
+      try {
+        this.lexiconModified = Files.getLastModifiedTime(lexiconPath);
+        this.lexicon = Lexicon.load(lexiconPath);
+      } catch (IOException | IllegalArgumentException e) {
+        throw new IllegalStateException("Cannot load lexicon " + lexiconPath, e);
+      }
+      log.info("Loaded lexicon {}: {}", lexiconPath, lexicon.stats());
+    }
+    this.lexiconReloadMillis = lexiconPath == null ? 0 : lex.getReloadInterval().toMillis();
+    this.lexiconWatcher =
+        lexiconReloadMillis > 0
+            ? Executors.newSingleThreadScheduledExecutor(daemonThreads("nlp-lexicon-"))
+            : null;
+    this.languages = availableLanguages(config.getLanguages().getEnabled());
+    this.leanModels = isLean(config.getModels().getProfile());
+    NlpProperties.Compute compute = config.getCompute();
+    int computeThreads =
+        compute.getThreads() > 0
+            ? compute.getThreads()
+            : Runtime.getRuntime().availableProcessors();
+    this.computeExecutor =
+        new ThreadPoolExecutor(
+            computeThreads,
+            computeThreads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            daemonThreads("nlp-compute-"));
+    this.offloadVirtualThreads = compute.isOffloadVirtualThreads();
+    this.store = openStore(config.getStore());
+    this.asyncExecutor =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("nlp-async-", 1).factory());
+    NlpProperties.Startup startup = config.getStartup();
+    this.warmupSamples = List.copyOf(startup.getWarmupSamples());
+    this.asyncLoad = startup.isAsyncLoad();
+    registerGauges(registry);
+  }
 
-    if (sentences == null || sentences.isEmpty()) return out;
-    CoreMap s = sentences.get(0);
+  /**
+   * Starts loading CoreNLP models, waiting for them unless {@code nlp.startup.async-load}, and the
+   * lexicon watcher. Spring calls it once the service is built; other callers call it after the
+   * constructor. Until models are ready, parses get degraded fast-tier answers. Runs once; later
+   * calls do nothing.
+   */
+  @PostConstruct
+  public void start() {
+    if (!started.compareAndSet(false, true)) return;
+    if (lexiconWatcher != null) {
+      lexiconWatcher.scheduleWithFixedDelay(
+          this::reloadLexiconIfChanged,
+          lexiconReloadMillis,
+          lexiconReloadMillis,
+          TimeUnit.MILLISECONDS);
+    }
+    loadModels(LOAD_RETRY_MIN_MILLIS);
+    if (!asyncLoad) ready.join();
+  }
 
-    // 1) intent from root verb lemma (fallback: first verb in sentence)
-    SemanticGraph graph =
-        s.get(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class);
-    IndexedWord root = (graph != null) ? graph.getFirstRoot() : null;
+  private static final long LOAD_RETRY_MIN_MILLIS = 1_000;
+  private static final long LOAD_RETRY_MAX_MILLIS = 60_000;
 
-    if (root != null) {
-      String lemma = root.get(CoreAnnotations.LemmaAnnotation.class);
-      if (lemma != null) {
-        String canonical = INTENT_MAP.get(lemma.toLowerCase(Locale.ROOT));
-        if (canonical != null) out.intent = canonical;
+  // A failed load fails a blocking startup; in the background it is retried with backoff (the
+  // annotators that did load are reused) so readiness still turns UP once the cause goes away
+  private void loadModels(long retryMillis) {
+    long t0 = System.nanoTime();
+    long heapBefore = usedHeapAfterGc();
+    loadPipelines()
+        .thenApply(all -> warmUp(all, warmupSamples))
+        .whenComplete(
+            (p, err) -> {
+              if (err != null && !asyncLoad) {
+                log.error("Loading CoreNLP models failed", err);
+                ready.completeExceptionally(err);
+                return;
+              }
+              if (err != null) {
+                log.error("Loading CoreNLP models failed, retrying in {} ms", retryMillis, err);
+                long next = Math.min(2 * retryMillis, LOAD_RETRY_MAX_MILLIS);
+                if (!deadlineTimer.isShutdown()) {
+                  deadlineTimer.schedule(
+                      () -> loadModels(next), retryMillis, TimeUnit.MILLISECONDS);
+                }
+                return;
+              }
+              pipelines = p;
+              modelHeapBytes = Math.max(0, usedHeapAfterGc() - heapBefore);
+              log.info(
+                  "CoreNLP models ({} profile, {}) ready in {} ms, ~{} MB heap (per annotator: {})",
+                  leanModels ? "lean" : "full",
+                  p.keySet(),
+                  (System.nanoTime() - t0) / 1_000_000,
+                  modelHeapBytes >> 20,
+                  modelLoadMillis);
+              ready.complete(p);
+            });
+  }
+
+  private void registerGauges(MeterRegistry registry) {
+    Gauge.builder("nlp.compute.queue_depth", computeExecutor, e -> e.getQueue().size())
+        .description("CoreNLP parses waiting for a compute thread")
+        .register(registry);
+    if (admission != null) {
+      Gauge.builder("nlp.admission.in_flight", admission, AdmissionControl::inFlight)
+          .description("CoreNLP parses currently running")
+          .register(registry);
+      Gauge.builder("nlp.admission.queue_depth", admission, AdmissionControl::queueDepth)
+          .description("Requests waiting for a CoreNLP parse slot")
+          .register(registry);
+      for (String outcome : List.of("admitted", "rejected", "timedOut")) {
+        FunctionCounter.builder("nlp.admission.requests", admission, a -> a.stats().get(outcome))
+            .tag("outcome", outcome)
+            .register(registry);
+      }
+    }
+    if (store != null) {
+      Gauge.builder("nlp.store.size", store, ResultStore::bytes)
+          .baseUnit("bytes")
+          .register(registry);
+      for (String event : List.of("hits", "misses", "writes", "dropped", "evictions", "errors")) {
+        FunctionCounter.builder("nlp.store.events", store, st -> st.stats().get(event))
+            .tag("event", event)
+            .register(registry);
       }
     }
-    if (out.intent == null) {
-      for (CoreLabel t : s.get(CoreAnnotations.TokensAnnotation.class)) {
-        String pos = t.get(CoreAnnotations.PartOfSpeechAnnotation.class);
-        if (pos != null && pos.startsWith("V")) {
-          String lemma = t.get(CoreAnnotations.LemmaAnnotation.class);
-          if (lemma != null) {
-            String canonical = INTENT_MAP.get(lemma.toLowerCase(Locale.ROOT));
-            if (canonical != null) {
-              out.intent = canonical;
-              break;
-            }
+    if (cache != null) {
+      Gauge.builder("nlp.cache.size", cache, c -> c.stats().get("size")).register(registry);
+      for (String event : List.of("hits", "misses", "evictions", "expirations")) {
+        FunctionCounter.builder("nlp.cache.events", cache, c -> c.stats().get(event))
+            .tag("event", event)
+            .register(registry);
+      }
+    }
+  }
+
+  private ResultStore openStore(NlpProperties.Store config) {
+    if (config.getPath().isBlank()) return null;
+    Path dir = Path.of(config.getPath());
+    try {
+      return new ResultStore(
+          dir,
+          storeGeneration(lexicon),
+          config.getMaxSize().toBytes(),
+          config.getSegmentSize().toBytes(),
+          config.getWriteQueue());
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot open result store " + dir, e);
+    }
+  }
+
+  // Everything besides the text that decides a CoreNLP-tier result; stored results of another
+  // generation are discarded
+  private String storeGeneration(Lexicon lex) {
+    return String.format(
+        Locale.ROOT,
+        "lexicon=%08x models=%s languages=%s classifier=%s",
+        lex.fingerprint(),
+        leanModels ? "lean" : "full",
+        String.join(",", languages),
+        classifier == null
+            ? "none"
+            : String.format(
+                Locale.ROOT, "%08x@%s", classifier.fingerprint(), classifierMinConfidence));
+  }
+
+  private static IntentClassifier loadClassifier(Path path) {
+    try {
+      IntentClassifier model = IntentClassifier.load(path);
+      log.info("Intent classifier {} loaded, labels {}", path, model.labels());
+      return model;
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot load intent classifier " + path, e);
+    }
+  }
+
+  private static boolean isLean(String profile) {
+    return switch (profile.trim().toLowerCase(Locale.ROOT)) {
+      case "full" -> false;
+      case "lean" -> true;
+      default -> throw new IllegalArgumentException("Unknown model profile: " + profile);
+    };
+  }
+
+  // Used heap after a full GC. Annotators shared with an earlier NlpService in the same JVM were
+  // already counted there, so a second instance reports roughly nothing.
+  private static long usedHeapAfterGc() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    memory.gc();
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  // Shipped in the Spanish models jar; its presence tells whether Spanish can be loaded
+  private static final String SPANISH_PROPERTIES = "/StanfordCoreNLP-spanish.properties";
+
+  // Enabled languages whose models are on the classpath; English models always are
+  private static List<String> availableLanguages(List<String> enabled) {
+    List<String> out = new ArrayList<>();
+    for (String lang : enabled) {
+      String code = lang.trim().toLowerCase(Locale.ROOT);
+      switch (code) {
+        case LanguageDetector.ENGLISH -> out.add(code);
+        case LanguageDetector.SPANISH -> {
+          if (NlpService.class.getResource(SPANISH_PROPERTIES) != null) {
+            out.add(code);
+          } else {
+            log.warn("Spanish models not on the classpath (build with -Pspanish), skipping es");
           }
         }
+        default -> throw new IllegalArgumentException("Unsupported language: " + lang);
       }
     }
-    // Final fallback for Spanish/English: raw-text keyword scan
-    if (out.intent == null) {
-      String low = input.toLowerCase(Locale.ROOT);
-      if (containsWord(low, "enviar")) out.intent = "send";
-      else if (containsWord(low, "transferir")) out.intent = "transfer";
-      else if (containsWord(low, "pagar")) out.intent = "pay";
-      else if (containsWord(low, "send")) out.intent = "send";
-      else if (containsWord(low, "transfer")) out.intent = "transfer";
-      else if (containsWord(low, "pay")) out.intent = "pay";
-    }
-
-    // 2) extract MONEY and PERSON mentions
-    String money = null;
-    String person = null;
-    // Use MentionsAnnotation which yields List<CoreMap> for entity mentions
-    List<CoreMap> mentions = s.get(CoreAnnotations.MentionsAnnotation.class);
-    if (mentions != null) {
-      for (CoreMap m : mentions) {
-        String ent = m.get(CoreAnnotations.EntityTypeAnnotation.class);
-        String txt = m.get(CoreAnnotations.TextAnnotation.class);
-        if (ent == null || txt == null) continue;
-        if (money == null && "MONEY".equals(ent)) money = txt;
-        if (person == null && "PERSON".equals(ent)) person = txt;
+    if (out.isEmpty()) {
+      log.warn("No enabled language has models; falling back to English");
+      out.add(LanguageDetector.ENGLISH);
+    }
+    return List.copyOf(out);
+  }
+
+  // Every annotator of every language loads in parallel; stages are assembled once all are in
+  private CompletableFuture<Map<String, Pipelines>> loadPipelines() {
+    List<CompletableFuture<Pipelines>> loading = new ArrayList<>();
+    for (String lang : languages) {
+      loading.add(lang.equals(LanguageDetector.SPANISH) ? loadSpanish() : loadEnglish());
+    }
+    return CompletableFuture.allOf(loading.toArray(CompletableFuture[]::new))
+        .thenApply(
+            v -> {
+              Map<String, Pipelines> all = new LinkedHashMap<>();
+              for (CompletableFuture<Pipelines> f : loading) all.put(f.join().language(), f.join());
+              return Collections.unmodifiableMap(all);
+            });
+  }
+
+  private CompletableFuture<Pipelines> loadEnglish() {
+    Properties tokenize = new Properties();
+    tokenize.setProperty("tokenize.options", "ptb3Escaping=false"); // keeps @handles, €
+    Properties ner = new Properties();
+    ner.setProperty("ner.applyFineGrained", "false");
+    if (leanModels) {
+      // PERSON/ORGANIZATION from the 3-class CRF alone; MONEY still comes from the numeric
+      // classifiers, which do not need SUTime
+      ner.setProperty(
+          "ner.model", "edu/stanford/nlp/models/ner/english.all.3class.distsim.crf.ser.gz");
+      ner.setProperty("ner.useSUTime", "false");
+      ner.setProperty("ner.buildEntityMentions", "false");
+    }
+    Properties defaults = new Properties();
+    return loadStages(
+        LanguageDetector.ENGLISH,
+        List.of(
+            // The 4.x tokenizer also splits sentences; a separate ssplit would split twice
+            ModelLoader.load("tokenize", tokenize),
+            ModelLoader.load("pos", defaults),
+            ModelLoader.load("lemma", defaults)),
+        // Include 'entitymentions' to populate sentence-level CoreEntityMention list
+        List.of(ModelLoader.load("ner", ner), ModelLoader.load("entitymentions", ner)),
+        List.of(ModelLoader.load("depparse", defaults)));
+  }
+
+  // Model paths come from the properties file shipped in the Spanish models jar. CoreNLP has no
+  // Spanish lemmatizer, so intent rules read the word form there.
+  private CompletableFuture<Pipelines> loadSpanish() {
+    Properties es = new Properties();
+    try (var in = NlpService.class.getResourceAsStream(SPANISH_PROPERTIES)) {
+      es.load(in);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    es.setProperty("ner.applyFineGrained", "false");
+    return loadStages(
+        LanguageDetector.SPANISH,
+        List.of(ModelLoader.load("tokenize", es), ModelLoader.load("pos", es)),
+        List.of(ModelLoader.load("ner", es), ModelLoader.load("entitymentions", es)),
+        List.of(ModelLoader.load("depparse", es)));
+  }
+
+  private CompletableFuture<Pipelines> loadStages(
+      String lang,
+      List<CompletableFuture<ModelLoader.Loaded>> base,
+      List<CompletableFuture<ModelLoader.Loaded>> nerStage,
+      List<CompletableFuture<ModelLoader.Loaded>> depparse) {
+    List<CompletableFuture<ModelLoader.Loaded>> all = new ArrayList<>(base);
+    all.addAll(nerStage);
+    all.addAll(depparse);
+    return CompletableFuture.allOf(all.toArray(CompletableFuture[]::new))
+        .thenApply(
+            v ->
+                new Pipelines(
+                    lang, stage(lang, base), stage(lang, nerStage), stage(lang, depparse)));
+  }
+
+  private AnnotationPipeline stage(
+      String lang, List<CompletableFuture<ModelLoader.Loaded>> annotators) {
+    AnnotationPipeline stage = new AnnotationPipeline();
+    for (CompletableFuture<ModelLoader.Loaded> f : annotators) {
+      ModelLoader.Loaded loaded = f.join();
+      // English keeps the bare annotator names it always reported
+      String key =
+          lang.equals(LanguageDetector.ENGLISH) ? loaded.name() : lang + "." + loaded.name();
+      modelLoadMillis.put(key, loaded.loadMillis());
+      stage.addAnnotator(loaded.annotator());
+    }
+    return stage;
+  }
+
+  // Push samples through every stage of the pipeline they route to, so lazy model state and JIT
+  // are hot before traffic
+  private Map<String, Pipelines> warmUp(Map<String, Pipelines> all, List<String> samples) {
+    long t0 = System.nanoTime();
+    for (String sample : samples) {
+      Pipelines p = route(all, detectLanguage(sample));
+      Annotation ann = new Annotation(sample);
+      p.base().annotate(ann);
+      p.ner().annotate(ann);
+      p.depparse().annotate(ann);
+    }
+    log.info(
+        "Warmed up CoreNLP with {} samples in {} ms",
+        samples.size(),
+        (System.nanoTime() - t0) / 1_000_000);
+    return all;
+  }
+
+  private String detectLanguage(String input) {
+    return LanguageDetector.detect(input, languages.get(0));
+  }
+
+  // The detected language's pipeline, else the default one
+  private Pipelines route(Map<String, Pipelines> all, String language) {
+    Pipelines p = all.get(language);
+    return p != null ? p : all.get(languages.get(0));
+  }
+
+  /** Languages with a loaded pipeline, default first, and the pipelines that are ready. */
+  public Map<String, Object> languageStats() {
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("enabled", languages);
+    out.put("default", languages.get(0));
+    Map<String, Pipelines> all = pipelines;
+    out.put("ready", all != null ? List.copyOf(all.keySet()) : List.of());
+    return out;
+  }
+
+  /** True once CoreNLP models are loaded and warmed up; until then answers are fast-tier only. */
+  public boolean isReady() {
+    return pipelines != null;
+  }
+
+  /** Blocks until models are ready or the timeout elapses; returns {@link #isReady()}. */
+  public boolean awaitReady(Duration timeout) {
+    try {
+      ready.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      // reported through isReady()/health
+    }
+    return isReady();
+  }
+
+  /** Heap retained by the loaded models in MB, measured once at startup; -1 until then. */
+  public long modelHeapMb() {
+    long bytes = modelHeapBytes;
+    return bytes < 0 ? -1 : bytes >> 20;
+  }
+
+  /** Load time per annotator in ms (filled in as models finish loading). */
+  public Map<String, Long> modelLoadMillis() {
+    return new TreeMap<>(modelLoadMillis);
+  }
+
+  /**
+   * Re-reads the lexicon file and swaps it in; parses already running finish with the old one.
+   * Returns false (keeping the current lexicon) when there is no file or it does not compile.
+   */
+  public boolean reloadLexicon() {
+    if (lexiconPath == null) return false;
+    try {
+      FileTime modified = Files.getLastModifiedTime(lexiconPath);
+      Lexicon next = Lexicon.load(lexiconPath);
+      lexiconSwap.writeLock().lock();
+      try {
+        lexicon = next;
+        // Cached answers were computed with the old keywords
+        if (cache != null) cache.clear();
+        if (store != null) store.reset(storeGeneration(next));
+      } finally {
+        lexiconSwap.writeLock().unlock();
       }
+      lexiconModified = modified;
+      log.info("Loaded lexicon {}: {}", lexiconPath, next.stats());
+      return true;
+    } catch (IOException | IllegalArgumentException e) {
+      log.warn(
+          "Lexicon {} not loaded, keeping {}: {}", lexiconPath, sourceOf(lexicon), e.toString());
+      return false;
     }
-    out.amountText = money;
-    // Normalize amount (value + currency) from the surface text when present
-    if (out.amountText != null) {
-      AmountNorm norm = normalizeAmount(out.amountText);
-      if (norm != null) {
-        out.amountValue = norm.value;
-        out.currency = norm.currency;
+  }
+
+  private void reloadLexiconIfChanged() {
+    try {
+      if (!Files.getLastModifiedTime(lexiconPath).equals(lexiconModified)) reloadLexicon();
+    } catch (IOException e) {
+      log.warn("Cannot check lexicon {}: {}", lexiconPath, e.toString());
+    }
+  }
+
+  private static String sourceOf(Lexicon lex) {
+    return lex != null ? lex.source() : "nothing";
+  }
+
+  /** Source and entry counts of the lexicon in use. */
+  public Map<String, Object> lexiconStats() {
+    return lexicon.stats();
+  }
+
+  /**
+   * Parses one interactive request. CoreNLP work goes through admission control and may throw
+   * {@link ParseRejectedException} when the service is saturated.
+   */
+  public ParseResult parse(String input) {
+    return parse(input, false);
+  }
+
+  /**
+   * Like {@link #parse(String)}; with {@code trace} the result carries a {@link ParseTrace} of the
+   * rules that fired and the dependency graph. Traced parses bypass the cache lookup so the trace
+   * always describes a real run.
+   */
+  public ParseResult parse(String input, boolean trace) {
+    return parse(input, admission, trace, budgetNanos);
+  }
+
+  /**
+   * Like {@link #parse(String, boolean)} with this call's own CoreNLP-tier time budget instead of
+   * {@code nlp.limits.budget} ({@link Duration#ZERO}: no deadline). Past it the heavy stages are
+   * abandoned and the result, flagged {@code degraded}, holds what the cheaper rules found.
+   */
+  public ParseResult parse(String input, boolean trace, Duration budget) {
+    return parse(input, admission, trace, budget.toNanos());
+  }
+
+  /** The default per-request budget ({@code nlp.limits.budget}); zero when there is none. */
+  public Duration budget() {
+    return Duration.ofNanos(budgetNanos);
+  }
+
+  private ParseResult parse(String text, AdmissionControl gate, boolean trace, long budget) {
+    if (text == null || text.isBlank()) return new ParseResult();
+    long t0 = System.nanoTime();
+    metrics.inputLength(text.length());
+    String input = truncate(text, maxInputLength);
+    if (input == text) return parseBounded(input, gate, trace, budget, t0);
+    metrics.truncated();
+    ParseResult out = parseBounded(input, gate, trace, budget, t0);
+    out.truncated = true;
+    if (trace) out.trace.decisions.add(0, "input truncated to " + input.length() + " chars");
+    return out;
+  }
+
+  private ParseResult parseBounded(
+      String input, AdmissionControl gate, boolean trace, long budget, long t0) {
+    Map<String, Pipelines> all = pipelines;
+    Lexicon lex = lexicon;
+    String language = detectLanguage(input);
+    // Tier 1: regex/lexicon only; escalate to CoreNLP unless every field is unambiguous
+    if (fastTierEnabled || all == null) {
+      FastPathParser.Attempt attempt = fastPath.parse(input, lex);
+      attempt.result().language = language;
+      if (fastTierEnabled && attempt.confident()) {
+        return fastAnswer(attempt.result(), "fast", t0, trace, "fast tier confident");
+      }
+      if (all == null) {
+        // Models still loading: a stored answer is as good as a fresh one, else serve the fast
+        // tier's best effort instead of blocking
+        ParseResult saved =
+            store == null || trace ? null : recall(ParseCache.key(input), lex, input);
+        if (saved != null) return timed(saved, "store", t0);
+        attempt.result().degraded = true;
+        return fastAnswer(attempt.result(), "degraded", t0, trace, "models loading, degraded");
       }
     }
+    Pipelines p = route(all, language);
+    Request req = new Request(input, language, lex, trace, t0, budget);
+    // Only CoreNLP results are cached: fast-tier answers are cheaper to recompute than to store
+    String key = ParseCache.key(input);
+    ParseResult cached = cache == null || trace ? null : cache.get(key);
+    if (cached != null) return timed(relocated(cached, input), "cache", t0);
+    ParseResult saved = store == null || trace ? null : recall(key, lex, input);
+    if (saved != null) return timed(saved, "store", t0);
+    if (trace) return corenlpTimed(stored(key, lex, admitted(gate, p, req)), t0);
+    return singleFlight(new Flight(key, lex), gate, p, req, t0);
+  }
 
-    // Fallback: detect money directly from input for Spanish/no-NER cases
-    if (out.amountText == null) {
-      String found = findMoneyInText(input);
-      if (found != null) {
-        out.amountText = found;
-        AmountNorm norm = normalizeAmount(found);
-        if (norm != null) {
-          out.amountValue = norm.value;
-          out.currency = norm.currency;
-        }
+  // Identity of an in-flight CoreNLP parse: same normalized text (as for the cache) parsed with
+  // the same lexicon instance, so a reload never hands out a result of the old one
+  private record Flight(String key, Lexicon lexicon) {}
+
+  /**
+   * Concurrent identical inputs share one CoreNLP run: the first caller parses, later ones wait for
+   * its result (or its exception). The entry lives only while the parse runs, so unlike the cache
+   * nothing outlives the request and it works with caching off. Traced parses never share.
+   */
+  private ParseResult singleFlight(
+      Flight flight, AdmissionControl gate, Pipelines p, Request req, long t0) {
+    CompletableFuture<ParseResult> mine = new CompletableFuture<>();
+    CompletableFuture<ParseResult> leader = inFlight.putIfAbsent(flight, mine);
+    if (leader != null) {
+      metrics.coalesced();
+      return timed(relocated(follow(leader), req.input()), "coalesced", t0);
+    }
+    try {
+      ParseResult out = stored(flight.key(), flight.lexicon(), admitted(gate, p, req));
+      mine.complete(out.copy()); // callers may edit their result (see parseInstructions)
+      return corenlpTimed(out, t0);
+    } catch (RuntimeException e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(flight, mine);
+    }
+  }
+
+  private static ParseResult follow(CompletableFuture<ParseResult> leader) {
+    try {
+      return leader.get().copy();
+    } catch (InterruptedException e) {
+      // Never cancel the leader's future: other followers are waiting on it
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Parse interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException re) throw re;
+      throw new IllegalStateException("Parse failed", e.getCause());
+    }
+  }
+
+  // Shared results come from text with the same cache key, not necessarily the same chars
+  // ("Mamá" vs "mama"): spans are remapped and values taken verbatim are re-read at them
+  private static ParseResult relocated(ParseResult r, String input) {
+    if (r.input == null || r.input.equals(input)) return r;
+    ParseCache.Remap remap = new ParseCache.Remap(r.input, input);
+    if (r.intentEvidence != null) r.intentEvidence = r.intentEvidence.remapped(remap);
+    if (r.amountEvidence != null) {
+      Evidence was = r.amountEvidence;
+      r.amountEvidence = was.remapped(remap);
+      r.amountText = resliced(r.amountText, r.input, was, input, r.amountEvidence);
+    }
+    if (r.recipientEvidence != null) {
+      Evidence was = r.recipientEvidence;
+      r.recipientEvidence = was.remapped(remap);
+      r.recipient = resliced(r.recipient, r.input, was, input, r.recipientEvidence);
+    }
+    r.input = input;
+    return r;
+  }
+
+  // value as it reads in input, if it was exactly the parsed text at its span (not cleaned up)
+  private static String resliced(
+      String value, String parsed, Evidence was, String input, Evidence now) {
+    if (value == null || was.end() > parsed.length() || now.end() > input.length()) return value;
+    if (!value.equals(parsed.substring(was.begin(), was.end()))) return value;
+    return input.substring(now.begin(), now.end());
+  }
+
+  // Answers cut short by the deadline are not cached: a later request may have the time. Nor are
+  // answers of a lexicon that a reload replaced while they were parsed.
+  private ParseResult stored(String key, Lexicon lex, ParseResult out) {
+    if (out.degraded) return out;
+    lexiconSwap.readLock().lock();
+    try {
+      if (lex != lexicon) return out;
+      if (cache != null) cache.put(key, out);
+      if (store != null) store.put(key, out);
+    } finally {
+      lexiconSwap.readLock().unlock();
+    }
+    return out;
+  }
+
+  // Disk hits are promoted to the cache so repeats of the same text stay in memory
+  private ParseResult recall(String key, Lexicon lex, String input) {
+    ParseResult r = store.get(key);
+    if (r == null) return null;
+    if (cache != null) {
+      lexiconSwap.readLock().lock();
+      try {
+        if (lex == lexicon) cache.put(key, r);
+      } finally {
+        lexiconSwap.readLock().unlock();
       }
     }
+    return relocated(r, input);
+  }
+
+  private ParseResult corenlpTimed(ParseResult out, long t0) {
+    return timed(out, out.degraded ? "degraded" : "corenlp", t0);
+  }
+
+  private ParseResult fastAnswer(
+      ParseResult out, String tier, long t0, boolean trace, String decision) {
+    if (trace) {
+      out.trace = new ParseTrace();
+      out.trace.decisions.add(decision);
+    }
+    fastSources(out);
+    return timed(out, tier, t0);
+  }
+
+  private void fastSources(ParseResult out) {
+    String intent = out.intent != null ? "fast" : "none";
+    String amount = out.amountText != null ? "fast" : "none";
+    String recipient = out.recipient != null ? "fast" : "none";
+    metrics.fieldSource(ParseMetrics.Field.INTENT, intent);
+    metrics.fieldSource(ParseMetrics.Field.AMOUNT, amount);
+    metrics.fieldSource(ParseMetrics.Field.RECIPIENT, recipient);
+    if (out.trace != null) out.trace.sources(intent, amount, recipient);
+  }
+
+  private ParseResult timed(ParseResult out, String tier, long t0) {
+    metrics.parse(tier, System.nanoTime() - t0);
+    return out;
+  }
+
+  // What a CoreNLP-tier parse needs besides the pipeline, fixed when the request came in;
+  // the deadline is startNanos + budgetNanos (budgetNanos 0 = none)
+  private record Request(
+      String input,
+      String language,
+      Lexicon lexicon,
+      boolean trace,
+      long startNanos,
+      long budgetNanos) {}
+
+  private ParseResult admitted(AdmissionControl gate, Pipelines p, Request req) {
+    return gate != null ? gate.run(() -> onCompute(p, req)) : onCompute(p, req);
+  }
+
+  // Annotation is pure CPU, so every caller (request virtual threads, batch and multi workers)
+  // parks while the compute pool runs it: at most nlp.compute.threads parses run at once, and a
+  // virtual thread never holds its carrier thread for a whole parse, starving the I/O-bound virtual
+  // threads behind it. With offload-virtual-threads off, virtual threads annotate in place.
+  private ParseResult onCompute(Pipelines p, Request req) {
+    if (!offloadVirtualThreads && Thread.currentThread().isVirtual()) {
+      return parseWithCoreNlp(p, req);
+    }
+    return joinAll(List.of(computeExecutor.submit(() -> parseWithCoreNlp(p, req))), "Parse").get(0);
+  }
+
+  /**
+   * {@link #parse(String, boolean)} on a virtual thread, for callers that must not block (async
+   * endpoints). CoreNLP work still runs on the compute pool and through admission control; a
+   * rejection completes the future exceptionally with {@link ParseRejectedException}.
+   */
+  public CompletableFuture<ParseResult> parseAsync(String input, boolean trace) {
+    return parseAsync(input, trace, budget());
+  }
+
+  /**
+   * {@link #parseAsync(String, boolean)} with its own budget, as {@link #parse(String, boolean,
+   * Duration)}.
+   */
+  public CompletableFuture<ParseResult> parseAsync(String input, boolean trace, Duration budget) {
+    long nanos = budget.toNanos();
+    return CompletableFuture.supplyAsync(
+        () -> parse(input, admission, trace, nanos), asyncExecutor);
+  }
+
+  /**
+   * Parses every input on the batch worker pool and returns results in input order. Callers are
+   * expected to respect {@link #maxBatchSize()}; larger lists are split by the caller. Batch work
+   * is bounded by its own pool and bypasses interactive admission control; its CoreNLP parses share
+   * the compute pool with everything else.
+   */
+  public List<ParseResult> parseBatch(List<String> inputs) {
+    List<Future<ParseResult>> futures = new ArrayList<>(inputs.size());
+    for (String input : inputs)
+      futures.add(batchExecutor.submit(() -> parse(input, null, false, budgetNanos)));
+    return joinAll(futures, "Batch parse");
+  }
+
+  public int maxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Splits text into payment instructions: one per sentence, and one per clause when a conjunction
+   * or comma separates two amounts ("pay John $20 and Ana 15 euros"). Text past {@code
+   * nlp.limits.max-input-length} is cut first, as for {@link #parse(String)}, so oversized input
+   * costs no more to split than to parse.
+   */
+  public List<String> splitInstructions(String input) {
+    if (input == null) return new ArrayList<>();
+    String kept = truncate(input, maxInputLength);
+    if (kept != input) metrics.truncated();
+    return InstructionSplitter.split(kept, lexicon);
+  }
 
-    // 3) recipient: prefer PERSON, else nmod:to subtree from root verb
-    if (person != null) {
-      out.recipient = person;
-    } else if (root != null && graph != null) {
-      for (SemanticGraphEdge e : graph.outgoingEdgeList(root)) {
-        if (e.getRelation() != null && e.getRelation().toString().startsWith("nmod:to")) {
-          IndexedWord head = e.getDependent();
-          Set<IndexedWord> sub = graph.descendants(head);
-          List<IndexedWord> nodes = new ArrayList<>(sub);
-          nodes.add(head);
-          nodes.sort(Comparator.comparingInt(IndexedWord::index));
-          out.recipient = nodes.stream().map(IndexedWord::word).collect(Collectors.joining(" "));
+  /**
+   * Parses instructions from {@link #splitInstructions} in parallel (the first on the calling
+   * thread) and returns one result per instruction that names an intent, amount or recipient. An
+   * instruction without its own intent inherits the previous one. Callers are expected to respect
+   * {@link #maxInstructions()}.
+   */
+  public List<ParseResult> parseInstructions(List<String> instructions, boolean trace) {
+    return parseInstructions(null, instructions, trace);
+  }
+
+  /**
+   * {@link #parseInstructions(List, boolean)} for instructions split from {@code text}: evidence
+   * offsets point into {@code text} rather than into each instruction, and results are flagged
+   * {@code truncated} when {@link #splitInstructions} had to cut it.
+   */
+  public List<ParseResult> parseInstructions(
+      String text, List<String> instructions, boolean trace) {
+    return parseInstructions(text, instructions, trace, budget());
+  }
+
+  /**
+   * {@link #parseInstructions(String, List, boolean)} within one CoreNLP-tier budget for the whole
+   * call, as {@link #parse(String, boolean, Duration)}: each instruction gets what is left of it
+   * when its parse starts.
+   */
+  public List<ParseResult> parseInstructions(
+      String text, List<String> instructions, boolean trace, Duration budget) {
+    long t0 = System.nanoTime();
+    long nanos = budget.toNanos();
+    List<Future<ParseResult>> futures = new ArrayList<>(instructions.size());
+    for (int i = 1; i < instructions.size(); i++) {
+      String instruction = instructions.get(i);
+      futures.add(
+          multiExecutor.submit(() -> parse(instruction, admission, trace, remaining(nanos, t0))));
+    }
+    List<ParseResult> parsed = new ArrayList<>(instructions.size());
+    if (!instructions.isEmpty()) {
+      try {
+        parsed.add(parse(instructions.get(0), admission, trace, remaining(nanos, t0)));
+      } catch (RuntimeException e) {
+        futures.forEach(f -> f.cancel(true));
+        throw e;
+      }
+    }
+    parsed.addAll(joinAll(futures, "Multi-instruction parse"));
+    if (text != null) {
+      boolean cut = maxInputLength > 0 && text.length() > maxInputLength;
+      int from = 0;
+      for (int i = 0; i < parsed.size(); i++) {
+        int at = text.indexOf(instructions.get(i), from);
+        if (at < 0) continue;
+        parsed.get(i).shift(at, text);
+        parsed.get(i).truncated |= cut;
+        from = at + instructions.get(i).length();
+      }
+    }
+    List<ParseResult> out = new ArrayList<>(parsed.size());
+    String intent = null;
+    for (ParseResult r : parsed) {
+      if (r.intent == null && r.amountText == null && r.recipient == null) continue;
+      if (r.intent == null) r.intent = intent;
+      intent = r.intent;
+      out.add(r);
+    }
+    return out;
+  }
+
+  public int maxInstructions() {
+    return maxInstructions;
+  }
+
+  // What is left of a budget started at t0; a spent one stays positive so it still means "over"
+  private static long remaining(long budget, long t0) {
+    return budget == 0 ? 0 : Math.max(1, budget - (System.nanoTime() - t0));
+  }
+
+  private static List<ParseResult> joinAll(List<Future<ParseResult>> futures, String what) {
+    List<ParseResult> out = new ArrayList<>(futures.size());
+    try {
+      for (Future<ParseResult> f : futures) out.add(f.get());
+    } catch (InterruptedException e) {
+      futures.forEach(f -> f.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(what + " interrupted", e);
+    } catch (ExecutionException e) {
+      futures.forEach(f -> f.cancel(true));
+      if (e.getCause() instanceof RuntimeException re) throw re;
+      throw new IllegalStateException(what + " failed", e.getCause());
+    }
+    return out;
+  }
+
+  /**
+   * Closes the files a CRaC checkpoint cannot hold (the result store); parses go on without the
+   * store until {@link #afterRestore}.
+   */
+  public void beforeCheckpoint() throws IOException {
+    if (store != null) store.suspend();
+  }
+
+  /** Reopens what {@link #beforeCheckpoint} closed, from whatever the restored host has on disk. */
+  public void afterRestore() throws IOException {
+    if (store != null) store.resume();
+  }
+
+  @PreDestroy
+  public void close() {
+    batchExecutor.shutdownNow();
+    multiExecutor.shutdownNow();
+    computeExecutor.shutdownNow();
+    asyncExecutor.shutdownNow();
+    deadlineTimer.shutdownNow();
+    if (lexiconWatcher != null) lexiconWatcher.shutdownNow();
+    if (store != null) {
+      try {
+        store.close();
+      } catch (IOException e) {
+        log.warn("Closing result store failed: {}", e.toString());
+      }
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger n = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, prefix + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
+  private ParseResult parseWithCoreNlp(Pipelines p, Request req) {
+    metrics.language(req.language(), p.language());
+    try (Deadline deadline = Deadline.arm(deadlineTimer, req.startNanos(), req.budgetNanos())) {
+      return parseWithCoreNlp(p, req, deadline);
+    }
+  }
+
+  // Each field is settled by the first rule that finds it, cheapest first, and a stage only runs
+  // for fields still missing: intent verb > keyword > classifier > dependency root; amount regex >
+  // NER MONEY; recipient preposition > PERSON > nmod:to > ORGANIZATION/EMAIL. The single pipeline
+  // this replaced ranked root, MONEY and PERSON first ("to my friend John Smith" gave "John
+  // Smith");
+  // conflicting intent verbs lower the intent's confidence instead of deferring to the root.
+  private ParseResult parseWithCoreNlp(Pipelines p, Request req, Deadline deadline) {
+    String input = req.input();
+    Lexicon lex = req.lexicon();
+    boolean trace = req.trace();
+    ParseResult out = new ParseResult();
+    out.tier = ParseResult.TIER_CORENLP;
+    out.language = req.language();
+    out.input = input;
+    if (trace) {
+      out.trace = new ParseTrace();
+      if (fastTierEnabled) out.trace.decisions.add("fast tier not confident, escalated");
+      out.trace.decisions.add("language " + out.language + ", " + p.language() + " pipeline");
+    }
+    String intentSource = "none";
+    String amountSource = "none";
+    String recipientSource = "none";
+    Annotation ann = new Annotation(input);
+    long t = System.nanoTime();
+    if (!deadline.annotate(p.base(), ann)) return pastDeadline(req, out.trace);
+    metrics.stageRun("base");
+    if (trace) out.trace.stages.add("base");
+    t = lap(ParseMetrics.ANNOTATE_BASE, t);
+
+    List<CoreMap> sentences = ann.get(CoreAnnotations.SentencesAnnotation.class);
+
+    if (sentences == null || sentences.isEmpty()) return out;
+    CoreMap s = sentences.get(0);
+
+    // Stage 1 (tokenize/pos/lemma): cheap rules that settle most inputs
+    // 1) intent from the first verb lemma, else raw-text keyword scan
+    for (CoreLabel tok : s.get(CoreAnnotations.TokensAnnotation.class)) {
+      String pos = tok.get(CoreAnnotations.PartOfSpeechAnnotation.class);
+      if (pos != null && pos.startsWith("V")) {
+        String canonical = lex.intent(lemmaOrWord(tok));
+        if (canonical != null) {
+          out.intent = canonical;
+          intentSource = "verb";
+          out.intentEvidence =
+              Evidence.of("intent", "verb", tok.beginPosition(), tok.endPosition());
           break;
         }
       }
     }
+    // Fallback for Spanish/English: one keyword scan over the raw text (also finds the amount)
+    TextScanner.Hits hits = TextScanner.scan(lex, input);
+    if (out.intent == null && hits.intent != null) {
+      out.intent = hits.intent;
+      intentSource = "keyword";
+      out.intentEvidence = Evidence.of("intent", "keyword", hits.intentStart, hits.intentEnd);
+    }
+    t = lap(ParseMetrics.INTENT, t);
 
-    // (optional) tiny heuristic: capture ORG/email as recipient if PERSON missing
-    if (out.recipient == null && mentions != null) {
-      for (CoreMap m : mentions) {
-        String ent = m.get(CoreAnnotations.EntityTypeAnnotation.class);
-        String txt = m.get(CoreAnnotations.TextAnnotation.class);
-        if (ent == null || txt == null) continue;
-        if ("ORGANIZATION".equals(ent) || "EMAIL".equals(ent)) {
-          out.recipient = txt;
-          break;
+    // 2) amount straight from the input text
+    TextScanner.Money found = hits.money();
+    if (found != null) {
+      out.amountText = found.text(input);
+      out.setAmount(found.amount(input), found.currency);
+      amountSource = "regex";
+      out.amountEvidence = Evidence.of("amount", "regex", found.start, found.end);
+    }
+    t = lap(ParseMetrics.AMOUNT, t);
+
+    // 3) recipient via prepositions ("to", Spanish: "a", "para")
+    int recipientBegin = -1; // span of the raw recipient, narrowed once it is cleaned
+    int recipientEnd = -1;
+    List<CoreLabel> phrase = recipientTokensByPreposition(s, RECIPIENT_PREPOSITIONS);
+    if (phrase != null) {
+      out.recipient = joinWords(phrase);
+      recipientSource = "preposition";
+      recipientBegin = phrase.get(0).beginPosition();
+      recipientEnd = phrase.get(phrase.size() - 1).endPosition();
+    }
+    t = lap(ParseMetrics.RECIPIENT, t);
+
+    // Stage 2 (ner/entitymentions): only when amount or recipient is still missing
+    List<CoreMap> mentions = null;
+    boolean needNer = out.amountText == null || out.recipient == null;
+    if (needNer && !deadline.annotate(p.ner(), ann)) {
+      t = lap(ParseMetrics.ANNOTATE_NER, t);
+      cutShort(out, "ner");
+    } else if (needNer) {
+      metrics.stageRun("ner");
+      if (trace) out.trace.stages.add("ner");
+      t = lap(ParseMetrics.ANNOTATE_NER, t);
+      mentions = s.get(CoreAnnotations.MentionsAnnotation.class);
+      CoreMap money = firstMention(mentions, "MONEY");
+      if (out.amountText == null && money != null) {
+        applyAmount(lex, out, money.get(CoreAnnotations.TextAnnotation.class));
+        amountSource = "ner";
+        out.amountEvidence = Evidence.of("amount", "ner", begin(money), end(money));
+      }
+      CoreMap person = out.recipient == null ? firstMention(mentions, "PERSON") : null;
+      if (person != null) {
+        out.recipient = person.get(CoreAnnotations.TextAnnotation.class);
+        recipientSource = "person";
+        recipientBegin = begin(person);
+        recipientEnd = end(person);
+      }
+      t = lap(ParseMetrics.MENTIONS, t);
+    }
+
+    // Trained classifier (optional): a confident prediction settles intent, even as "none",
+    // so depparse is left to find the recipient only
+    boolean intentSettled = out.intent != null;
+    if (!intentSettled && classifier != null) {
+      IntentClassifier.Prediction guess = classifier.predict(input);
+      double confidence = Math.round(guess.probability() * 100) / 100.0;
+      if (confidence >= classifierMinConfidence) {
+        intentSettled = true;
+        if (!IntentClassifier.NONE.equals(guess.label())) {
+          out.intent = guess.label();
+          intentSource = "classifier";
+          out.intentEvidence = new Evidence("classifier", confidence, 0, input.length());
         }
       }
+      if (trace) out.trace.decisions.add("classifier: " + guess.label() + " " + confidence);
+      t = lap(ParseMetrics.CLASSIFY, t);
     }
 
-    // Fallback: parse recipient via prepositions ("to", Spanish: "a", "para")
-    if (out.recipient == null) {
-      out.recipient = extractRecipientByPreposition(s, Set.of("to", "a", "para"));
+    // Stage 3 (depparse): root-verb intent and nmod:to recipient as a last resort
+    SemanticGraph graph = null;
+    boolean needDepparse = !intentSettled || out.recipient == null;
+    if (needDepparse && !deadline.annotate(p.depparse(), ann)) {
+      t = lap(ParseMetrics.ANNOTATE_DEPPARSE, t);
+      cutShort(out, "depparse");
+    } else if (needDepparse) {
+      metrics.stageRun("depparse");
+      if (trace) out.trace.stages.add("depparse");
+      t = lap(ParseMetrics.ANNOTATE_DEPPARSE, t);
+      graph = s.get(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class);
+      IndexedWord root = (graph != null) ? graph.getFirstRoot() : null;
+      if (!intentSettled && root != null) {
+        out.intent = lex.intent(lemmaOrWord(root.backingLabel()));
+        if (out.intent != null) {
+          intentSource = "root";
+          out.intentEvidence =
+              Evidence.of("intent", "root", root.beginPosition(), root.endPosition());
+        }
+      }
+      t = lap(ParseMetrics.INTENT, t);
+      if (out.recipient == null && root != null) {
+        for (SemanticGraphEdge e : graph.outgoingEdgeList(root)) {
+          if (e.getRelation() != null && e.getRelation().toString().startsWith("nmod:to")) {
+            IndexedWord head = e.getDependent();
+            Set<IndexedWord> sub = graph.descendants(head);
+            List<IndexedWord> nodes = new ArrayList<>(sub);
+            nodes.add(head);
+            nodes.sort(Comparator.comparingInt(IndexedWord::index));
+            out.recipient = nodes.stream().map(IndexedWord::word).collect(Collectors.joining(" "));
+            recipientSource = "nmod";
+            recipientBegin = nodes.get(0).beginPosition();
+            recipientEnd = nodes.get(nodes.size() - 1).endPosition();
+            break;
+          }
+        }
+      }
+      t = lap(ParseMetrics.RECIPIENT, t);
+    }
+
+    // (optional) tiny heuristic: capture ORG/email as recipient if PERSON missing
+    CoreMap org = out.recipient == null ? firstMention(mentions, "ORGANIZATION", "EMAIL") : null;
+    if (org != null) {
+      out.recipient = org.get(CoreAnnotations.TextAnnotation.class);
+      recipientSource = "organization";
+      recipientBegin = begin(org);
+      recipientEnd = end(org);
     }
 
     // Cleanup recipient punctuation and leading prepositions
     if (out.recipient != null) {
       out.recipient = cleanRecipient(out.recipient);
+      out.recipientEvidence =
+          Evidence.of(
+              "recipient", recipientSource, input, recipientBegin, recipientEnd, out.recipient);
+    }
+    // Conflicting intent keywords or an amount without a currency leave the field in doubt
+    if (out.intentEvidence != null && hits.distinctIntents() > 1) {
+      out.intentEvidence = out.intentEvidence.scaled(0.6);
+    }
+    if (out.amountEvidence != null && out.currency == null) {
+      out.amountEvidence = out.amountEvidence.scaled(0.8);
     }
+    lap(ParseMetrics.CLEANUP, t);
+
+    metrics.fieldSource(ParseMetrics.Field.INTENT, intentSource);
+    metrics.fieldSource(ParseMetrics.Field.AMOUNT, amountSource);
+    metrics.fieldSource(ParseMetrics.Field.RECIPIENT, recipientSource);
+    if (trace) {
+      out.trace.sources(intentSource, amountSource, recipientSource);
+      // Only rendered on demand, and only available when depparse had to run
+      if (graph != null) {
+        for (SemanticGraphEdge e : graph.edgeListSorted()) {
+          out.trace.dependencies.add(
+              e.getRelation()
+                  + "("
+                  + e.getGovernor().toString(CoreLabel.OutputFormat.VALUE_INDEX)
+                  + ", "
+                  + e.getDependent().toString(CoreLabel.OutputFormat.VALUE_INDEX)
+                  + ")");
+        }
+      }
+    }
+    return out;
+  }
+
+  // Out of time before or during a stage: keep what the earlier rules found, flagged degraded
+  private void cutShort(ParseResult out, String stage) {
+    if (!out.degraded) metrics.deadlineExceeded(stage);
+    out.degraded = true;
+    if (out.trace != null) out.trace.decisions.add("deadline exceeded, " + stage + " abandoned");
+  }
+
+  // Out of time before tokenizing finished: the fast tier's keyword/regex answer, whatever it is
+  private ParseResult pastDeadline(Request req, ParseTrace trace) {
+    metrics.deadlineExceeded("base");
+    ParseResult out = fastPath.parse(req.input(), req.lexicon()).result();
+    out.language = req.language();
+    out.degraded = true;
+    out.trace = trace;
+    if (trace != null) trace.decisions.add("deadline exceeded, base abandoned, fast-tier fallback");
+    fastSources(out);
+    return out;
+  }
+
+  // Pipelines without a lemmatizer (Spanish) leave LemmaAnnotation unset
+  private static String lemmaOrWord(CoreLabel tok) {
+    String lemma = tok.lemma();
+    return lemma != null ? lemma : tok.word();
+  }
+
+  private long lap(String stage, long since) {
+    long now = System.nanoTime();
+    metrics.stage(stage, now - since);
+    return now;
+  }
 
-    // Debug (can be toggled/removed)
-    out.debugDependencies =
-        (graph != null) ? graph.toString(SemanticGraph.OutputFormat.READABLE) : null;
+  /** How often each CoreNLP stage ran; NER and depparse should stay well below "base". */
+  public Map<String, Long> stageHits() {
+    Map<String, Long> hits = new LinkedHashMap<>();
+    hits.put("base", metrics.stageRuns("base"));
+    hits.put("ner", metrics.stageRuns("ner"));
+    hits.put("depparse", metrics.stageRuns("depparse"));
+    return hits;
+  }
 
+  /** In-flight/queue gauges and admission counters; empty when admission control is off. */
+  public Map<String, Long> admissionStats() {
+    return admission != null ? admission.stats() : Map.of();
+  }
+
+  /** Result store size and hit/miss/write/eviction counters; empty when the store is disabled. */
+  public Map<String, Long> storeStats() {
+    return store != null ? store.stats() : Map.of();
+  }
+
+  /** Cache size and hit/miss/eviction counters; empty when the cache is disabled. */
+  public Map<String, Long> cacheStats() {
+    return cache != null ? cache.stats() : Map.of();
+  }
+
+  /** CoreNLP parses running now (distinct inputs) and requests that joined one instead. */
+  public Map<String, Long> singleFlightStats() {
+    Map<String, Long> out = new LinkedHashMap<>();
+    out.put("inFlight", (long) inFlight.size());
+    out.put("coalesced", metrics.coalescedCount());
     return out;
   }
 
+  private static void applyAmount(Lexicon lex, ParseResult out, String amountText) {
+    if (amountText == null) return;
+    out.amountText = amountText;
+    // Normalize amount (value + currency) from the surface text when present
+    AmountParser.Amount amount = AmountParser.parse(lex, amountText);
+    if (amount != null) out.setAmount(amount.value(), amount.currency());
+  }
+
+  private static CoreMap firstMention(List<CoreMap> mentions, String... types) {
+    if (mentions == null) return null;
+    for (CoreMap m : mentions) {
+      String ent = m.get(CoreAnnotations.EntityTypeAnnotation.class);
+      String txt = m.get(CoreAnnotations.TextAnnotation.class);
+      if (ent == null || txt == null) continue;
+      for (String type : types) {
+        if (type.equals(ent)) return m;
+      }
+    }
+    return null;
+  }
+
+  private static int begin(CoreMap mention) {
+    return mention.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+  }
+
+  private static int end(CoreMap mention) {
+    return mention.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+  }
+
   public static class ParseResult {
+    public static final String TIER_FAST = "fast";
+    public static final String TIER_CORENLP = "corenlp";
+
     public String intent; // pay|send|transfer (lemma)
     public String amountText; // surface text e.g., "$12", "15 dollars"
     public String recipient; // "John", "@alex99", "my mom", "ACME Inc."
     public String currency; // optional (null unless you add normalization)
     public Double amountValue; // optional numeric value (null unless normalized)
-    public String debugDependencies;
+    public BigDecimal amountExact; // same value, exact as written (see AmountParser)
+    public String tier; // which tier answered: fast|corenlp (null for blank input)
+    public String language; // detected language, en|es (null for blank input)
+    public boolean degraded; // true when CoreNLP was skipped or cut short (loading, deadline)
+    public boolean truncated; // true when the input was longer than nlp.limits.max-input-length
+    public ParseTrace trace; // only when the caller asked for a trace
+    // Rule, confidence and input span behind each field; null exactly when the field is null
+    public Evidence intentEvidence;
+    public Evidence amountEvidence;
+    public Evidence recipientEvidence;
+    String input; // the text evidence offsets point into
+
+    /** Evidence of the fields that were found, keyed intent/amount/recipient. */
+    public Map<String, Evidence> evidence() {
+      Map<String, Evidence> out = new LinkedHashMap<>();
+      if (intentEvidence != null) out.put("intent", intentEvidence);
+      if (amountEvidence != null) out.put("amount", amountEvidence);
+      if (recipientEvidence != null) out.put("recipient", recipientEvidence);
+      return out;
+    }
+
+    // Offsets moved by delta, e.g. from one instruction into the text it was split from
+    void shift(int delta, String into) {
+      if (intentEvidence != null) intentEvidence = intentEvidence.shifted(delta);
+      if (amountEvidence != null) amountEvidence = amountEvidence.shifted(delta);
+      if (recipientEvidence != null) recipientEvidence = recipientEvidence.shifted(delta);
+      input = into;
+    }
+
+    void setAmount(BigDecimal value, String currency) {
+      this.amountExact = value;
+      this.amountValue = value != null ? value.doubleValue() : null;
+      this.currency = currency;
+    }
+
+    /** {@link #amountExact} in the currency's minor units (cents), or null if unknown. */
+    public Long amountMinorUnits() {
+      return AmountParser.minorUnits(amountExact, currency);
+    }
+
+    ParseResult copy() {
+      ParseResult c = new ParseResult();
+      c.intent = intent;
+      c.amountText = amountText;
+      c.recipient = recipient;
+      c.currency = currency;
+      c.amountValue = amountValue;
+      c.amountExact = amountExact;
+      c.trace = trace;
+      c.tier = tier;
+      c.language = language;
+      c.degraded = degraded;
+      c.truncated = truncated;
+      c.intentEvidence = intentEvidence;
+      c.amountEvidence = amountEvidence;
+      c.recipientEvidence = recipientEvidence;
+      c.input = input;
+      return c;
+    }
   }
 
-  // -------- Helpers --------
-  private static class AmountNorm {
-    Double value;
-    String currency;
-  }
-
-  private static final Pattern MONEY_SYMBOL_FIRST =
-      Pattern.compile(
-          "^(?:about\\s+|around\\s+|approximately\\s+|~)?([\\p{Sc}€£$¥₹₩₽₺₴₦₫])\\s*([0-9]{1,3}(?:,[0-9]{3})*(?:\\.[0-9]+)?|[0-9]+(?:\\.[0-9]+)?)",
-          Pattern.CASE_INSENSITIVE);
-
-  private static final Pattern MONEY_WORD =
-      Pattern.compile(
-          "^([0-9]{1,3}(?:,[0-9]{3})*(?:\\.[0-9]+)?|[0-9]+(?:\\.[0-9]+)?)\\s*"
-              + "(dollars?|d[oó]lares?|bucks|usd|euros?|eur|pounds?|libras?|gbp|yen|jpy|rupees?|rupias?|inr|pesos?|mxn|cop|ars|clp|pen|soles?|cad|aud|chf|francs?|reales?|brl)",
-          Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-  // Non-anchored finders for fallback scanning inside full input
-  private static final Pattern MONEY_SYMBOL_FIRST_ANYWHERE =
-      Pattern.compile(
-          "(?:about\\s+|around\\s+|approximately\\s+|~)?([\\p{Sc}€£$¥₹₩₽₺₴₦₫])\\s*([0-9]{1,3}(?:,[0-9]{3})*(?:\\.[0-9]+)?|[0-9]+(?:\\.[0-9]+)?)",
-          Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-  private static final Pattern MONEY_WORD_ANYWHERE =
-      Pattern.compile(
-          "([0-9]{1,3}(?:,[0-9]{3})*(?:\\.[0-9]+)?|[0-9]+(?:\\.[0-9]+)?)\\s*"
-              + "(dollars?|d[oó]lares?|bucks|usd|euros?|eur|pounds?|libras?|gbp|yen|jpy|rupees?|rupias?|inr|pesos?|mxn|cop|ars|clp|pen|soles?|cad|aud|chf|francs?|reales?|brl)",
-          Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-  private AmountNorm normalizeAmount(String text) {
-    String t = text.trim();
-    // Try symbol-first, e.g., $15, € 20.50
-    Matcher m1 = MONEY_SYMBOL_FIRST.matcher(t);
-    if (m1.find()) {
-      String sym = m1.group(1);
-      String num = m1.group(2).replace(",", "");
-      AmountNorm norm = new AmountNorm();
-      norm.value = safeParseDouble(num);
-      norm.currency = mapCurrencySymbol(sym);
-      return norm;
-    }
-    // Try number + word, e.g., 15 dollars, 20 eur
-    Matcher m2 = MONEY_WORD.matcher(t);
-    if (m2.find()) {
-      String num = m2.group(1).replace(",", "");
-      String word = m2.group(2).toLowerCase(Locale.ROOT);
-      AmountNorm norm = new AmountNorm();
-      norm.value = safeParseDouble(num);
-      norm.currency = mapCurrencyWord(word);
-      return norm;
+  /**
+   * Where one extracted field came from: the rule that produced it (the names used in {@link
+   * ParseTrace#sources}), a confidence in [0, 1] and the [begin, end) char offsets of its text in
+   * the input, so callers need not find it again (a classifier intent reads, and spans, the whole
+   * text). Confidence ranks the rules by how direct their evidence is (a lexicon verb over a
+   * dependency root, a currency-marked number over an NER guess); it is a heuristic, not a
+   * calibrated probability.
+   */
+  public record Evidence(String source, double confidence, int begin, int end) {
+
+    private static final Map<String, Double> BASE =
+        Map.ofEntries(
+            Map.entry("intent/fast", 0.9),
+            Map.entry("intent/verb", 0.95),
+            Map.entry("intent/keyword", 0.8),
+            Map.entry("intent/root", 0.6),
+            Map.entry("amount/fast", 0.95),
+            Map.entry("amount/regex", 0.95),
+            Map.entry("amount/ner", 0.7),
+            Map.entry("recipient/fast", 0.9),
+            Map.entry("recipient/preposition", 0.85),
+            Map.entry("recipient/person", 0.8),
+            Map.entry("recipient/nmod", 0.6),
+            Map.entry("recipient/organization", 0.5));
+
+    static Evidence of(String field, String source, int begin, int end) {
+      return new Evidence(source, BASE.getOrDefault(field + '/' + source, 0.5), begin, end);
+    }
+
+    /**
+     * Like {@link #of} for a value that was cleaned after extraction: the span shrinks to where
+     * {@code value} occurs inside [begin, end), if it does.
+     */
+    static Evidence of(
+        String field, String source, String input, int begin, int end, String value) {
+      int at = value.isEmpty() ? -1 : input.indexOf(value, begin);
+      if (at >= 0 && at + value.length() <= end) return of(field, source, at, at + value.length());
+      return of(field, source, begin, end);
+    }
+
+    /** Same evidence with less confidence, when something else casts doubt on the rule. */
+    Evidence scaled(double factor) {
+      return new Evidence(source, Math.round(confidence * factor * 100) / 100.0, begin, end);
+    }
+
+    Evidence shifted(int delta) {
+      return new Evidence(source, confidence, begin + delta, end + delta);
+    }
+
+    Evidence remapped(ParseCache.Remap remap) {
+      return new Evidence(source, confidence, remap.begin(begin), remap.end(end));
     }
-    return null;
   }
 
-  private static Double safeParseDouble(String s) {
-    try {
-      return Double.parseDouble(s);
-    } catch (Exception e) {
-      return null;
-    }
-  }
-
-  private static String mapCurrencySymbol(String sym) {
-    return switch (sym) {
-      case "$" -> "USD";
-      case "€" -> "EUR";
-      case "£" -> "GBP";
-      case "¥" -> "JPY";
-      case "₹" -> "INR";
-      case "₩" -> "KRW";
-      case "₽" -> "RUB";
-      default -> null;
-    };
+  /** How a result was produced: the rule behind each field, stages run and dependency edges. */
+  public static class ParseTrace {
+    // field -> rule: fast|verb|keyword|classifier|root (intent), fast|regex|ner (amount),
+    // fast|preposition|person|nmod|organization (recipient), none when it stayed null
+    public final Map<String, String> sources = new LinkedHashMap<>();
+    public final List<String> stages = new ArrayList<>(); // CoreNLP stages that ran, in order
+    public final List<String> decisions = new ArrayList<>(); // tier routing
+    public final List<String> dependencies = new ArrayList<>(); // "rel(gov-i, dep-j)" if depparse
+
+    void sources(String intent, String amount, String recipient) {
+      sources.put("intent", intent);
+      sources.put("amount", amount);
+      sources.put("recipient", recipient);
+    }
   }
 
-  private static String mapCurrencyWord(String w) {
-    String base = stripAccents(w);
-    if (base.startsWith("dollar") || base.equals("bucks") || base.equals("usd")) return "USD";
-    if (base.startsWith("euro") || base.equals("eur")) return "EUR";
-    if (base.startsWith("pound") || base.equals("libras") || base.equals("gbp")) return "GBP";
-    if (base.equals("yen") || base.equals("jpy")) return "JPY";
-    if (base.startsWith("rupee") || base.startsWith("rupia") || base.equals("inr")) return "INR";
-    if (base.startsWith("franc") || base.equals("chf")) return "CHF";
-    if (base.startsWith("peso")) return "MXN"; // generic pesos -> default MXN
-    if (base.equals("mxn")) return "MXN";
-    if (base.equals("cop")) return "COP";
-    if (base.equals("ars")) return "ARS";
-    if (base.equals("clp")) return "CLP";
-    if (base.equals("pen") || base.startsWith("sol")) return "PEN";
-    if (base.equals("brl") || base.startsWith("real")) return "BRL";
-    if (base.equals("cad")) return "CAD";
-    if (base.equals("aud")) return "AUD";
-    return null;
+  // -------- Helpers --------
+
+  private static final Set<String> RECIPIENT_PREPOSITIONS = Set.of("to", "a", "para");
+  private static final Pattern COMBINING_MARKS =
+      Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+  static AmountParser.Amount normalizeAmount(String text) {
+    // Symbol-first ($15, € 20.50, about $5) or number + word/symbol (15 dollars, 1.234,50 €)
+    return AmountParser.parse(text);
   }
 
-  private static String extractRecipientByPreposition(CoreMap s, Set<String> preps) {
+  static String extractRecipientByPreposition(CoreMap s, Set<String> preps) {
+    List<CoreLabel> phrase = recipientTokensByPreposition(s, preps);
+    return phrase != null ? joinWords(phrase) : null;
+  }
+
+  /** Tokens of the first non-empty phrase after one of {@code preps}, or null. */
+  static List<CoreLabel> recipientTokensByPreposition(CoreMap s, Set<String> preps) {
     List<CoreLabel> toks = s.get(CoreAnnotations.TokensAnnotation.class);
     if (toks == null) return null;
     for (int i = 0; i < toks.size(); i++) {
       String lemma = toks.get(i).get(CoreAnnotations.LemmaAnnotation.class);
       String word = toks.get(i).word();
-      String lw = word != null ? word.toLowerCase(Locale.ROOT) : null;
-      String ll = lemma != null ? lemma.toLowerCase(Locale.ROOT) : null;
-      if ((lw != null && preps.contains(lw)) || (ll != null && preps.contains(ll))) {
-        StringBuilder sb = new StringBuilder();
-        for (int j = i + 1; j < toks.size(); j++) {
+      if (isAnyIgnoreCase(word, preps) || isAnyIgnoreCase(lemma, preps)) {
+        int j = i + 1;
+        for (; j < toks.size(); j++) {
           CoreLabel t = toks.get(j);
           String pos = t.get(CoreAnnotations.PartOfSpeechAnnotation.class);
           String w = t.word();
           if (w == null) break;
           // Stop at punctuation (except allow leading '@' for handles) or another preposition/verb
-          if (w.matches("[\\p{Punct}]+") && !(w.equals("@") && sb.length() == 0)) break;
-          if (pos != null && (pos.startsWith("IN") || pos.startsWith("VB"))) break;
-          if (sb.length() > 0) sb.append(' ');
-          sb.append(w);
+          if (TextScanner.isAllPunct(w) && !(w.equals("@") && j == i + 1)) break;
+          // PTB (IN, VB*) and Universal (ADP, VERB) tags, depending on the language's tagger
+          if (pos != null && (pos.startsWith("IN") || pos.equals("ADP") || pos.startsWith("V"))) {
+            break;
+          }
+        }
+        if (j > i + 1 && !joinWords(toks.subList(i + 1, j)).isBlank()) {
+          return toks.subList(i + 1, j);
         }
-        String cand = sb.toString().trim();
-        if (!cand.isEmpty()) return cand;
       }
     }
     return null;
   }
 
-  private static String cleanRecipient(String r) {
-    String trimmed = r.trim();
-    // Preserve handles like @alex99
-    if (trimmed.startsWith("@")) {
-      // Only strip trailing punctuation/spaces
-      return trimmed.replaceAll("[\\p{Punct}\\s]+$", "");
-    }
-    String cleaned = trimmed;
-    // Remove leading/trailing punctuation and the preposition "to ", "a ", or "para " if present
-    cleaned = cleaned.replaceAll("^[\\p{Punct}\\s]+", "");
-    cleaned = cleaned.replaceAll("[\\p{Punct}\\s]+$", "");
-    if (cleaned.toLowerCase(Locale.ROOT).startsWith("to ")) {
-      cleaned = cleaned.substring(3).trim();
-    }
-    if (cleaned.toLowerCase(Locale.ROOT).startsWith("a ")) {
-      cleaned = cleaned.substring(2).trim();
+  private static String joinWords(List<CoreLabel> tokens) {
+    StringJoiner words = new StringJoiner(" ");
+    for (CoreLabel t : tokens) words.add(t.word());
+    return words.toString().trim();
+  }
+
+  private static boolean isAnyIgnoreCase(String word, Set<String> candidates) {
+    if (word == null) return false;
+    for (String c : candidates) {
+      if (c.equalsIgnoreCase(word)) return true;
     }
-    if (cleaned.toLowerCase(Locale.ROOT).startsWith("para ")) {
-      cleaned = cleaned.substring(5).trim();
+    return false;
+  }
+
+  static String cleanRecipient(String r) {
+    int start = 0;
+    int end = r.length();
+    while (end > start && isPunctOrSpace(r.charAt(end - 1))) end--;
+    while (start < end && r.charAt(start) <= ' ') start++;
+    // Preserve handles like @alex99: only trailing punctuation/spaces are stripped
+    if (start < end && r.charAt(start) == '@') return r.substring(start, end);
+    // Remove leading punctuation and the preposition "to ", "a ", or "para " if present
+    while (start < end && isPunctOrSpace(r.charAt(start))) start++;
+    start = dropPrefix(r, start, end, "to ");
+    start = dropPrefix(r, start, end, "a ");
+    start = dropPrefix(r, start, end, "para ");
+    return start == 0 && end == r.length() ? r : r.substring(start, end);
+  }
+
+  private static boolean isPunctOrSpace(char c) {
+    return c <= ' ' || TextScanner.isPunct(c);
+  }
+
+  private static int dropPrefix(String r, int start, int end, String prefix) {
+    if (start + prefix.length() > end
+        || !r.regionMatches(true, start, prefix, 0, prefix.length())) {
+      return start;
     }
-    return cleaned;
+    start += prefix.length();
+    while (start < end && r.charAt(start) <= ' ') start++;
+    return start;
   }
 
-  private static boolean containsWord(String haystack, String needle) {
-    return haystack.matches(
-        ".*(?i)(?<![A-Za-zÁÉÍÓÚáéíóúÑñ])" + Pattern.quote(needle) + "(?![A-Za-zÁÉÍÓÚáéíóúÑñ]).*");
+  static boolean containsWord(String haystack, String needle) {
+    return TextScanner.containsWord(haystack, needle);
   }
 
-  private static String findMoneyInText(String input) {
+  /**
+   * {@code input} cut to at most {@code max} chars (the same instance when it already fits): at the
+   * last sentence end in the second half of the window, else the last whitespace there, else hard
+   * at {@code max} without splitting a surrogate pair. Payment details come first in practice, so
+   * keeping whole leading sentences loses the least.
+   */
+  static String truncate(String input, int max) {
+    if (max <= 0 || input.length() <= max) return input;
+    int sentence = -1;
+    int space = -1;
+    for (int i = max - 1; i >= max / 2 && sentence < 0; i--) {
+      char c = input.charAt(i);
+      if ((c == '.' || c == '!' || c == '?' || c == '\n')
+          && Character.isWhitespace(input.charAt(i + 1))) {
+        sentence = i + 1;
+      } else if (space < 0 && Character.isWhitespace(c)) {
+        space = i;
+      }
+    }
+    int end = sentence > 0 ? sentence : space > 0 ? space : max;
+    if (end == max && Character.isHighSurrogate(input.charAt(end - 1))) end--;
+    return input.substring(0, end).stripTrailing();
+  }
+
+  static String findMoneyInText(String input) {
     if (input == null) return null;
-    Matcher m1 = MONEY_SYMBOL_FIRST_ANYWHERE.matcher(input);
-    if (m1.find()) return m1.group(0).trim();
-    Matcher m2 = MONEY_WORD_ANYWHERE.matcher(input);
-    if (m2.find()) return (m2.group(1) + " " + m2.group(2)).trim();
-    return null;
+    TextScanner.Money m = TextScanner.scan(input).money();
+    return m != null ? m.text(input) : null;
   }
 
-  private static String stripAccents(String s) {
+  static String stripAccents(String s) {
     if (s == null) return null;
+    int i = 0;
+    while (i < s.length() && s.charAt(i) < 0x80) i++;
+    if (i == s.length()) return s; // plain ASCII, nothing to fold
     String norm = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD);
-    return norm.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+    return COMBINING_MARKS.matcher(norm).replaceAll("");
   }
 }
@@ -0,0 +1,202 @@
+package app.nlp;
+
+import app.nlp.NlpService.ParseResult;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size- and TTL-bounded cache of CoreNLP parse results keyed by the normalized utterance. The map
+ * is split into independently locked segments so concurrent request threads rarely contend; each
+ * segment evicts by LRU or FIFO order once it reaches its share of the capacity. Shares are rounded
+ * down, so the cache never holds more than its capacity (and up to {@code SEGMENTS - 1} fewer);
+ * small capacities use fewer segments.
+ */
+final class ParseCache {
+
+  enum Policy {
+    LRU,
+    FIFO
+  }
+
+  private static final int SEGMENTS = 16; // at most; a power of two
+
+  private final Segment[] segments;
+  private final long ttlNanos;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+
+  ParseCache(int capacity, long ttlNanos, Policy policy) {
+    this.ttlNanos = ttlNanos;
+    if (capacity < 1) throw new IllegalArgumentException("cache capacity must be positive");
+    int count = Math.min(SEGMENTS, Integer.highestOneBit(capacity));
+    int perSegment = capacity / count;
+    this.segments = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      segments[i] = new Segment(perSegment, policy == Policy.LRU);
+    }
+  }
+
+  /**
+   * Cache key: case, whitespace and accent folded so "Send $10 to Mamá" and "send $10 to mama"
+   * share an entry. Folding mirrors {@link NlpService#stripAccents}.
+   */
+  static String key(String input) {
+    return fold(input, null);
+  }
+
+  // key() one char at a time; origins (if given) receives, per key char, its index in input
+  private static String fold(String input, int[] origins) {
+    StringBuilder sb = new StringBuilder(input.length());
+    int space = -1; // start of a pending whitespace run
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (Character.isWhitespace(c)) {
+        if (space < 0) space = i;
+        continue;
+      }
+      if (space >= 0 && sb.length() > 0) append(sb, ' ', space, origins);
+      space = -1;
+      if (c < 0x80) {
+        append(sb, Character.toLowerCase(c), i, origins);
+      } else {
+        String plain = NlpService.stripAccents(String.valueOf(c));
+        for (int k = 0; k < plain.length(); k++) {
+          append(sb, Character.toLowerCase(plain.charAt(k)), i, origins);
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void append(StringBuilder sb, char c, int origin, int[] origins) {
+    if (origins != null) origins[sb.length()] = origin;
+    sb.append(c);
+  }
+
+  /**
+   * Maps char offsets of a result parsed from one text onto another text with the same {@link
+   * #key}, so a cached or shared result points into each caller's own input.
+   */
+  static final class Remap {
+    private final int[] from; // per key char: index in the parsed text
+    private final int[] to; // per key char: index in the caller's text
+    private final String target;
+    private final int length;
+
+    Remap(String parsed, String target) {
+      this.length = key(target).length(); // the same for both; decomposition can lengthen it
+      this.from = new int[length];
+      this.to = new int[length];
+      fold(parsed, from);
+      fold(target, to);
+      this.target = target;
+    }
+
+    int begin(int offset) {
+      int k = keyIndex(offset);
+      return k < length ? to[k] : target.length();
+    }
+
+    int end(int offset) {
+      int k = keyIndex(offset);
+      int e = k < length ? to[k] : target.length();
+      while (e > 0 && Character.isWhitespace(target.charAt(e - 1))) e--;
+      return e;
+    }
+
+    // First key char at or after offset in the parsed text
+    private int keyIndex(int offset) {
+      int lo = 0;
+      int hi = length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (from[mid] < offset) lo = mid + 1;
+        else hi = mid;
+      }
+      return lo;
+    }
+  }
+
+  /** Returns a private copy of the cached result, or null on miss/expiry. */
+  ParseResult get(String key) {
+    Segment seg = segmentFor(key);
+    ParseResult hit;
+    synchronized (seg) {
+      Entry e = seg.map.get(key);
+      if (e == null) {
+        hit = null;
+      } else if (System.nanoTime() - e.storedAt > ttlNanos) {
+        seg.map.remove(key);
+        expirations.increment();
+        hit = null;
+      } else {
+        hit = e.value;
+      }
+    }
+    if (hit == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return hit.copy();
+  }
+
+  void put(String key, ParseResult value) {
+    ParseResult stored = value.copy();
+    stored.trace = null; // traces describe one request, never a shared entry
+    Segment seg = segmentFor(key);
+    synchronized (seg) {
+      seg.map.put(key, new Entry(stored, System.nanoTime()));
+    }
+  }
+
+  /** Drops every entry, e.g. when the lexicon behind the cached results changed. */
+  void clear() {
+    for (Segment seg : segments) {
+      synchronized (seg) {
+        seg.map.clear();
+      }
+    }
+  }
+
+  Map<String, Long> stats() {
+    long size = 0;
+    for (Segment seg : segments) {
+      synchronized (seg) {
+        size += seg.map.size();
+      }
+    }
+    Map<String, Long> out = new LinkedHashMap<>();
+    out.put("size", size);
+    out.put("hits", hits.sum());
+    out.put("misses", misses.sum());
+    out.put("evictions", evictions.sum());
+    out.put("expirations", expirations.sum());
+    return out;
+  }
+
+  private Segment segmentFor(String key) {
+    int h = key.hashCode();
+    return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+  }
+
+  private record Entry(ParseResult value, long storedAt) {}
+
+  private final class Segment {
+    final LinkedHashMap<String, Entry> map;
+
+    Segment(int capacity, boolean accessOrder) {
+      this.map =
+          new LinkedHashMap<>(16, 0.75f, accessOrder) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+              if (size() <= capacity) return false;
+              evictions.increment();
+              return true;
+            }
+          };
+    }
+  }
+}
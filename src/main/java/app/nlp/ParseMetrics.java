@@ -0,0 +1,207 @@
+package app.nlp;
+
+import io.micrometer.core.instrument.*;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for {@link NlpService}. Meters are resolved once and cached here so the parse
+ * hot path never goes through registry lookups; those with a fixed set of tags (field sources,
+ * languages) are registered up front.
+ *
+ * <ul>
+ *   <li>{@code nlp.parse} timer, tagged by answering tier (fast, cache, store, corenlp, coalesced,
+ *       degraded)
+ *   <li>{@code nlp.coalesced} counter of requests that joined an identical in-flight parse
+ *   <li>{@code nlp.stage} timer per CoreNLP step (annotate.*, intent, amount, mentions, ...)
+ *   <li>{@code nlp.stage.runs} counter per CoreNLP annotator stage (base, ner, depparse)
+ *   <li>{@code nlp.field.source} counter of which rule produced each field
+ *   <li>{@code nlp.language} counter of CoreNLP runs by detected language and the pipeline that ran
+ *       (they differ when a language has no models loaded); cache and store hits not included
+ *   <li>{@code nlp.deadline.exceeded} counter of parses cut short by their budget, by the stage
+ *       that was abandoned
+ *   <li>{@code nlp.input.length} distribution of input length in chars (before truncation)
+ *   <li>{@code nlp.input.truncated} counter of inputs cut to the max input length
+ * </ul>
+ */
+final class ParseMetrics {
+
+  static final String ANNOTATE_BASE = "annotate.base";
+  static final String ANNOTATE_NER = "annotate.ner";
+  static final String ANNOTATE_DEPPARSE = "annotate.depparse";
+  static final String INTENT = "intent";
+  static final String AMOUNT = "amount";
+  static final String CLASSIFY = "classify";
+  static final String MENTIONS = "mentions";
+  static final String RECIPIENT = "recipient";
+  static final String CLEANUP = "cleanup";
+
+  /** Fields counted by {@code nlp.field.source}, with the rules that can produce each. */
+  enum Field {
+    INTENT("intent", "fast", "verb", "keyword", "classifier", "root"),
+    AMOUNT("amount", "fast", "regex", "ner"),
+    RECIPIENT("recipient", "fast", "preposition", "person", "nmod", "organization");
+
+    final String tag;
+    final List<String> sources; // plus "none" when the field stayed null
+
+    Field(String tag, String... sources) {
+      this.tag = tag;
+      this.sources = List.of(sources);
+    }
+  }
+
+  private static final List<String> LANGUAGES =
+      List.of(LanguageDetector.ENGLISH, LanguageDetector.SPANISH);
+
+  private final MeterRegistry registry;
+  private final Map<String, Timer> parseTimers = new ConcurrentHashMap<>();
+  private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+  private final Map<String, Counter> stageRuns = new ConcurrentHashMap<>();
+  private final Map<Field, Map<String, Counter>> fieldSources = new EnumMap<>(Field.class);
+  private final Map<String, Map<String, Counter>> languages = new HashMap<>(); // detected, pipeline
+  private final Map<String, Counter> deadlines = new ConcurrentHashMap<>();
+  private final DistributionSummary inputLength;
+  private final Counter coalesced;
+  private final Counter truncated;
+
+  ParseMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.inputLength =
+        DistributionSummary.builder("nlp.input.length")
+            .description("Length of parsed inputs")
+            .baseUnit("chars")
+            .publishPercentileHistogram()
+            .register(registry);
+    this.coalesced =
+        Counter.builder("nlp.coalesced")
+            .description("Requests answered by an identical parse already in flight")
+            .register(registry);
+    this.truncated =
+        Counter.builder("nlp.input.truncated")
+            .description("Inputs cut to the maximum input length")
+            .register(registry);
+    for (Field field : Field.values()) {
+      Map<String, Counter> bySource = new HashMap<>();
+      for (String source : field.sources) bySource.put(source, fieldSourceCounter(field, source));
+      bySource.put("none", fieldSourceCounter(field, "none"));
+      fieldSources.put(field, bySource);
+    }
+    for (String detected : LANGUAGES) {
+      Map<String, Counter> byPipeline = new HashMap<>();
+      for (String pipeline : LANGUAGES) {
+        byPipeline.put(
+            pipeline,
+            Counter.builder("nlp.language")
+                .description("CoreNLP runs by detected language and pipeline used")
+                .tag("language", detected)
+                .tag("pipeline", pipeline)
+                .register(registry));
+      }
+      languages.put(detected, byPipeline);
+    }
+  }
+
+  private Counter fieldSourceCounter(Field field, String source) {
+    return Counter.builder("nlp.field.source")
+        .description("Which rule or fallback branch produced each field")
+        .tag("field", field.tag)
+        .tag("source", source)
+        .register(registry);
+  }
+
+  MeterRegistry registry() {
+    return registry;
+  }
+
+  void inputLength(int chars) {
+    inputLength.record(chars);
+  }
+
+  void truncated() {
+    truncated.increment();
+  }
+
+  void coalesced() {
+    coalesced.increment();
+  }
+
+  long coalescedCount() {
+    return (long) coalesced.count();
+  }
+
+  void parse(String tier, long nanos) {
+    parseTimers
+        .computeIfAbsent(
+            tier,
+            t ->
+                Timer.builder("nlp.parse")
+                    .description("End-to-end parse latency by answering tier")
+                    .tag("tier", t)
+                    .publishPercentileHistogram()
+                    .register(registry))
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  void stage(String stage, long nanos) {
+    stageTimers
+        .computeIfAbsent(
+            stage,
+            s ->
+                Timer.builder("nlp.stage")
+                    .description("Time spent in each CoreNLP-tier parse step")
+                    .tag("stage", s)
+                    .publishPercentileHistogram()
+                    .register(registry))
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  void stageRun(String stage) {
+    stageRunCounter(stage).increment();
+  }
+
+  long stageRuns(String stage) {
+    return (long) stageRunCounter(stage).count();
+  }
+
+  private Counter stageRunCounter(String stage) {
+    return stageRuns.computeIfAbsent(
+        stage,
+        s ->
+            Counter.builder("nlp.stage.runs")
+                .description("How often each CoreNLP annotator stage ran")
+                .tag("stage", s)
+                .register(registry));
+  }
+
+  /**
+   * Counts the rule that produced {@code field}, one of {@link Field#sources} or "none" when it
+   * stayed null.
+   */
+  void fieldSource(Field field, String source) {
+    Counter counter = fieldSources.get(field).get(source);
+    if (counter == null) throw new IllegalArgumentException(field.tag + " source " + source);
+    counter.increment();
+  }
+
+  /** Counts a CoreNLP run; both are {@link LanguageDetector} codes. */
+  void language(String detected, String pipeline) {
+    languages.get(detected).get(pipeline).increment();
+  }
+
+  void deadlineExceeded(String stage) {
+    deadlines
+        .computeIfAbsent(
+            stage,
+            s ->
+                Counter.builder("nlp.deadline.exceeded")
+                    .description("Parses whose time budget ran out, by the stage abandoned")
+                    .tag("stage", s)
+                    .register(registry))
+        .increment();
+  }
+}
@@ -0,0 +1,23 @@
+package app.nlp;
+
+/** Thrown when admission control refuses a CoreNLP parse because the service is saturated. */
+public class ParseRejectedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public enum Reason {
+    QUEUE_FULL, // rejected immediately, nothing was waited for
+    WAIT_TIMEOUT // queued but no worker freed up within nlp.admission.max-wait
+  }
+
+  private final Reason reason;
+
+  public ParseRejectedException(Reason reason, String message) {
+    super(message);
+    this.reason = reason;
+  }
+
+  public Reason reason() {
+    return reason;
+  }
+}
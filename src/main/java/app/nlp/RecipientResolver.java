@@ -0,0 +1,64 @@
+package app.nlp;
+
+import app.config.NlpProperties;
+import app.nlp.ContactIndex.Contact;
+import app.nlp.ContactIndex.Match;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Service;
+
+/**
+ * Per-tenant {@link ContactIndex}es, so an extracted recipient can be turned into a contact id in
+ * the same request instead of a call to the contacts service. Tenants appear on their first upsert
+ * and are kept in memory only: whoever owns the contact lists pushes them (and their changes) here.
+ */
+@Service
+public class RecipientResolver {
+
+  private final Map<String, ContactIndex> tenants = new ConcurrentHashMap<>();
+  private final double minScore;
+  private final int maxCandidates;
+
+  public RecipientResolver(NlpProperties config) {
+    this.minScore = config.getContacts().getMinScore();
+    this.maxCandidates = config.getContacts().getMaxCandidates();
+  }
+
+  /** Adds or replaces contacts of a tenant; returns how many contacts it now has. */
+  public int upsert(String tenant, Collection<Contact> contacts) {
+    ContactIndex index = tenants.computeIfAbsent(tenant, t -> new ContactIndex());
+    index.upsert(contacts);
+    return index.size();
+  }
+
+  /** Removes one contact; false if the tenant or contact is unknown. */
+  public boolean remove(String tenant, String contactId) {
+    ContactIndex index = tenants.get(tenant);
+    return index != null && index.remove(contactId);
+  }
+
+  /**
+   * The contact {@code recipient} most likely means, or null when the tenant is unknown or no
+   * candidate reaches {@code nlp.contacts.min-score}.
+   */
+  public Match resolve(String tenant, String recipient) {
+    List<Match> found = candidates(tenant, recipient);
+    return found.isEmpty() || found.get(0).score() < minScore ? null : found.get(0);
+  }
+
+  /** Up to {@code nlp.contacts.max-candidates} candidates, best first, whatever their score. */
+  public List<Match> candidates(String tenant, String recipient) {
+    ContactIndex index = tenant == null || recipient == null ? null : tenants.get(tenant);
+    return index == null ? List.of() : index.resolve(recipient, maxCandidates);
+  }
+
+  /** Tenant count and, per tenant, its index sizes. */
+  public Map<String, Object> stats() {
+    Map<String, Object> out = new LinkedHashMap<>();
+    long contacts = 0;
+    for (ContactIndex index : tenants.values()) contacts += index.size();
+    out.put("tenants", tenants.size());
+    out.put("contacts", contacts);
+    return out;
+  }
+}
@@ -0,0 +1,657 @@
+package app.nlp;
+
+import app.nlp.NlpService.Evidence;
+import app.nlp.NlpService.ParseResult;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CoreNLP parse results persisted across restarts, keyed like {@link ParseCache}. Records are
+ * appended to segment files ({@code 00000001.seg}, ...) in one directory; an in-memory index maps
+ * the 64-bit hash of each key to the latest record, so a lookup is one hash probe and one
+ * positional read. Opening the directory rebuilds the index by scanning the segments, dropping a
+ * torn record left at the tail by a crash.
+ *
+ * <p>Every segment is stamped with a generation (lexicon, models, classifier) and segments of
+ * another generation are deleted on open or by {@link #reset}, so a result is never served by a
+ * configuration that would parse the text differently. When the active segment fills up, sealed
+ * segments that are mostly overwritten records are compacted into the active one, then the oldest
+ * segments are dropped until the directory is back under its size cap.
+ *
+ * <p>{@link #put} only encodes the result and queues it: one writer thread appends records and runs
+ * the roll and compaction they trigger, so no caller waits on disk IO. When the queue is full the
+ * write is dropped (counted as {@code dropped}). Writes are buffered by the OS and forced on
+ * segment roll and {@link #close}, which first drains the queue: this is a cache, and a record lost
+ * in a power cut or dropped under load is just parsed again. One store per directory at a time: a
+ * lock file keeps a second one out. {@link #suspend} closes every file for a while (a CRaC
+ * checkpoint refuses open files) and {@link #resume} reopens the directory as if at startup.
+ *
+ * <p>Callers may be interrupted (cancelled parse workers), and an interrupt during channel IO
+ * closes the channel for every thread. Store IO runs with the caller's interrupt status cleared and
+ * restored afterwards; a channel closed by an interrupt that arrives mid-IO is reopened and the
+ * operation retried.
+ */
+final class ResultStore implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(ResultStore.class);
+
+  private static final int MAGIC = 0x4e4c5053; // "NLPS"
+  private static final int VERSION = 1;
+  private static final String SUFFIX = ".seg";
+  private static final int RECORD_HEADER = 8; // payload length, CRC-32 of the payload
+  private static final double COMPACT_BELOW = 0.5; // live share under which a segment is rewritten
+  static final int DEFAULT_WRITE_QUEUE = 1024;
+
+  // Where the latest record of a key lives; length includes the record header
+  private record Location(long segment, long offset, int length) {}
+
+  private static final class Segment {
+    final long id;
+    final Path file;
+    volatile FileChannel channel; // replaced when an interrupt closed it
+    // Written by the writer under the store's lock, read unlocked by bytes() and stats()
+    volatile long size; // bytes written, header included
+    volatile long live; // bytes of records the index still points to
+
+    Segment(long id, Path file, FileChannel channel) {
+      this.id = id;
+      this.file = file;
+      this.channel = channel;
+    }
+  }
+
+  private final Path dir;
+  private FileChannel lockFile; // null while suspended or closed
+  private FileLock lock;
+  private final long maxBytes;
+  private final long segmentBytes;
+  private final Map<Long, Location> index = new ConcurrentHashMap<>();
+  private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+  private final Deque<Segment> sealed = new ArrayDeque<>(); // oldest first, guarded by this
+  private Segment active; // guarded by this
+  private String generation; // guarded by this
+  private volatile long epoch; // bumped by reset, suspend and resume: older queued writes drop
+  private final ThreadPoolExecutor writer; // one thread, bounded queue
+  private final LongAdder dropped;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder writes = new LongAdder();
+  private final LongAdder evictions = new LongAdder(); // records dropped with an old segment
+  private final LongAdder compactions = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+
+  ResultStore(Path dir, String generation, long maxBytes, long segmentBytes) throws IOException {
+    this(dir, generation, maxBytes, segmentBytes, DEFAULT_WRITE_QUEUE);
+  }
+
+  /**
+   * Opens (creating if needed) the store in {@code dir}, keeping the records of {@code generation}.
+   * {@code maxBytes} caps the directory; {@code segmentBytes} is the roll size; up to {@code
+   * writeQueue} writes wait for the writer thread.
+   */
+  ResultStore(Path dir, String generation, long maxBytes, long segmentBytes, int writeQueue)
+      throws IOException {
+    if (segmentBytes <= 0 || maxBytes < segmentBytes) {
+      throw new IllegalArgumentException(
+          "store size " + maxBytes + " must be at least one segment (" + segmentBytes + ")");
+    }
+    if (writeQueue < 1) {
+      throw new IllegalArgumentException("write queue must hold at least 1, got " + writeQueue);
+    }
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+    this.segmentBytes = segmentBytes;
+    this.generation = generation;
+    LongAdder drops = new LongAdder();
+    this.dropped = drops;
+    this.writer =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(writeQueue),
+            r -> {
+              Thread t = new Thread(r, "nlp-store-writer");
+              t.setDaemon(true);
+              return t;
+            },
+            (r, pool) -> {
+              if (r instanceof Future<?> marker) marker.cancel(false); // see flush()
+              else drops.increment();
+            });
+    long t0 = System.nanoTime();
+    synchronized (this) {
+      open();
+    }
+    log.info(
+        "Result store {}: {} records in {} segments, {} KB, opened in {} ms",
+        dir,
+        index.size(),
+        segments.size(),
+        bytes() >> 10,
+        (System.nanoTime() - t0) / 1_000_000);
+  }
+
+  /** The stored result for {@code key}, or null. Never throws: a bad read counts as a miss. */
+  ParseResult get(String key) {
+    Location loc = index.get(hash(key));
+    Segment seg = loc == null ? null : segments.get(loc.segment());
+    if (seg != null) {
+      boolean interrupted = Thread.interrupted(); // a set flag closes the channel on first use
+      try {
+        while (true) {
+          try {
+            ParseResult r = decode(read(seg, loc), key);
+            if (r != null) {
+              hits.increment();
+              return r;
+            }
+            break;
+          } catch (ClosedChannelException e) {
+            // An interrupt closed it (this reader's or another's), or the segment was compacted or
+            // evicted meanwhile, which unlists it first
+            interrupted |= Thread.interrupted();
+            if (!reopen(seg)) break;
+          }
+        }
+      } catch (IOException e) {
+        if (segments.get(loc.segment()) == seg) errors.increment();
+      } finally {
+        if (interrupted) Thread.currentThread().interrupt();
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Queues {@code r} to be appended as the latest result for {@code key}, encoded now so the caller
+   * may go on editing it. Never blocks: with the queue full the write is dropped.
+   */
+  void put(String key, ParseResult r) {
+    byte[] payload;
+    try {
+      payload = encode(key, r);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // in-memory stream
+    }
+    long queuedIn = epoch;
+    writer.execute(() -> write(key, payload, queuedIn));
+  }
+
+  // On the writer thread; IO failures are logged, not thrown
+  private synchronized void write(String key, byte[] payload, long queuedIn) {
+    if (lock == null || queuedIn != epoch) return; // suspended, or reset since it was queued
+    boolean interrupted = false;
+    try {
+      interrupted |= retrying(() -> append(key, payload));
+      writes.increment();
+      if (active.size >= segmentBytes) {
+        interrupted |= retrying(this::roll);
+        interrupted |= retrying(this::maintain);
+      }
+    } catch (IOException e) {
+      errors.increment();
+      log.warn("Result store {}: write failed: {}", dir, e.toString());
+    } finally {
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Waits until every write queued so far has been applied (or dropped). */
+  void flush() {
+    while (!writer.isShutdown()) {
+      Future<?> marker = writer.submit(() -> {});
+      try {
+        marker.get();
+        return;
+      } catch (CancellationException e) {
+        Thread.onSpinWait(); // queue full: try again once the writer made room
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Drops every record, and writes still queued, and starts over under {@code next}, e.g. after a
+   * lexicon reload.
+   */
+  synchronized void reset(String next) {
+    if (next.equals(generation)) return;
+    generation = next;
+    epoch++;
+    index.clear();
+    List<Segment> all = new ArrayList<>(sealed);
+    if (active != null) all.add(active);
+    sealed.clear();
+    active = null;
+    if (lock == null) return; // resume drops the other generation's files
+    try {
+      for (Segment s : all) delete(s);
+      roll();
+    } catch (IOException e) {
+      errors.increment();
+      log.warn("Result store {}: reset failed: {}", dir, e.toString());
+    }
+  }
+
+  long bytes() {
+    long total = 0;
+    for (Segment s : segments.values()) total += s.size;
+    return total;
+  }
+
+  Map<String, Long> stats() {
+    Map<String, Long> out = new LinkedHashMap<>();
+    out.put("records", (long) index.size());
+    out.put("segments", (long) segments.size());
+    out.put("bytes", bytes());
+    out.put("hits", hits.sum());
+    out.put("misses", misses.sum());
+    out.put("writes", writes.sum());
+    out.put("dropped", dropped.sum());
+    out.put("evictions", evictions.sum());
+    out.put("compactions", compactions.sum());
+    out.put("errors", errors.sum());
+    return out;
+  }
+
+  /**
+   * Applies queued writes, then closes every file, lock included, without giving up the store:
+   * lookups miss and writes are dropped until {@link #resume}.
+   */
+  void suspend() throws IOException {
+    flush();
+    closeFiles();
+  }
+
+  /**
+   * Takes the lock again and reloads the index from the directory, which may have changed in the
+   * meantime (a checkpoint restored on another host sees that host's files).
+   */
+  synchronized void resume() throws IOException {
+    if (lock == null) open();
+  }
+
+  /** Drains the write queue, stops the writer and closes every file. */
+  @Override
+  public void close() throws IOException {
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+        log.warn("Result store {}: gave up on {} queued writes", dir, writer.getQueue().size());
+        writer.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      writer.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    closeFiles();
+  }
+
+  private synchronized void closeFiles() throws IOException {
+    if (lock == null) return;
+    epoch++;
+    if (active != null) active.channel.force(false);
+    for (Segment s : segments.values()) s.channel.close();
+    segments.clear();
+    sealed.clear();
+    active = null;
+    index.clear();
+    lock.release();
+    lockFile.close();
+    lock = null;
+    lockFile = null;
+  }
+
+  // -------- Segments (callers hold the lock) --------
+
+  private interface Io {
+    void run() throws IOException;
+  }
+
+  // Runs io (which must be safe to repeat) until no interrupt closes a channel under it; returns
+  // whether it cleared an interrupt meanwhile
+  private boolean retrying(Io io) throws IOException {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        io.run();
+        return interrupted;
+      } catch (ClosedChannelException e) {
+        boolean again = Thread.interrupted(); // e.g. closed a new segment's channel, not listed yet
+        interrupted |= again;
+        for (Segment s : segments.values()) {
+          if (!s.channel.isOpen()) again |= reopen(s);
+        }
+        if (!again) throw e;
+      }
+    }
+  }
+
+  // Reopens seg's channel if an interrupt closed it; false if seg is no longer listed (compacted,
+  // evicted, store suspended or closed)
+  private synchronized boolean reopen(Segment seg) throws IOException {
+    if (segments.get(seg.id) != seg) return false;
+    if (!seg.channel.isOpen()) {
+      seg.channel = FileChannel.open(seg.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    return true;
+  }
+
+  private void open() throws IOException {
+    Files.createDirectories(dir);
+    FileChannel file =
+        FileChannel.open(dir.resolve("LOCK"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    FileLock held;
+    try {
+      held = file.tryLock();
+    } catch (OverlappingFileLockException e) {
+      held = null; // this JVM already has it open
+    }
+    if (held == null) {
+      file.close();
+      throw new IOException(dir + " is in use by another store");
+    }
+    lockFile = file;
+    lock = held;
+    epoch++;
+    load();
+    if (active == null) roll();
+  }
+
+  private void load() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+      for (Path f : ds) files.add(f);
+    }
+    files.sort(Comparator.naturalOrder()); // zero-padded ids: name order is write order
+    for (Path f : files) {
+      long id;
+      try {
+        id = Long.parseLong(f.getFileName().toString().replace(SUFFIX, ""));
+      } catch (NumberFormatException e) {
+        continue; // not ours
+      }
+      FileChannel ch = FileChannel.open(f, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      Segment seg = new Segment(id, f, ch);
+      long start = readHeader(ch);
+      if (start < 0) {
+        ch.close();
+        Files.delete(f);
+        log.info("Result store {}: dropped {} (other generation or format)", dir, f.getFileName());
+        continue;
+      }
+      segments.put(id, seg);
+      seg.size = scan(seg, start);
+      if (seg.size < ch.size()) {
+        log.warn("Result store {}: truncating torn tail of {}", dir, f.getFileName());
+        ch.truncate(seg.size);
+      }
+      if (active != null) sealed.addLast(active);
+      active = seg;
+    }
+    if (active != null && active.size >= segmentBytes) roll();
+  }
+
+  // Offset of the first record, or -1 if the segment belongs to another generation or format
+  private long readHeader(FileChannel ch) throws IOException {
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch.position(0)), 512));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) return -1;
+      int len = in.readUnsignedShort();
+      byte[] gen = in.readNBytes(len);
+      if (gen.length != len || !generation.equals(new String(gen, StandardCharsets.UTF_8))) {
+        return -1;
+      }
+      return 4 + 4 + 2 + len;
+    } catch (EOFException e) {
+      return -1;
+    }
+  }
+
+  // Indexes the records of seg from start; returns the end of the last intact record
+  private long scan(Segment seg, long start) throws IOException {
+    DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(seg.channel.position(start))));
+    long pos = start;
+    CRC32 crc = new CRC32();
+    while (true) {
+      byte[] payload;
+      int sum;
+      try {
+        int len = in.readInt();
+        sum = in.readInt();
+        if (len < 0 || len > seg.channel.size() - pos) break;
+        payload = in.readNBytes(len);
+        if (payload.length != len) break;
+      } catch (EOFException e) {
+        break;
+      }
+      crc.reset();
+      crc.update(payload);
+      if ((int) crc.getValue() != sum) break;
+      int length = RECORD_HEADER + payload.length;
+      index(keyOf(payload), new Location(seg.id, pos, length));
+      pos += length;
+    }
+    return pos;
+  }
+
+  private static byte[] read(Segment seg, Location loc) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(loc.length());
+    while (buf.hasRemaining()) {
+      if (seg.channel.read(buf, loc.offset() + buf.position()) < 0) throw new EOFException();
+    }
+    return buf.array();
+  }
+
+  private void append(String key, byte[] payload) throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+    buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+    long offset = active.size;
+    while (buf.hasRemaining()) active.channel.write(buf, offset + buf.position());
+    active.size += buf.limit();
+    index(key, new Location(active.id, offset, buf.limit()));
+  }
+
+  private void index(String key, Location loc) {
+    Location old = index.put(hash(key), loc);
+    if (old != null) {
+      Segment prev = segments.get(old.segment());
+      if (prev != null) prev.live -= old.length();
+    }
+    segments.get(loc.segment()).live += loc.length();
+  }
+
+  // IO first, state changes last, so a failed roll can simply be repeated
+  private void roll() throws IOException {
+    long id = active != null ? active.id + 1 : nextId();
+    Path file = dir.resolve(String.format(Locale.ROOT, "%08d%s", id, SUFFIX));
+    FileChannel ch =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    byte[] gen = generation.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer header = ByteBuffer.allocate(4 + 4 + 2 + gen.length);
+    header.putInt(MAGIC).putInt(VERSION).putShort((short) gen.length).put(gen).flip();
+    try {
+      while (header.hasRemaining()) ch.write(header);
+      if (active != null) active.channel.force(false);
+    } catch (IOException e) {
+      ch.close();
+      throw e;
+    }
+    if (active != null) sealed.addLast(active);
+    Segment seg = new Segment(id, file, ch);
+    seg.size = header.limit();
+    segments.put(id, seg);
+    active = seg;
+  }
+
+  private long nextId() {
+    long max = 0;
+    for (long id : segments.keySet()) max = Math.max(max, id);
+    return max + 1;
+  }
+
+  // Rewrites mostly-dead segments into the active one, then evicts the oldest past the cap
+  private void maintain() throws IOException {
+    for (Iterator<Segment> it = sealed.iterator(); it.hasNext(); ) {
+      Segment s = it.next();
+      if (s.live >= s.size * COMPACT_BELOW) continue;
+      for (Map.Entry<Long, Location> e : index.entrySet()) {
+        Location loc = e.getValue();
+        if (loc.segment() != s.id) continue;
+        byte[] record = read(s, loc);
+        byte[] payload = Arrays.copyOfRange(record, RECORD_HEADER, record.length);
+        append(keyOf(payload), payload);
+      }
+      it.remove();
+      delete(s);
+      compactions.increment();
+    }
+    while (bytes() > maxBytes && !sealed.isEmpty()) {
+      Segment oldest = sealed.removeFirst();
+      int dropped = 0;
+      for (Iterator<Location> it = index.values().iterator(); it.hasNext(); ) {
+        if (it.next().segment() == oldest.id) {
+          it.remove();
+          dropped++;
+        }
+      }
+      evictions.add(dropped);
+      delete(oldest);
+    }
+  }
+
+  private void delete(Segment s) throws IOException {
+    segments.remove(s.id);
+    s.channel.close();
+    Files.deleteIfExists(s.file);
+  }
+
+  // -------- Records --------
+
+  // 64-bit FNV-1a over the key's chars; the full key is stored and checked on read
+  private static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      h ^= key.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+
+  private static String keyOf(byte[] payload) throws IOException {
+    return readString(new DataInputStream(new ByteArrayInputStream(payload)));
+  }
+
+  private static byte[] encode(String key, ParseResult r) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    DataOutputStream out = new DataOutputStream(bytes);
+    writeString(out, key);
+    writeString(out, r.input);
+    writeString(out, r.intent);
+    writeString(out, r.amountText);
+    writeString(out, r.recipient);
+    writeString(out, r.currency);
+    writeString(out, r.amountExact != null ? r.amountExact.toPlainString() : null);
+    out.writeBoolean(r.amountValue != null);
+    if (r.amountValue != null) out.writeDouble(r.amountValue);
+    writeString(out, r.tier);
+    writeString(out, r.language);
+    writeEvidence(out, r.intentEvidence);
+    writeEvidence(out, r.amountEvidence);
+    writeEvidence(out, r.recipientEvidence);
+    return bytes.toByteArray();
+  }
+
+  // Null when the record holds another key (a hash collision)
+  private static ParseResult decode(byte[] record, String key) throws IOException {
+    DataInputStream in =
+        new DataInputStream(
+            new ByteArrayInputStream(record, RECORD_HEADER, record.length - RECORD_HEADER));
+    if (!key.equals(readString(in))) return null;
+    ParseResult r = new ParseResult();
+    r.input = readString(in);
+    r.intent = readString(in);
+    r.amountText = readString(in);
+    r.recipient = readString(in);
+    r.currency = readString(in);
+    String exact = readString(in);
+    r.amountExact = exact != null ? new BigDecimal(exact) : null;
+    r.amountValue = in.readBoolean() ? in.readDouble() : null;
+    r.tier = readString(in);
+    r.language = readString(in);
+    r.intentEvidence = readEvidence(in);
+    r.amountEvidence = readEvidence(in);
+    r.recipientEvidence = readEvidence(in);
+    return r;
+  }
+
+  private static void writeEvidence(DataOutputStream out, Evidence e) throws IOException {
+    out.writeBoolean(e != null);
+    if (e == null) return;
+    writeString(out, e.source());
+    out.writeDouble(e.confidence());
+    out.writeInt(e.begin());
+    out.writeInt(e.end());
+  }
+
+  private static Evidence readEvidence(DataInputStream in) throws IOException {
+    if (!in.readBoolean()) return null;
+    return new Evidence(readString(in), in.readDouble(), in.readInt(), in.readInt());
+  }
+
+  // Length-prefixed UTF-8 (writeUTF stops at 64 KB), -1 for null
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int len = in.readInt();
+    if (len < 0) return null;
+    byte[] b = in.readNBytes(len);
+    if (b.length != len) throw new EOFException();
+    return new String(b, StandardCharsets.UTF_8);
+  }
+}
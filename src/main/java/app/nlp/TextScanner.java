@@ -0,0 +1,357 @@
+package app.nlp;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Single-pass scanner for the lexical cues the parser needs: intent keywords, money mentions
+ * (currency symbol + number, number + currency word or symbol, where the number may be spelled out)
+ * and word/punctuation classes. Keywords and currencies come from a compiled {@link Lexicon} (the
+ * bundled one unless the caller passes another) and character classes are lookup tables, so a scan
+ * compiles no regex and allocates nothing beyond the caller's {@link Hits}.
+ */
+final class TextScanner {
+
+  private static final String[] APPROX_PREFIXES = {"about", "around", "approximately"};
+
+  // ---- character classes ----
+  // Letters that count as "inside a word" for keyword boundaries (same set containsWord used)
+  private static final boolean[] WORD = new boolean[256];
+  // java.util.regex \p{Punct}: ASCII punctuation
+  private static final boolean[] PUNCT = new boolean[128];
+  // Latin-1 accent folding + lower-casing for keyword lookups
+  private static final char[] FOLD = new char[256];
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      WORD[c] = true;
+      WORD[Character.toUpperCase(c)] = true;
+    }
+    for (char c : "ÁÉÍÓÚáéíóúÑñ".toCharArray()) WORD[c] = true;
+    for (char c : "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~".toCharArray()) PUNCT[c] = true;
+    for (int c = 0; c < 256; c++) FOLD[c] = Character.toLowerCase((char) c);
+    String accented = "áàäâéèëêíìïîóòöôúùüûÁÀÄÂÉÈËÊÍÌÏÎÓÒÖÔÚÙÜÛ";
+    String plain = "aaaaeeeeiiiioooouuuuaaaaeeeeiiiioooouuuu";
+    for (int i = 0; i < accented.length(); i++) FOLD[accented.charAt(i)] = plain.charAt(i);
+  }
+
+  static boolean isWordChar(char c) {
+    return c < 256 && WORD[c];
+  }
+
+  static boolean isPunct(char c) {
+    return c < 128 && PUNCT[c];
+  }
+
+  static boolean isAllPunct(CharSequence s) {
+    if (s.length() == 0) return false;
+    for (int i = 0; i < s.length(); i++) {
+      if (!isPunct(s.charAt(i))) return false;
+    }
+    return true;
+  }
+
+  /** Regex {@code \s}: space, \t, \n, \u000B, \f, \r. */
+  static boolean isSpace(char c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+  static char fold(char c) {
+    return c < 256 ? FOLD[c] : Character.toLowerCase(c);
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private TextScanner() {}
+
+  /** Scan output; reusable across calls via {@link #reset()}. Offsets are -1 when absent. */
+  static final class Hits {
+    String intent; // best-priority intent keyword (earliest in the lexicon file)
+    int intentRank;
+    int intentStart; // where the reported intent keyword is
+    int intentEnd;
+    long intentMask; // bit per canonical intent seen, to detect conflicting verbs
+    int moneyCount; // non-overlapping money mentions
+    Money symbolFirst = new Money(); // first "$15" style mention
+    Money wordFirst = new Money(); // first "15 dollars" style mention
+    int[] moneySpans; // [start, end) of every money mention in pairs, null unless asked for
+
+    Hits() {
+      reset();
+    }
+
+    void reset() {
+      intent = null;
+      intentRank = Integer.MAX_VALUE;
+      intentStart = intentEnd = -1;
+      intentMask = 0;
+      moneyCount = 0;
+      symbolFirst.clear();
+      wordFirst.clear();
+    }
+
+    int distinctIntents() {
+      return Long.bitCount(intentMask);
+    }
+
+    int moneyStart(int k) {
+      return moneySpans[2 * k];
+    }
+
+    int moneyEnd(int k) {
+      return moneySpans[2 * k + 1];
+    }
+
+    private void money(int start, int end) {
+      if (moneySpans != null) {
+        if (2 * moneyCount + 2 > moneySpans.length) {
+          moneySpans = Arrays.copyOf(moneySpans, 2 * moneySpans.length);
+        }
+        moneySpans[2 * moneyCount] = start;
+        moneySpans[2 * moneyCount + 1] = end;
+      }
+      moneyCount++;
+    }
+
+    /** The mention findMoneyInText reports: symbol-first wins, as it always has. */
+    Money money() {
+      if (symbolFirst.found()) return symbolFirst;
+      return wordFirst.found() ? wordFirst : null;
+    }
+  }
+
+  /** Offsets of one money mention inside the scanned text. */
+  static final class Money {
+    int start; // including an "about"/"~" prefix for symbol-first mentions
+    int end;
+    int numberStart;
+    int numberEnd;
+    int wordStart; // currency word or trailing symbol, -1 for symbol-first
+    int wordEnd;
+    String currency; // ISO code, null for unknown symbols
+
+    void clear() {
+      start = end = numberStart = numberEnd = wordStart = wordEnd = -1;
+      currency = null;
+    }
+
+    boolean found() {
+      return start >= 0;
+    }
+
+    /** Surface text in the historical format: "$15", "about $15", "20 euros", "1.234,50 €". */
+    String text(CharSequence in) {
+      if (wordStart < 0) return in.subSequence(start, end).toString().trim();
+      return in.subSequence(numberStart, numberEnd) + " " + in.subSequence(wordStart, wordEnd);
+    }
+
+    /** Exact value parsed straight from the number's chars, see {@link AmountParser}. */
+    BigDecimal amount(CharSequence in) {
+      return AmountParser.numberValue(in, numberStart, numberEnd);
+    }
+
+    private void set(int start, int numberStart, int numberEnd, int wordStart, int wordEnd) {
+      this.start = start;
+      this.end = wordStart < 0 ? numberEnd : wordEnd;
+      this.numberStart = numberStart;
+      this.numberEnd = numberEnd;
+      this.wordStart = wordStart;
+      this.wordEnd = wordEnd;
+    }
+  }
+
+  static Hits scan(CharSequence text) {
+    return scan(Lexicon.defaults(), text);
+  }
+
+  static Hits scan(Lexicon lex, CharSequence text) {
+    Hits hits = new Hits();
+    scan(lex, text, hits);
+    return hits;
+  }
+
+  /** Like {@link #scan(Lexicon, CharSequence)}, also recording where every money mention is. */
+  static Hits scanMoneySpans(Lexicon lex, CharSequence text) {
+    Hits hits = new Hits();
+    hits.moneySpans = new int[8];
+    scan(lex, text, hits);
+    return hits;
+  }
+
+  static void scan(CharSequence text, Hits out) {
+    scan(Lexicon.defaults(), text, out);
+  }
+
+  /** One left-to-right walk collecting intents and money mentions into {@code out}. */
+  static void scan(Lexicon lex, CharSequence text, Hits out) {
+    out.reset();
+    int n = text.length();
+    int i = 0;
+    while (i < n) {
+      char c = text.charAt(i);
+      if (isCurrencySymbol(c)) {
+        int numStart = skipSpaces(text, i + 1);
+        int numEnd = AmountParser.numberEnd(text, numStart);
+        if (numEnd > numStart) {
+          out.money(i, numEnd);
+          Money m = out.symbolFirst;
+          if (!m.found()) {
+            m.set(prefixStart(text, i), numStart, numEnd, -1, -1);
+            m.currency = lex.currencySymbol(text, i);
+          }
+          i = numEnd;
+          continue;
+        }
+      } else if (isDigit(c) && (i == 0 || !isDigit(text.charAt(i - 1)))) {
+        int numEnd = AmountParser.numberEnd(text, i);
+        int end = trailingCurrency(lex, text, i, numEnd, out);
+        i = end >= 0 ? end : numEnd;
+        continue;
+      } else if (isWordChar(c) && (i == 0 || !isWordChar(text.charAt(i - 1)))) {
+        // Spelled-out amount ("twenty dollars", "veinte euros")?
+        int numEnd = AmountParser.numberEnd(text, i);
+        if (numEnd > i) {
+          int end = trailingCurrency(lex, text, i, numEnd, out);
+          if (end >= 0) {
+            i = end;
+            continue;
+          }
+        }
+        int end = wordEnd(text, i);
+        int node = lex.intentNode(text, i, end);
+        if (node >= 0) {
+          out.intentMask |= lex.intentBit(node);
+          if (lex.intentRank(node) < out.intentRank) {
+            out.intentRank = lex.intentRank(node);
+            out.intent = lex.intentOf(node);
+            out.intentStart = i;
+            out.intentEnd = end;
+          }
+        }
+        i = end;
+        continue;
+      }
+      i++;
+    }
+  }
+
+  // "15 dollars", "veinte euros", "1.234,50 €": the currency follows the number
+  private static int trailingCurrency(
+      Lexicon lex, CharSequence text, int numStart, int numEnd, Hits out) {
+    Money first = out.wordFirst.found() ? null : out.wordFirst;
+    int end = currencyAfter(lex, text, numStart, numEnd, first);
+    if (end >= 0) out.money(numStart, end);
+    return end;
+  }
+
+  /** End of the currency word/symbol right after a number, or -1; fills {@code m} if given. */
+  private static int currencyAfter(
+      Lexicon lex, CharSequence text, int numStart, int numEnd, Money m) {
+    int ws = skipSpaces(text, numEnd);
+    int we;
+    String currency;
+    if (ws < text.length() && isCurrencySymbol(text.charAt(ws))) {
+      we = ws + 1;
+      currency = lex.currencySymbol(text, ws);
+    } else {
+      we = wordEnd(text, ws);
+      currency = lex.currencyWord(text, ws, we);
+      if (currency == null) return -1;
+    }
+    if (m != null) {
+      m.set(numStart, numStart, numEnd, ws, we);
+      m.currency = currency;
+    }
+    return we;
+  }
+
+  /**
+   * Parses a money expression at the start of {@code text} (after optional "about"/"~" and
+   * whitespace), e.g. the surface text of a CoreNLP MONEY mention. Returns null when it is not one.
+   */
+  static Money parseMoneyAt(CharSequence text) {
+    return parseMoneyAt(Lexicon.defaults(), text);
+  }
+
+  static Money parseMoneyAt(Lexicon lex, CharSequence text) {
+    int n = text.length();
+    int i = skipSpaces(text, 0);
+    int afterPrefix = skipApproxPrefix(text, i);
+    Money m = new Money();
+    m.clear();
+    if (afterPrefix < n && isCurrencySymbol(text.charAt(afterPrefix))) {
+      int numStart = skipSpaces(text, afterPrefix + 1);
+      int numEnd = AmountParser.numberEnd(text, numStart);
+      if (numEnd == numStart) return null;
+      m.set(i, numStart, numEnd, -1, -1);
+      m.currency = lex.currencySymbol(text, afterPrefix);
+      return m;
+    }
+    int numEnd = AmountParser.numberEnd(text, i);
+    if (numEnd == i || currencyAfter(lex, text, i, numEnd, m) < 0) return null;
+    return m;
+  }
+
+  static boolean isCurrencySymbol(char c) {
+    return Character.getType(c) == Character.CURRENCY_SYMBOL;
+  }
+
+  /** True if {@code needle} occurs in {@code haystack} as a whole word, ignoring case. */
+  static boolean containsWord(String haystack, String needle) {
+    int n = needle.length();
+    for (int i = 0; i + n <= haystack.length(); i++) {
+      if (haystack.regionMatches(true, i, needle, 0, n)
+          && (i == 0 || !isWordChar(haystack.charAt(i - 1)))
+          && (i + n == haystack.length() || !isWordChar(haystack.charAt(i + n)))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // ---- number and word boundaries ----
+
+  private static int skipSpaces(CharSequence text, int i) {
+    while (i < text.length() && isSpace(text.charAt(i))) i++;
+    return i;
+  }
+
+  private static int wordEnd(CharSequence text, int i) {
+    while (i < text.length() && isWordChar(text.charAt(i))) i++;
+    return i;
+  }
+
+  // "~$5", "about $5": the prefix belongs to the mention, as in the original regex
+  private static int prefixStart(CharSequence text, int symbol) {
+    if (symbol > 0 && text.charAt(symbol - 1) == '~') return symbol - 1;
+    int k = symbol;
+    while (k > 0 && isSpace(text.charAt(k - 1))) k--;
+    if (k == symbol) return symbol;
+    for (String p : APPROX_PREFIXES) {
+      int start = k - p.length();
+      if (start >= 0 && regionMatchesIgnoreCase(text, start, p)) return start;
+    }
+    return symbol;
+  }
+
+  private static int skipApproxPrefix(CharSequence text, int i) {
+    if (i < text.length() && text.charAt(i) == '~') return i + 1;
+    for (String p : APPROX_PREFIXES) {
+      int end = i + p.length();
+      if (regionMatchesIgnoreCase(text, i, p) && end < text.length() && isSpace(text.charAt(end))) {
+        return skipSpaces(text, end);
+      }
+    }
+    return i;
+  }
+
+  private static boolean regionMatchesIgnoreCase(CharSequence text, int from, String lower) {
+    if (from + lower.length() > text.length()) return false;
+    for (int i = 0; i < lower.length(); i++) {
+      if (Character.toLowerCase(text.charAt(from + i)) != lower.charAt(i)) return false;
+    }
+    return true;
+  }
+}
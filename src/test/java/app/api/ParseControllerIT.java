@@ -2,20 +2,26 @@ package app.api;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import app.nlp.NlpService;
+import java.time.Duration;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability // metrics export (Prometheus endpoint) is off in tests by default
 class ParseControllerIT {
 
   @LocalServerPort int port;
 
   @Autowired TestRestTemplate rest;
 
+  @Autowired NlpService nlp;
+
   static class ParseRequest {
     public String text;
 
@@ -32,6 +38,13 @@ class ParseControllerIT {
     public Double amountValue;
     public String currency;
     public String recipient;
+    public java.util.Map<String, Object> contact;
+    public String tier;
+    public String language;
+    public boolean degraded;
+    public boolean truncated;
+    public java.util.Map<String, java.util.Map<String, Object>> evidence;
+    public java.util.Map<String, Object> trace;
   }
 
   @Test
@@ -51,6 +64,8 @@ class ParseControllerIT {
     assertNotNull(body.amountValue, "amountValue not null");
     assertEquals(15.0, body.amountValue, 1e-6, "amountValue");
     assertEquals("gaby", body.recipient, "recipient");
+    assertEquals("fast", body.tier, "tier");
+    assertEquals("en", body.language, "language");
   }
 
   @Test
@@ -109,4 +124,229 @@ class ParseControllerIT {
     assertEquals(15.0, body.amountValue, 1e-6, "amountValue (ES)");
     assertEquals("gaby", body.recipient, "recipient (ES)");
   }
+
+  @Test
+  void parsesBatchInInputOrder() {
+    String url = "http://localhost:" + port + "/api/parse/batch";
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    HttpEntity<String[]> entity =
+        new HttpEntity<>(
+            new String[] {"enviar 20 euros a Juan.", "  ", "transfer €1,234.50 to @alex99"},
+            headers);
+
+    ResponseEntity<ParseResponse[]> response =
+        rest.postForEntity(url, entity, ParseResponse[].class);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    ParseResponse[] body = response.getBody();
+    assertNotNull(body, "response body");
+    assertEquals(3, body.length, "one result per text");
+    assertEquals("Juan", body[0].recipient, "first result");
+    assertNull(body[1].intent, "blank text");
+    assertEquals("@alex99", body[2].recipient, "third result");
+  }
+
+  @Test
+  void streamsNdjsonBatch() {
+    String url = "http://localhost:" + port + "/api/parse/batch";
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+    headers.setAccept(java.util.List.of(MediaType.parseMediaType("application/x-ndjson")));
+    HttpEntity<String> entity =
+        new HttpEntity<>("\"send $15 to gaby\"\n{\"text\":\"pagar 5 euros a Ana\"}\n", headers);
+
+    ResponseEntity<String> response = rest.postForEntity(url, entity, String.class);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    String[] lines = response.getBody().strip().split("\n");
+    assertEquals(2, lines.length, "one line per input");
+    assertTrue(lines[0].contains("\"recipient\":\"gaby\""), "first line");
+    assertTrue(lines[1].contains("\"recipient\":\"Ana\""), "second line");
+  }
+
+  @Test
+  void reportsMalformedNdjsonLinesInPlace() {
+    String url = "http://localhost:" + port + "/api/parse/batch";
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+    headers.setAccept(java.util.List.of(MediaType.parseMediaType("application/x-ndjson")));
+    HttpEntity<String> entity =
+        new HttpEntity<>("\"send $15 to gaby\"\n\n{not json\n\"send $20 to Ana\"\n", headers);
+
+    ResponseEntity<String> response = rest.postForEntity(url, entity, String.class);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    String[] lines = response.getBody().strip().split("\n");
+    assertEquals(3, lines.length, "one line per non-blank input");
+    assertTrue(lines[0].contains("\"recipient\":\"gaby\""), "first line");
+    assertTrue(lines[1].startsWith("{\"line\":3,\"error\":"), "error row: " + lines[1]);
+    assertTrue(lines[2].contains("\"recipient\":\"Ana\""), "line after the error");
+  }
+
+  @Test
+  void readinessTurnsUpOnceModelsAreLoaded() throws InterruptedException {
+    String url = "http://localhost:" + port + "/actuator/health/readiness";
+    long deadline = System.nanoTime() + java.util.concurrent.TimeUnit.MINUTES.toNanos(5);
+    ResponseEntity<String> response = rest.getForEntity(url, String.class);
+    while (response.getStatusCode() != HttpStatus.OK && System.nanoTime() < deadline) {
+      assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode(), "not ready yet");
+      Thread.sleep(250);
+      response = rest.getForEntity(url, String.class);
+    }
+    assertEquals(HttpStatus.OK, response.getStatusCode(), "ready");
+    assertTrue(response.getBody().contains("\"UP\""), "status UP");
+  }
+
+  @Test
+  void exposesParseMetricsForPrometheus() {
+    rest.postForEntity(
+        "http://localhost:" + port + "/api/parse",
+        new HttpEntity<>(new ParseRequest("send $15 to gaby"), jsonHeaders()),
+        ParseResponse.class);
+
+    ResponseEntity<String> response =
+        rest.getForEntity("http://localhost:" + port + "/actuator/prometheus", String.class);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertTrue(response.getBody().contains("nlp_parse_seconds_count{"), "parse timer");
+    assertTrue(response.getBody().contains("nlp_field_source_total{"), "field source counter");
+    assertTrue(response.getBody().contains("nlp_input_length_chars"), "input length");
+  }
+
+  @Test
+  void parsesMultipleInstructionsInOneCall() {
+    String text = "send $15 to gaby. Also pay 20 euros to Juan";
+    ResponseEntity<ParseResponse[]> response =
+        rest.postForEntity(
+            "http://localhost:" + port + "/api/parse/multi",
+            new HttpEntity<>(new ParseRequest(text), jsonHeaders()),
+            ParseResponse[].class);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    ParseResponse[] body = response.getBody();
+    assertEquals(2, body.length, "instructions");
+    assertEquals("gaby", body[0].recipient, "first");
+    assertEquals("pay", body[1].intent, "second intent");
+    assertEquals("EUR", body[1].currency, "second currency");
+    java.util.Map<String, Object> juan = body[1].evidence.get("recipient");
+    assertEquals(
+        "Juan",
+        text.substring((Integer) juan.get("begin"), (Integer) juan.get("end")),
+        "offsets into the whole text");
+  }
+
+  @Test
+  void returnsTraceOnlyWhenRequested() {
+    String url = "http://localhost:" + port + "/api/parse";
+    HttpEntity<ParseRequest> plain =
+        new HttpEntity<>(new ParseRequest("send $15 to gaby"), jsonHeaders());
+    assertNull(rest.postForEntity(url, plain, ParseResponse.class).getBody().trace, "off");
+
+    ParseResponse byParam =
+        rest.postForEntity(url + "?trace=true", plain, ParseResponse.class).getBody();
+    assertEquals(
+        java.util.Map.of("intent", "fast", "amount", "fast", "recipient", "fast"),
+        byParam.trace.get("sources"),
+        "sources");
+
+    HttpHeaders headers = jsonHeaders();
+    headers.set("X-Parse-Trace", "true");
+    HttpEntity<ParseRequest> traced =
+        new HttpEntity<>(new ParseRequest("send $15 to gaby"), headers);
+    assertNotNull(rest.postForEntity(url, traced, ParseResponse.class).getBody().trace, "header");
+  }
+
+  @Test
+  void parsesAsynchronously() {
+    String url = "http://localhost:" + port + "/api/parse/async?trace=true";
+    HttpEntity<ParseRequest> entity =
+        new HttpEntity<>(new ParseRequest("pay John 20 dollars"), jsonHeaders());
+    ResponseEntity<ParseResponse> response = rest.postForEntity(url, entity, ParseResponse.class);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("pay", response.getBody().intent, "intent");
+    assertEquals("John", response.getBody().recipient, "recipient");
+    assertNotNull(response.getBody().trace, "trace param honoured");
+  }
+
+  @Test
+  void honoursAPerRequestBudget() {
+    assertTrue(nlp.awaitReady(Duration.ofMinutes(5)), "models loaded");
+    String url = "http://localhost:" + port + "/api/parse";
+    HttpHeaders headers = jsonHeaders();
+    headers.set("X-Parse-Budget-Ms", "5000");
+    HttpEntity<ParseRequest> entity =
+        new HttpEntity<>(new ParseRequest("pay John 20 dollars"), headers);
+    ParseResponse body = rest.postForEntity(url, entity, ParseResponse.class).getBody();
+    assertEquals("John", body.recipient, "recipient");
+    assertFalse(body.degraded, "within budget");
+    HttpEntity<ParseRequest> plain =
+        new HttpEntity<>(new ParseRequest("pay John 20 dollars"), jsonHeaders());
+    assertEquals(
+        HttpStatus.BAD_REQUEST,
+        rest.postForEntity(url + "?budgetMs=0", plain, String.class).getStatusCode(),
+        "non-positive budget");
+  }
+
+  @Test
+  void resolvesTheRecipientAgainstTheTenantsContacts() {
+    String contacts = "http://localhost:" + port + "/api/tenants/acme/contacts";
+    String list =
+        "[{\"id\": \"c-1\", \"name\": \"Gabriela Ruiz\", \"handle\": \"@gaby\"},"
+            + " {\"id\": \"c-2\", \"name\": \"Juan Pérez\", \"aliases\": [\"juanito\"]}]";
+    ResponseEntity<String> put =
+        rest.exchange(
+            contacts, HttpMethod.PUT, new HttpEntity<>(list, jsonHeaders()), String.class);
+    assertEquals(HttpStatus.OK, put.getStatusCode(), put.getBody());
+
+    String url = "http://localhost:" + port + "/api/parse";
+    HttpHeaders headers = jsonHeaders();
+    headers.set("X-Tenant-Id", "acme");
+    ParseResponse body =
+        rest.postForEntity(
+                url,
+                new HttpEntity<>(new ParseRequest("send $15 to gaby"), headers),
+                ParseResponse.class)
+            .getBody();
+    assertEquals("gaby", body.recipient);
+    assertEquals("c-1", body.contact.get("contactId"));
+    assertEquals("handle", body.contact.get("match"));
+    assertEquals(1.0, ((Number) body.contact.get("score")).doubleValue(), 1e-9);
+
+    HttpEntity<ParseRequest> plain =
+        new HttpEntity<>(new ParseRequest("send $15 to gaby"), jsonHeaders());
+    assertNull(rest.postForEntity(url, plain, ParseResponse.class).getBody().contact, "no tenant");
+    assertNull(
+        rest.postForEntity(url + "?tenant=other", plain, ParseResponse.class).getBody().contact,
+        "unknown tenant");
+
+    ResponseEntity<String> candidates =
+        rest.getForEntity(contacts + "/resolve?recipient=Jaun Perez", String.class);
+    assertTrue(candidates.getBody().contains("\"c-2\""), candidates.getBody());
+    assertEquals(
+        HttpStatus.BAD_REQUEST,
+        rest.exchange(
+                contacts,
+                HttpMethod.PUT,
+                new HttpEntity<>("[{\"id\": \"c-3\"}]", jsonHeaders()),
+                String.class)
+            .getStatusCode(),
+        "neither name nor handle");
+    assertEquals(
+        HttpStatus.BAD_REQUEST,
+        rest.exchange(
+                contacts, HttpMethod.PUT, new HttpEntity<>("[null]", jsonHeaders()), String.class)
+            .getStatusCode(),
+        "null contact");
+    rest.delete(contacts + "/c-1");
+    assertNull(
+        rest.postForEntity(
+                url,
+                new HttpEntity<>(new ParseRequest("send $15 to gaby"), headers),
+                ParseResponse.class)
+            .getBody()
+            .contact,
+        "removed");
+  }
+
+  private static HttpHeaders jsonHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    return headers;
+  }
 }
@@ -0,0 +1,92 @@
+package app.cli;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import app.nlp.NlpService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BulkParseTest {
+
+  private static NlpService nlp;
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  @BeforeAll
+  static void load() {
+    nlp = new NlpService(options(Path.of("in.jsonl"), Path.of("out.jsonl")).properties());
+    nlp.start();
+  }
+
+  @AfterAll
+  static void close() {
+    nlp.close();
+  }
+
+  private static BulkParse.Options options(Path in, Path out) {
+    return BulkParse.Options.parse(
+        new String[] {
+          "--in", in.toString(), "--out", out.toString(), "--id", "id", "--chunk", "2"
+        });
+  }
+
+  @Test
+  void writesOneOrderedLinePerRecordAndResumesAfterACrash(@TempDir Path dir) throws Exception {
+    Path in = dir.resolve("in.jsonl");
+    Files.writeString(
+        in,
+        """
+        {"id": "a", "text": "send $15 to gaby"}
+        {"id": "b", "text": "pagar 20 euros a Juan"}
+
+        not json
+        "transfer €1,234.50 to @alex99"
+        {"id": "e", "text": "pay John 20 dollars"}
+        """);
+    Path out = dir.resolve("out.jsonl");
+    BulkParse.Summary summary = BulkParse.run(options(in, out), nlp);
+    assertEquals(5, summary.records(), "blank line skipped");
+    assertEquals(1, summary.errors(), "malformed line reported");
+    assertFalse(Files.exists(dir.resolve("out.jsonl.ckpt")), "checkpoint removed when done");
+    List<String> lines = Files.readAllLines(out);
+    assertEquals(5, lines.size(), "one output line per record");
+    JsonNode first = JSON.readTree(lines.get(0));
+    assertEquals("a", first.get("id").asText(), "id");
+    assertEquals(1500, first.get("amountMinorUnits").asLong(), "minor units");
+    assertTrue(JSON.readTree(lines.get(2)).has("error"), "error in place");
+    assertEquals("EUR", JSON.readTree(lines.get(3)).get("currency").asText(), "bare string");
+    assertEquals("John", JSON.readTree(lines.get(4)).get("recipient").asText(), "CoreNLP tier");
+
+    // Crash after the first chunk: two records checkpointed, a half-written line after them
+    String full = Files.readString(out);
+    String done = lines.get(0) + "\n" + lines.get(1) + "\n";
+    Files.writeString(out, done + "{\"record\":3,\"off");
+    long inputOffset = Files.readString(in).indexOf("\n\nnot json") + 1;
+    new BulkParse.Checkpoint(
+            inputOffset, 2, done.getBytes(StandardCharsets.UTF_8).length, Files.size(in))
+        .write(dir.resolve("out.jsonl.ckpt"));
+    BulkParse.Summary resumed = BulkParse.run(options(in, out), nlp);
+    assertEquals(3, resumed.records(), "only the rest");
+    assertEquals(inputOffset, resumed.resumedAt(), "resume offset");
+    assertEquals(full, Files.readString(out), "same output as an uninterrupted run");
+  }
+
+  @Test
+  void readsTheTextColumnOfACsv(@TempDir Path dir) throws Exception {
+    Path in = dir.resolve("in.csv");
+    Files.writeString(in, "id,text\n1,\"send $5 to Ana, thanks\"\n2,\"say \"\"hi\"\"\"\n");
+    Path out = dir.resolve("out.jsonl");
+    BulkParse.run(BulkParse.Options.parse(new String[] {"--in", "" + in, "--out", "" + out}), nlp);
+    List<String> lines = Files.readAllLines(out);
+    assertEquals(2, lines.size(), "header skipped");
+    assertEquals(5.0, JSON.readTree(lines.get(0)).get("amountValue").asDouble(), "quoted comma");
+    assertEquals(List.of("2", "say \"hi\""), BulkParse.Csv.split("2,\"say \"\"hi\"\"\""), "quotes");
+  }
+}
@@ -0,0 +1,42 @@
+package app.cli;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import app.nlp.IntentClassifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrainIntentClassifierTest {
+
+  @Test
+  void trainsSavesAndReportsHeldOutAccuracy(@TempDir Path dir) throws Exception {
+    Path corpus = dir.resolve("intents.jsonl");
+    try (var in = getClass().getResourceAsStream("/intents.jsonl")) {
+      Files.copy(in, corpus);
+    }
+    Files.writeString(
+        corpus, "{\"text\": \"hi there\", \"intent\": null}\n\n", StandardOpenOption.APPEND);
+    Path out = dir.resolve("intents.bin");
+    TrainIntentClassifier.Options o =
+        TrainIntentClassifier.Options.parse(
+            new String[] {"--corpus", corpus.toString(), "--out", out.toString()});
+
+    List<TrainIntentClassifier.Row> rows = TrainIntentClassifier.run(o);
+    assertEquals(1, rows.size(), "no CoreNLP rows without --compare");
+    TrainIntentClassifier.Row row = rows.get(0);
+    assertEquals(Math.round(TrainIntentClassifier.read(corpus).size() * 0.2), row.total());
+    assertTrue(row.accuracy() > 0.9, "held-out accuracy " + row.accuracy());
+    assertTrue(TrainIntentClassifier.report(rows).contains("classifier"));
+    assertTrue(IntentClassifier.load(out).labels().contains(IntentClassifier.NONE));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            TrainIntentClassifier.Options.parse(
+                new String[] {"--corpus", "c", "--out", "o", "--holdout", "1"}));
+  }
+}
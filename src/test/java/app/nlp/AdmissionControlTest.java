@@ -0,0 +1,63 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class AdmissionControlTest {
+
+  // Occupies the single permit until released
+  private static Thread holdPermit(
+      AdmissionControl gate, CountDownLatch held, CountDownLatch done) {
+    Thread t =
+        new Thread(
+            () ->
+                gate.run(
+                    () -> {
+                      held.countDown();
+                      try {
+                        return done.await(5, TimeUnit.SECONDS);
+                      } catch (InterruptedException e) {
+                        return false;
+                      }
+                    }));
+    t.start();
+    return t;
+  }
+
+  @Test
+  void rejectsImmediatelyWhenQueueIsFull() throws Exception {
+    AdmissionControl gate = new AdmissionControl(1, 0, TimeUnit.SECONDS.toNanos(1));
+    CountDownLatch held = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    Thread t = holdPermit(gate, held, done);
+    held.await();
+    assertEquals(1, gate.inFlight(), "in flight");
+
+    ParseRejectedException e =
+        assertThrows(ParseRejectedException.class, () -> gate.run(() -> "x"));
+    assertEquals(ParseRejectedException.Reason.QUEUE_FULL, e.reason(), "reason");
+    done.countDown();
+    t.join();
+    assertEquals("ok", gate.run(() -> "ok"), "admitted once free");
+    assertEquals(1L, gate.stats().get("rejected"), "rejected count");
+  }
+
+  @Test
+  void timesOutQueuedRequests() throws Exception {
+    AdmissionControl gate = new AdmissionControl(1, 4, TimeUnit.MILLISECONDS.toNanos(20));
+    CountDownLatch held = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    Thread t = holdPermit(gate, held, done);
+    held.await();
+
+    ParseRejectedException e =
+        assertThrows(ParseRejectedException.class, () -> gate.run(() -> "x"));
+    assertEquals(ParseRejectedException.Reason.WAIT_TIMEOUT, e.reason(), "reason");
+    assertEquals(0, gate.queueDepth(), "queue drained");
+    done.countDown();
+    t.join();
+  }
+}
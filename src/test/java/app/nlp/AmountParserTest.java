@@ -0,0 +1,48 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import org.junit.jupiter.api.Test;
+
+public class AmountParserTest {
+
+  private static void assertAmount(String expected, String currency, String text) {
+    AmountParser.Amount a = AmountParser.parse(text);
+    assertNotNull(a, text);
+    assertEquals(new BigDecimal(expected), a.value(), text);
+    assertEquals(currency, a.currency(), text);
+  }
+
+  @Test
+  void readsDecimalPointAndDecimalCommaNumbers() {
+    assertAmount("1234.50", "EUR", "€1,234.50");
+    assertAmount("1234.50", "EUR", "1.234,50 €");
+    assertAmount("20.5", "EUR", "20,5 euros");
+    assertAmount("12.50", "USD", "$12.50");
+    assertAmount("1500", "USD", "$1.500");
+    assertAmount("1000000", "MXN", "1.000.000 pesos");
+    assertAmount("0.500", "USD", "$0.500");
+  }
+
+  @Test
+  void readsSuffixesScaleWordsAndSpelledOutNumbers() {
+    assertAmount("5000", "USD", "$5k");
+    assertAmount("2500", "EUR", "2.5k euros");
+    assertAmount("2000", "MXN", "2 mil pesos");
+    assertAmount("20", "EUR", "veinte euros");
+    assertAmount("25", "USD", "twenty-five dollars");
+    assertAmount("35", "USD", "treinta y cinco dólares");
+    assertAmount("105", "USD", "one hundred and five dollars");
+    assertAmount("2500", "EUR", "dos mil quinientos euros");
+    assertNull(AmountParser.parse("one friend"), "number without currency");
+  }
+
+  @Test
+  void convertsToMinorUnits() {
+    assertEquals(123450L, AmountParser.parse("1.234,50 €").minorUnits(), "cents");
+    assertEquals(500L, AmountParser.parse("¥500").minorUnits(), "yen has no minor unit");
+    assertEquals(new BigDecimal("20.5"), AmountParser.parseNumber(" 20,5 "), "bare number");
+    assertNull(AmountParser.parseNumber("20 apples"), "whole text must be a number");
+  }
+}
@@ -0,0 +1,126 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import app.nlp.ContactIndex.Contact;
+import app.nlp.ContactIndex.Match;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class ContactIndexTest {
+
+  private static ContactIndex index() {
+    ContactIndex index = new ContactIndex();
+    index.upsert(
+        List.of(
+            new Contact("c1", "Gabriela Ruiz", "@gaby", List.of()),
+            new Contact("c2", "Alex Moreno", "@alex99", List.of()),
+            new Contact("c3", "María Muñoz", null, List.of("Mamá", "my mom")),
+            new Contact("c4", "John Smith", "@jsmith", List.of()),
+            new Contact("c5", "John Carter", null, List.of()),
+            new Contact("c6", "Jonathan Pryce", null, List.of())));
+    return index;
+  }
+
+  private static Match best(ContactIndex index, String recipient) {
+    List<Match> found = index.resolve(recipient, 5);
+    return found.isEmpty() ? null : found.get(0);
+  }
+
+  @Test
+  void matchesHandlesNamesAndAliasesExactly() {
+    ContactIndex index = index();
+    assertEquals(new Match("c2", "Alex Moreno", 1.0, "handle"), best(index, "@alex99"));
+    assertEquals(new Match("c1", "Gabriela Ruiz", 1.0, "handle"), best(index, "gaby"));
+    assertEquals(new Match("c3", "María Muñoz", 0.98, "alias"), best(index, "my mom"));
+    assertEquals("c3", best(index, "mama").contactId(), "accent folded");
+    assertEquals("c3", best(index, "MARIA MUNOZ").contactId(), "ñ folded");
+    assertEquals(new Match("c4", "John Smith", 0.98, "name"), best(index, "john  smith."));
+    assertEquals(new Match("c1", "Gabriela Ruiz", 0.85, "token"), best(index, "Ruiz"));
+    assertEquals(List.of(), index.resolve("", 5));
+  }
+
+  @Test
+  void lowersTheScoreWhenSeveralContactsMatchAlike() {
+    List<Match> johns = index().resolve("John", 5);
+    assertEquals(0.6, johns.get(0).score(), 1e-9, "ambiguous: " + johns);
+    assertEquals(0.85, johns.get(1).score(), 1e-9);
+    assertEquals(2, johns.size(), "jonathan is not john: " + johns);
+    assertEquals("c6", best(index(), "jon").contactId(), "but it starts with jon");
+  }
+
+  @Test
+  void completesPrefixesAndToleratesTypos() {
+    ContactIndex index = index();
+    Match prefix = best(index, "gabri");
+    assertEquals("c1", prefix.contactId());
+    assertEquals("prefix", prefix.match());
+    Match typo = best(index, "Jhon Smith");
+    assertEquals("c4", typo.contactId());
+    assertEquals("fuzzy", typo.match());
+    assertTrue(typo.score() >= 0.7, "one transposition: " + typo);
+    assertEquals("c2", best(index, "Alex Morneo").contactId());
+    assertNull(best(index, "xqzv"), "nothing alike");
+    assertEquals(1, ContactIndex.editDistance("jhon", "john"));
+    assertEquals(3, ContactIndex.editDistance("kitten", "sitting"));
+  }
+
+  @Test
+  void appliesUpdatesAndRemovalsIncrementally() {
+    ContactIndex index = index();
+    index.upsert(List.of(new Contact("c1", "Gabriela Ruiz", "@gabs", List.of())));
+    assertTrue(best(index, "@gaby").score() < 0.7, "old handle gone, only a look-alike left");
+    assertEquals("c1", best(index, "@gabs").contactId());
+    assertTrue(index.remove("c2"));
+    assertFalse(index.remove("c2"));
+    assertNull(best(index, "@alex99"));
+    assertEquals(5, index.size());
+    // Enough churn to trigger a rebuild of the tables
+    for (int round = 0; round < 3; round++) {
+      List<Contact> batch = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        batch.add(new Contact("x" + i, "Person " + round + " " + i, "@p" + i, List.of()));
+      }
+      index.upsert(batch);
+    }
+    assertTrue(index.stats().get("deadTerms") < index.stats().get("terms"), "" + index.stats());
+    assertEquals("x7", best(index, "@p7").contactId());
+    assertEquals(
+        "fuzzy", best(index, "person 0 7").match(), "replaced name gone, look-alikes left");
+    assertEquals("c3", best(index, "my mom").contactId());
+    assertThrows(IllegalArgumentException.class, () -> new Contact("c9", " ", null, null));
+  }
+
+  @Test
+  void resolvesAmongAHundredThousandContacts() {
+    String[] first = {"ana", "juan", "maria", "pedro", "lucia", "john", "sarah", "mike", "gaby"};
+    String[] last = {"ruiz", "smith", "garcia", "lee", "moreno", "chen", "diaz", "brown", "lopez"};
+    Random random = new Random(1);
+    List<Contact> batch = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      String name =
+          first[random.nextInt(first.length)]
+              + " "
+              + last[random.nextInt(last.length)]
+              + " "
+              + Integer.toString(i, 36);
+      batch.add(new Contact("c" + i, name, "@user" + i, List.of()));
+    }
+    ContactIndex index = new ContactIndex();
+    index.upsert(batch);
+    // Lookup speed is measured by ContactIndexBenchmark
+    Match handle = best(index, "@user4242");
+    assertEquals("c4242", handle.contactId());
+    assertEquals("handle", handle.match());
+    String name = batch.get(3422).name(); // ends in "2n2", 3422 in base 36
+    assertEquals("c3422", best(index, name).contactId(), name);
+    Match typo = best(index, "jhon smith 1a");
+    assertNotNull(typo, "a typo still finds look-alikes");
+    assertEquals("fuzzy", typo.match());
+    List<Match> prefix = index.resolve("gaby ru", 5);
+    assertEquals(5, prefix.size(), "many gaby ru* contacts");
+    for (Match m : prefix) assertTrue(m.name().startsWith("gaby ru"), m.name());
+  }
+}
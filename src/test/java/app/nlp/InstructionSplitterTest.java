@@ -0,0 +1,47 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class InstructionSplitterTest {
+
+  @Test
+  void splitsSentencesAndClausesWithTheirOwnAmounts() {
+    assertEquals(
+        List.of("pay John $20.", "Also send 15 euros to Ana"),
+        InstructionSplitter.split("pay John $20. Also send 15 euros to Ana"));
+    assertEquals(
+        List.of("pay John $20", "Ana €1,500.50", "Bob 5 dollars"),
+        InstructionSplitter.split("pay John $20, Ana €1,500.50 and Bob 5 dollars"));
+    assertEquals(
+        List.of("enviar 20 euros a Juan", "10 euros a María"),
+        InstructionSplitter.split("enviar 20 euros a Juan y 10 euros a María"));
+  }
+
+  @Test
+  void keepsConjunctionsWithoutASecondAmount() {
+    assertEquals(
+        List.of("send $5 to Tom and Jerry, please"),
+        InstructionSplitter.split("send $5 to Tom and Jerry, please"));
+    assertEquals(
+        List.of("send $5 to Mr. Smith"), InstructionSplitter.split("send $5 to Mr. Smith"));
+    assertTrue(InstructionSplitter.split("  ").isEmpty(), "blank");
+  }
+
+  @Test
+  void splitsAgainstTheNearestAmountOnEachSide() {
+    assertEquals(
+        List.of("hi, well, and so pay John $20", "Ana $5, and Bob too"),
+        InstructionSplitter.split("hi, well, and so pay John $20, Ana $5, and Bob too"));
+    StringBuilder text = new StringBuilder("pay");
+    List<String> expected = new ArrayList<>();
+    for (int i = 1; i <= 500; i++) {
+      text.append(i == 1 ? " " : ", ").append("Ana and Bob $").append(i);
+      expected.add((i == 1 ? "pay " : "") + "Ana and Bob $" + i);
+    }
+    assertEquals(expected, InstructionSplitter.split(text.toString()));
+  }
+}
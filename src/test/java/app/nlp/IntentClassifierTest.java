@@ -0,0 +1,69 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import app.nlp.IntentClassifier.Example;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IntentClassifierTest {
+
+  /** The synthetic EN/ES sample in src/test/resources/intents.jsonl. */
+  static List<Example> corpus() throws IOException {
+    ObjectMapper json = new ObjectMapper();
+    List<Example> examples = new ArrayList<>();
+    try (BufferedReader in =
+        new BufferedReader(
+            new InputStreamReader(
+                IntentClassifierTest.class.getResourceAsStream("/intents.jsonl"),
+                StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        JsonNode node = json.readTree(line);
+        examples.add(new Example(node.get("text").asText(), node.get("intent").asText()));
+      }
+    }
+    return examples;
+  }
+
+  @Test
+  void learnsPhrasingsTheLexiconDoesNotKnow() throws Exception {
+    IntentClassifier model = IntentClassifier.train(corpus(), 1 << 16, 20, 42);
+    assertEquals(List.of("none", "pay", "send", "transfer"), model.labels());
+    assertEquals("send", model.predict("shoot 20 bucks to mike").label());
+    assertEquals("pay", model.predict("settle up with Ana for $40").label());
+    assertEquals("transfer", model.predict("move 300 euros from checking into savings").label());
+    assertEquals("none", model.predict("what's my balance?").label());
+    assertEquals("send", model.predict("MÁNDALE 35 dólares a Pedro").label(), "folded");
+    IntentClassifier.Prediction p = model.predict("send $15 to gaby");
+    assertTrue(p.probability() > 0.9, "confident on a plain instruction: " + p);
+  }
+
+  @Test
+  void savesAndLoadsTheSameModel(@TempDir Path dir) throws Exception {
+    IntentClassifier model = IntentClassifier.train(corpus(), 1 << 12, 5, 7);
+    Path file = dir.resolve("intents.bin");
+    model.save(file);
+    IntentClassifier loaded = IntentClassifier.load(file);
+    assertEquals(model.labels(), loaded.labels());
+    for (String text : List.of("pay John 20 dollars", "hola", "wire $5 to @tom_b")) {
+      assertEquals(model.predict(text), loaded.predict(text), text);
+    }
+
+    Files.writeString(file, "not a model");
+    assertThrows(IOException.class, () -> IntentClassifier.load(file));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> IntentClassifier.train(List.of(new Example("pay", "pay")), 1000, 1, 1));
+  }
+}
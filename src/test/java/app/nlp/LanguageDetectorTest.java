@@ -0,0 +1,23 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class LanguageDetectorTest {
+
+  @Test
+  void routesPaymentUtterancesByLanguage() {
+    assertEquals("en", LanguageDetector.detect("send $15 to gaby please", "es"), "english");
+    assertEquals("es", LanguageDetector.detect("quiero enviar 20 euros a Juan", "en"), "spanish");
+    assertEquals("es", LanguageDetector.detect("¿Puedes transferir €50 a María?", "en"), "accents");
+    assertEquals("es", LanguageDetector.detect("manda 5 dólares a Ana", "en"), "folded cue");
+    assertEquals("en", LanguageDetector.detect("pay John 20 dollars for lunch", "es"), "english");
+  }
+
+  @Test
+  void fallsBackWithoutCues() {
+    assertEquals("es", LanguageDetector.detect("$15 @gaby", "es"), "no cues");
+    assertEquals("en", LanguageDetector.detect("", "en"), "empty");
+  }
+}
@@ -0,0 +1,55 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+public class LexiconTest {
+
+  @Test
+  void bundledLexiconCoversSpanishAndEnglishVerbs() {
+    Lexicon lex = Lexicon.defaults();
+    assertEquals("send", lex.intent("Mandar"), "mandar");
+    assertEquals("transfer", lex.intent("WIRE"), "wire");
+    assertEquals("pay", lex.intent("abonar"), "abonar");
+    assertNull(lex.intent("dollars"), "currency words are not intents");
+    assertEquals("send", TextScanner.scan(lex, "wire or mandar 5 €").intent, "file order wins");
+    assertEquals(2, TextScanner.scan(lex, "wire or mandar 5 €").distinctIntents(), "send + wire");
+  }
+
+  @Test
+  void compiledEntriesDriveIntentsAndMoneyMatching() throws Exception {
+    Lexicon lex =
+        Lexicon.parse(
+            new StringReader(
+                """
+                # custom
+                intent send = remit   # trailing comment
+                currency UYU = pesos uruguayos, uyu
+                symbol UYU = ₱
+                """),
+            "test");
+    TextScanner.Hits hits = TextScanner.scan(lex, "remit 300 uyu to Ana");
+    assertEquals("send", hits.intent, "custom intent");
+    assertEquals("UYU", hits.money().currency, "custom currency word");
+    assertNull(TextScanner.scan(lex, "pay 300 dollars").intent, "only the file's keywords");
+    assertEquals(0, TextScanner.scan(lex, "pay 300 dollars").moneyCount, "only its currencies");
+    assertEquals("UYU", AmountParser.parse(lex, "₱ 25").currency(), "custom symbol");
+    assertNull(AmountParser.parse(lex, "$25").currency(), "unknown symbol still an amount");
+    assertEquals(1, lex.stats().get("intentKeywords"), "stats");
+  }
+
+  @Test
+  void rejectsMalformedLinesWithTheirNumber() {
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> Lexicon.parse(new StringReader("intent send = send\nverb pay = pay\n"), "f"));
+    assertTrue(e.getMessage().startsWith("f:2:"), e.getMessage());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> Lexicon.parse(new StringReader("currency USD = dollar\n"), "f"),
+        "no intents");
+  }
+}
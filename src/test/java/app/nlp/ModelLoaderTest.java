@@ -0,0 +1,27 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+
+public class ModelLoaderTest {
+
+  @Test
+  void retriesALoadThatFailed() {
+    Properties props = new Properties();
+    CompletableFuture<ModelLoader.Loaded> failed = ModelLoader.load("no-such-annotator", props);
+    CompletionException e = assertThrows(CompletionException.class, failed::join);
+    assertInstanceOf(IllegalArgumentException.class, e.getCause());
+
+    CompletableFuture<ModelLoader.Loaded> again = ModelLoader.load("no-such-annotator", props);
+    assertNotSame(failed, again, "a failed load is not handed out again");
+    assertThrows(CompletionException.class, again::join);
+
+    CompletableFuture<ModelLoader.Loaded> tokenize = ModelLoader.load("tokenize", props);
+    assertEquals("tokenize", tokenize.join().name());
+    assertSame(tokenize, ModelLoader.load("tokenize", props), "a loaded annotator is shared");
+  }
+}
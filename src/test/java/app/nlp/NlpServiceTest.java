@@ -2,11 +2,45 @@ package app.nlp;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import app.config.NlpProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class NlpServiceTest {
 
-  private final NlpService service = new NlpService();
+  // Every service a test creates; each holds executors, a lexicon watcher and store lock files
+  private final List<NlpService> services = new ArrayList<>();
+  private final NlpService service = loaded(new NlpProperties());
+
+  @AfterEach
+  void closeServices() {
+    services.forEach(NlpService::close);
+  }
+
+  private NlpService closedAfterTest(NlpService nlp) {
+    services.add(nlp);
+    return nlp;
+  }
+
+  private NlpService loaded(NlpProperties props) {
+    NlpService nlp = closedAfterTest(new NlpService(props));
+    nlp.start();
+    assertTrue(nlp.awaitReady(Duration.ofMinutes(5)), "models loaded");
+    return nlp;
+  }
+
+  private NlpService coreNlpOnly() {
+    NlpProperties props = new NlpProperties();
+    props.getFastTier().setEnabled(false);
+    return loaded(props);
+  }
 
   @Test
   void parsesSimpleDollarAmountAndRecipient() {
@@ -81,4 +115,448 @@ public class NlpServiceTest {
     assertNull(rBlank.amountText, "amountText null for blank input");
     assertNull(rBlank.recipient, "recipient null for blank input");
   }
+
+  @Test
+  void fastTierAnswersUnambiguousUtterance() {
+    NlpService.ParseResult r = service.parse("pagar 20 euros a Juan");
+    assertEquals(NlpService.ParseResult.TIER_FAST, r.tier, "tier");
+    assertEquals("pay", r.intent, "intent");
+    assertEquals(20.0, r.amountValue, 1e-6, "amountValue");
+    assertEquals("EUR", r.currency, "currency");
+    assertEquals("Juan", r.recipient, "recipient");
+  }
+
+  @Test
+  void escalatesToCoreNlpWithoutPrepositionRecipient() {
+    NlpService.ParseResult r = service.parse("pay John 20 dollars");
+    assertEquals(NlpService.ParseResult.TIER_CORENLP, r.tier, "tier");
+    assertEquals("pay", r.intent, "intent");
+    assertEquals(20.0, r.amountValue, 1e-6, "amountValue");
+    assertEquals("USD", r.currency, "currency");
+    assertEquals("John", r.recipient, "recipient");
+  }
+
+  @Test
+  void coreNlpTierMatchesFastTier() {
+    NlpService.ParseResult r = coreNlpOnly().parse("send 20 dollars to John.");
+    assertEquals(NlpService.ParseResult.TIER_CORENLP, r.tier, "tier");
+    assertEquals("send", r.intent, "intent");
+    assertEquals(20.0, r.amountValue, 1e-6, "amountValue");
+    assertEquals("USD", r.currency, "currency");
+    assertEquals("John", r.recipient, "recipient");
+  }
+
+  @Test
+  void leanModelsParseTheSameCoreNlpCases() {
+    NlpProperties props = new NlpProperties();
+    props.getFastTier().setEnabled(false);
+    props.getModels().setProfile("lean");
+    NlpService lean = loaded(props);
+    NlpService full = coreNlpOnly();
+    for (String input :
+        List.of(
+            "could you please send  $15  to gaby?",
+            "send 20 dollars to John.",
+            "transfer €1,234.50 to @alex99",
+            "enviar 20 euros a Juan.",
+            "send $10 to the coffee shop.",
+            "pay John 20 dollars",
+            "John, 20 dollars, thanks")) {
+      NlpService.ParseResult l = lean.parse(input);
+      NlpService.ParseResult f = full.parse(input);
+      assertEquals(f.intent, l.intent, "intent: " + input);
+      assertEquals(f.amountExact, l.amountExact, "amount: " + input);
+      assertEquals(f.currency, l.currency, "currency: " + input);
+      assertEquals(f.recipient, l.recipient, "recipient: " + input);
+    }
+    assertTrue(lean.modelHeapMb() >= 0, "model memory measured");
+  }
+
+  @Test
+  void skipsNerAndDepparseWhenBaseStageDecides() {
+    NlpService nlp = coreNlpOnly();
+    nlp.parse("send $10 to the coffee shop.");
+    assertEquals(1L, nlp.stageHits().get("base"), "base stage always runs");
+    assertEquals(0L, nlp.stageHits().get("ner"), "ner not needed");
+    assertEquals(0L, nlp.stageHits().get("depparse"), "depparse not needed");
+  }
+
+  @Test
+  void cheaperRulesSettleFieldsBeforeNerAndDepparse() {
+    NlpService nlp = coreNlpOnly();
+    // NER finds PERSON "John Smith", but the preposition phrase already settled the recipient
+    NlpService.ParseResult r = nlp.parse("send 20 dollars to my friend John Smith", true);
+    assertEquals("my friend John Smith", r.recipient, "preposition over PERSON");
+    assertEquals("preposition", r.trace.sources.get("recipient"));
+    assertEquals(List.of("base"), r.trace.stages, "ner never ran");
+
+    // NER runs for the recipient, but its MONEY mention "Ana 20 dollars" does not replace the regex
+    r = nlp.parse("pay Ana 20 dollars and 5 cents", true);
+    assertEquals("20 dollars", r.amountText, "regex over MONEY");
+    assertEquals("regex", r.trace.sources.get("amount"));
+    assertTrue(r.trace.stages.contains("ner"), "stages " + r.trace.stages);
+
+    // The first intent verb wins over the dependency root ("send"), with less confidence
+    r = nlp.parse("After I pay the rent, send Ana $5", true);
+    assertEquals("pay", r.intent, "first verb over root");
+    assertEquals("verb", r.trace.sources.get("intent"));
+    assertFalse(r.trace.stages.contains("depparse"), "stages " + r.trace.stages);
+    assertTrue(r.intentEvidence.confidence() < 0.9, "conflicting verbs: " + r.intentEvidence);
+  }
+
+  @Test
+  void tracesRulesOnlyWhenAsked() {
+    NlpService nlp = coreNlpOnly();
+    assertNull(nlp.parse("pay John 20 dollars").trace, "no trace by default");
+    NlpService.ParseTrace trace = nlp.parse("pay John 20 dollars", true).trace;
+    assertNotNull(trace, "trace");
+    assertEquals("regex", trace.sources.get("amount"), "amount rule");
+    assertEquals("person", trace.sources.get("recipient"), "recipient rule");
+    assertEquals(java.util.List.of("base", "ner"), trace.stages, "stages run");
+    assertTrue(trace.dependencies.isEmpty(), "no graph without depparse");
+
+    trace = nlp.parse("John, 20 dollars, thanks", true).trace;
+    assertEquals("depparse", trace.stages.get(trace.stages.size() - 1), "depparse ran");
+    assertFalse(trace.dependencies.isEmpty(), "dependency edges");
+  }
+
+  @Test
+  void parsesSpanishDecimalCommaAndSpelledAmounts() {
+    NlpService.ParseResult r = service.parse("enviar 1.234,50 € a Juan");
+    assertEquals("EUR", r.currency, "currency");
+    assertEquals(new java.math.BigDecimal("1234.50"), r.amountExact, "amountExact");
+    assertEquals(1234.5, r.amountValue, 1e-9, "amountValue");
+    assertEquals(123450L, r.amountMinorUnits(), "minor units");
+    assertEquals(20.0, service.parse("send twenty dollars to Ana").amountValue, 1e-9, "spelled");
+  }
+
+  @Test
+  void parsesEveryInstructionInOrder() {
+    String text = "pay John $20. Also send 15 euros to Ana and Bob 5 dollars. Thanks!";
+    List<NlpService.ParseResult> rs =
+        service.parseInstructions(service.splitInstructions(text), false);
+    assertEquals(3, rs.size(), "instructions");
+    assertEquals("John", rs.get(0).recipient, "first recipient");
+    assertEquals("pay", rs.get(0).intent, "first intent");
+    assertEquals("EUR", rs.get(1).currency, "second currency");
+    assertEquals("Ana", rs.get(1).recipient, "second recipient");
+    assertEquals("send", rs.get(2).intent, "intent inherited");
+    assertEquals(5.0, rs.get(2).amountValue, 1e-6, "third amount");
+    assertEquals("Bob", rs.get(2).recipient, "third recipient");
+  }
+
+  @Test
+  void splitsOnlyTheTextThatFitsTheInputLimit() {
+    String text = "pay John $20, ".repeat(500);
+    List<String> instructions = service.splitInstructions(text);
+    assertTrue(instructions.size() < 100, instructions.size() + " instructions");
+    assertTrue(text.startsWith(String.join(", ", instructions)), "leading part kept");
+
+    List<NlpService.ParseResult> rs =
+        service.parseInstructions(text, instructions.subList(0, 2), false, Duration.ofNanos(1));
+    assertEquals(2, rs.size(), "instructions");
+    assertTrue(rs.get(1).truncated, "flagged");
+    assertTrue(rs.get(1).degraded, "the caller's budget applies");
+  }
+
+  @Test
+  void reloadsLexiconFileWithoutRestart(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("lexicon.txt");
+    Files.writeString(file, "intent send = send\nsymbol USD = $\n");
+    NlpProperties props = new NlpProperties();
+    props.getLexicon().setPath(file.toString());
+    props.getLexicon().setReloadInterval(Duration.ZERO);
+    NlpService nlp = loaded(props);
+    assertNull(nlp.parse("remit $5 to Ana").intent, "unknown verb");
+
+    Files.writeString(file, "intent send = send, remit\nsymbol USD = $\n");
+    assertTrue(nlp.reloadLexicon(), "reloaded");
+    NlpService.ParseResult r = nlp.parse("remit $5 to Ana");
+    assertEquals("send", r.intent, "new keyword, not the cached answer");
+    assertEquals(NlpService.ParseResult.TIER_FAST, r.tier, "fast tier uses it too");
+
+    Files.writeString(file, "intent send\n");
+    assertFalse(nlp.reloadLexicon(), "broken edit rejected");
+    assertEquals("send", nlp.parse("remit $5 to Ana").intent, "previous lexicon kept");
+    assertEquals(file.toString(), nlp.lexiconStats().get("source"), "stats");
+  }
+
+  @Test
+  void doesNotCacheAnswersOfALexiconReplacedMidParse(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("lexicon.txt");
+    Files.writeString(file, "intent send = send\nsymbol USD = $\n");
+    NlpProperties props = new NlpProperties();
+    props.getFastTier().setEnabled(false);
+    props.getLexicon().setPath(file.toString());
+    props.getLexicon().setReloadInterval(Duration.ZERO);
+    props.getLimits().setMaxInputLength(0);
+    props.getAdmission().setMaxInFlight(1);
+    props.getAdmission().setMaxWait(Duration.ofMinutes(1));
+    NlpService nlp = loaded(props);
+    // A long parse holds the only slot while the next one, already bound to the old lexicon, waits
+    String slow = "the quick brown fox jumps over the lazy dog near the river bank ".repeat(300);
+    var holder =
+        java.util.concurrent.CompletableFuture.runAsync(
+            () -> nlp.parse(slow, false, Duration.ofSeconds(3)));
+    awaitStat(nlp, "inFlight", 1);
+    var waiting =
+        java.util.concurrent.CompletableFuture.supplyAsync(
+            () -> nlp.parse("remit $5 to Ana", false, Duration.ofMinutes(1)));
+    awaitStat(nlp, "queueDepth", 1);
+
+    Files.writeString(file, "intent send = send, remit\nsymbol USD = $\n");
+    assertTrue(nlp.reloadLexicon(), "reloaded");
+    assertNull(waiting.get().intent, "parsed with the lexicon it started with");
+    holder.get();
+    assertEquals("send", nlp.parse("remit $5 to Ana").intent, "the old answer was not cached");
+    assertEquals(0L, nlp.cacheStats().get("hits"), "cache hits");
+  }
+
+  private static void awaitStat(NlpService nlp, String stat, long value) throws Exception {
+    long until = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+    while (nlp.admissionStats().get(stat) != value) {
+      assertTrue(System.nanoTime() < until, stat + " never reached " + value);
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  void reportsDetectedLanguageAndRoutesWithoutSpanishModels() {
+    NlpService nlp = coreNlpOnly();
+    NlpService.ParseResult es = nlp.parse("quiero enviar 20 euros a Juan");
+    assertEquals("es", es.language, "detected Spanish");
+    assertEquals("send", es.intent, "parsed by the default pipeline");
+    assertEquals("Juan", es.recipient, "recipient");
+    assertEquals("en", nlp.parse("pay John 20 dollars").language, "english");
+    assertEquals(List.of("en"), nlp.languageStats().get("ready"), "no Spanish models in tests");
+  }
+
+  @Test
+  void virtualThreadCallersGetTheSameAnswers() throws Exception {
+    NlpService nlp = coreNlpOnly();
+    NlpService.ParseResult[] onVirtual = new NlpService.ParseResult[1];
+    Thread.ofVirtual().start(() -> onVirtual[0] = nlp.parse("pay John 20 dollars")).join();
+    assertEquals("pay", onVirtual[0].intent, "intent");
+    assertEquals("John", onVirtual[0].recipient, "recipient");
+    NlpService.ParseResult async = nlp.parseAsync("send 20 dollars to John.", false).get();
+    assertEquals(NlpService.ParseResult.TIER_CORENLP, async.tier, "tier");
+    assertEquals("John", async.recipient, "recipient");
+  }
+
+  @Test
+  void coalescesConcurrentIdenticalParsesWithoutCache() throws Exception {
+    NlpProperties props = new NlpProperties();
+    props.getFastTier().setEnabled(false);
+    props.getCache().setCapacity(0);
+    props.getAdmission().setEnabled(false);
+    NlpService nlp = loaded(props);
+    int callers = 8;
+    java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+    List<java.util.concurrent.Future<NlpService.ParseResult>> results = new java.util.ArrayList<>();
+    try (var pool = java.util.concurrent.Executors.newFixedThreadPool(callers)) {
+      for (int i = 0; i < callers; i++) {
+        results.add(
+            pool.submit(
+                () -> {
+                  start.await();
+                  return nlp.parse("John, 20 dollars, thanks");
+                }));
+      }
+      start.countDown();
+      for (var f : results) assertEquals("John", f.get().recipient, "every caller answered");
+    }
+    long coalesced = nlp.singleFlightStats().get("coalesced");
+    assertTrue(coalesced > 0, "some callers joined the in-flight parse");
+    assertEquals(callers - coalesced, nlp.stageHits().get("base"), "one run per leader");
+    assertEquals(0L, nlp.singleFlightStats().get("inFlight"), "nothing kept afterwards");
+  }
+
+  @Test
+  void reportsEvidenceWithSpansIntoTheInput() {
+    String fast = "could you send $15 to gaby?";
+    NlpService.ParseResult r = service.parse(fast);
+    assertEquals("send", span(fast, r.intentEvidence), "fast intent span");
+    assertEquals("$15", span(fast, r.amountEvidence), "fast amount span");
+    assertEquals("gaby", span(fast, r.recipientEvidence), "fast recipient span");
+    assertEquals("fast", r.recipientEvidence.source(), "source");
+
+    String input = "pay John 20 dollars";
+    r = service.parse(input);
+    assertEquals("verb", r.intentEvidence.source(), "intent rule");
+    assertEquals("pay", span(input, r.intentEvidence), "intent span");
+    assertEquals("20 dollars", span(input, r.amountEvidence), "amount span");
+    assertEquals("person", r.recipientEvidence.source(), "recipient rule");
+    assertEquals("John", span(input, r.recipientEvidence), "recipient span");
+    assertTrue(
+        r.recipientEvidence.confidence() < r.intentEvidence.confidence(), "NER below a verb");
+
+    // Same cache key, different chars: the cached result points into this text
+    String spaced = "  Pay   JOHN 20  dollars";
+    NlpService.ParseResult hit = service.parse(spaced);
+    assertEquals("JOHN", span(spaced, hit.recipientEvidence), "remapped recipient");
+    assertEquals("20  dollars", span(spaced, hit.amountEvidence), "remapped amount");
+  }
+
+  @Test
+  void sharedResultsReadTheirValuesFromTheCallersText() {
+    NlpService nlp = coreNlpOnly();
+    String first = "pay José 20 dollars";
+    NlpService.ParseResult r = nlp.parse(first);
+    assertEquals("José", r.recipient);
+    assertEquals("20 dollars", r.amountText);
+
+    // Same cache key, other case and accents: no trace of the first caller's text
+    String second = "PAY jose 20 DOLLARS";
+    NlpService.ParseResult hit = nlp.parse(second);
+    assertEquals(1L, nlp.cacheStats().get("hits"), "served from the cache");
+    assertEquals("jose", hit.recipient);
+    assertEquals("20 DOLLARS", hit.amountText);
+    assertEquals(hit.recipient, span(second, hit.recipientEvidence));
+    assertEquals(hit.amountText, span(second, hit.amountEvidence));
+    assertEquals(20.0, hit.amountValue, 1e-9);
+    assertEquals("José", nlp.parse(first).recipient, "the cached entry is untouched");
+  }
+
+  private static String span(String input, NlpService.Evidence e) {
+    return input.substring(e.begin(), e.end());
+  }
+
+  @Test
+  void confidentClassifierSettlesIntentWithoutDepparse(@TempDir Path dir) throws Exception {
+    Path model = dir.resolve("intents.bin");
+    IntentClassifier.train(IntentClassifierTest.corpus(), 1 << 16, 20, 42).save(model);
+    NlpProperties props = new NlpProperties();
+    props.getFastTier().setEnabled(false);
+    props.getClassifier().setPath(model.toString());
+    NlpService nlp = loaded(props);
+    NlpService.ParseResult r = nlp.parse("shoot 20 bucks to mike", true);
+    assertEquals("send", r.intent);
+    assertEquals("classifier", r.trace.sources.get("intent"));
+    assertEquals("classifier", r.evidence().get("intent").source());
+    assertFalse(r.trace.stages.contains("depparse"), "stages " + r.trace.stages);
+    assertEquals(0L, nlp.stageHits().get("depparse"));
+
+    NlpService.ParseResult none = nlp.parse("what's my balance", true);
+    assertNull(none.intent);
+    assertTrue(none.trace.decisions.stream().anyMatch(d -> d.startsWith("classifier: none")));
+  }
+
+  @Test
+  void answersFromTheResultStoreAfterARestart(@TempDir Path dir) {
+    NlpProperties props = new NlpProperties();
+    props.getFastTier().setEnabled(false);
+    props.getStore().setPath(dir.toString());
+    NlpService first = loaded(props);
+    NlpService.ParseResult parsed = first.parse("send 20 dollars to John.");
+    first.close();
+
+    // Models load in the background; a stored answer needs none of them
+    props.getStartup().setAsyncLoad(true);
+    NlpService restarted = closedAfterTest(new NlpService(props));
+    restarted.start();
+    NlpService.ParseResult r = restarted.parse("SEND 20 dollars  to John.");
+    assertFalse(r.degraded, "stored answer, not the fast tier's guess");
+    assertEquals(parsed.intent, r.intent);
+    assertEquals(parsed.amountExact, r.amountExact);
+    assertEquals("John", r.recipient);
+    NlpService.Evidence e = r.evidence().get("recipient");
+    assertEquals("John", "SEND 20 dollars  to John.".substring(e.begin(), e.end()));
+    assertEquals(1L, restarted.storeStats().get("hits"));
+    assertEquals(0L, restarted.stageHits().get("base"), "CoreNLP never ran");
+  }
+
+  @Test
+  void fallsBackToCheapRulesWhenTheBudgetIsSpent() {
+    NlpService.ParseResult r = service.parse("pay John 20 dollars", true, Duration.ofNanos(1));
+    assertTrue(r.degraded, "degraded");
+    assertEquals("pay", r.intent, "keyword intent");
+    assertEquals(20.0, r.amountValue, 1e-6, "regex amount");
+    assertTrue(
+        r.trace.decisions.contains("deadline exceeded, base abandoned, fast-tier fallback"),
+        "trace");
+    NlpService.ParseResult full = service.parse("pay John 20 dollars");
+    assertFalse(full.degraded, "cut-short answers are not cached");
+    assertEquals("John", full.recipient, "recipient");
+  }
+
+  @Test
+  void interruptsAnnotationThatRunsPastTheBudget() {
+    NlpProperties props = new NlpProperties();
+    props.getFastTier().setEnabled(false);
+    props.getLimits().setMaxInputLength(0);
+    NlpService nlp = loaded(props);
+    // One unpunctuated sentence with no amount or recipient: every stage runs on every word
+    String input = "the quick brown fox jumps over the lazy dog near the river bank ".repeat(300);
+    long t0 = System.nanoTime();
+    NlpService.ParseResult r = nlp.parse(input, false, Duration.ofMillis(200));
+    long ms = (System.nanoTime() - t0) / 1_000_000;
+    assertTrue(r.degraded, "cut short");
+    assertTrue(ms < 2_000, "returned soon after the budget, took " + ms + " ms");
+    assertFalse(Thread.currentThread().isInterrupted(), "no interrupt leaks to the caller");
+    assertFalse(nlp.parse("pay John 20 dollars").degraded, "thread still usable");
+  }
+
+  @Test
+  void truncatesLongInputAtASentenceOrWordBoundary() {
+    assertEquals("send $5 to Ana.", NlpService.truncate("send $5 to Ana. And then more text", 24));
+    assertEquals("send $5 to", NlpService.truncate("send $5 to Ana and then more", 12));
+    assertEquals("abcdefgh", NlpService.truncate("abcdefghijkl", 8));
+    String fits = "pay Bob $3";
+    assertSame(fits, NlpService.truncate(fits, 1_000), "unchanged when it fits");
+    NlpService.ParseResult r = service.parse("send $15 to gaby. " + "blah ".repeat(300));
+    assertTrue(r.truncated, "flagged");
+    assertEquals("gaby", r.recipient, "parsed the kept part");
+  }
+
+  @Test
+  void servesDegradedFastTierAnswersUntilModelsAreReady() {
+    NlpProperties props = new NlpProperties();
+    props.getStartup().setWarmupSamples(java.util.List.of());
+    NlpService nlp = closedAfterTest(new NlpService(props));
+    // Not started: no models until start(), exactly as while they load
+    assertFalse(nlp.isReady(), "not ready before start");
+    NlpService.ParseResult r = nlp.parse("pay John 20 dollars");
+    assertTrue(r.degraded, "degraded while loading");
+    assertEquals(NlpService.ParseResult.TIER_FAST, r.tier, "tier");
+    assertEquals(20.0, r.amountValue, 1e-6, "amountValue from regex");
+    nlp.start();
+    assertTrue(nlp.awaitReady(Duration.ofMinutes(5)), "models loaded");
+    assertFalse(nlp.parse("pay John 20 dollars").degraded, "not degraded once ready");
+  }
+
+  @Test
+  void recordsStageTimersAndFieldSources() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    NlpProperties props = new NlpProperties();
+    props.getFastTier().setEnabled(false);
+    NlpService nlp = closedAfterTest(new NlpService(props, registry));
+    nlp.start();
+    assertTrue(nlp.awaitReady(Duration.ofMinutes(5)), "models loaded");
+
+    nlp.parse("pay John 20 dollars");
+    assertEquals(1L, registry.get("nlp.parse").tag("tier", "corenlp").timer().count(), "parse");
+    assertEquals(
+        1L, registry.get("nlp.stage").tag("stage", "annotate.ner").timer().count(), "ner timer");
+    assertEquals(
+        1.0,
+        registry
+            .get("nlp.field.source")
+            .tags("field", "recipient", "source", "person")
+            .counter()
+            .count(),
+        "recipient from PERSON mention");
+    nlp.parse("pay john 20 dollars"); // cache hit: no CoreNLP run
+    assertEquals(
+        1.0,
+        registry.get("nlp.language").tags("language", "en", "pipeline", "en").counter().count(),
+        "language counted per CoreNLP run");
+    assertEquals(
+        0.0,
+        registry
+            .get("nlp.field.source")
+            .tags("field", "intent", "source", "classifier")
+            .counter()
+            .count(),
+        "registered up front");
+  }
 }
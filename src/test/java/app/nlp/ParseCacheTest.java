@@ -0,0 +1,73 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ParseCacheTest {
+
+  private static NlpService.ParseResult result(String recipient) {
+    NlpService.ParseResult r = new NlpService.ParseResult();
+    r.intent = "send";
+    r.recipient = recipient;
+    r.trace = new NlpService.ParseTrace();
+    return r;
+  }
+
+  @Test
+  void foldsCaseWhitespaceAndAccents() {
+    assertEquals("enviar $10 a mama", ParseCache.key("  Enviar \t $10   a  Mamá "));
+  }
+
+  @Test
+  void remapsOffsetsOntoTextWithTheSameKey() {
+    String parsed = "send $10 to Mamá";
+    String caller = "  SEND  $10\tto mama ";
+    ParseCache.Remap remap = new ParseCache.Remap(parsed, caller);
+    int begin = parsed.indexOf("Mamá");
+    assertEquals("mama", caller.substring(remap.begin(begin), remap.end(parsed.length())));
+    assertEquals("$10", caller.substring(remap.begin(5), remap.end(8)), "end before a space run");
+  }
+
+  @Test
+  void returnsCopiesWithoutTrace() {
+    ParseCache cache = new ParseCache(16, Long.MAX_VALUE, ParseCache.Policy.LRU);
+    cache.put("k", result("gaby"));
+    NlpService.ParseResult hit = cache.get("k");
+    assertEquals("gaby", hit.recipient, "recipient");
+    assertNull(hit.trace, "trace dropped");
+    hit.recipient = "changed";
+    assertEquals("gaby", cache.get("k").recipient, "cached entry not shared");
+    assertEquals(2L, cache.stats().get("hits"), "hits");
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedAndExpiresByTtl() {
+    // capacity 16 -> one entry per segment; same-segment keys evict each other
+    ParseCache cache = new ParseCache(16, Long.MAX_VALUE, ParseCache.Policy.LRU);
+    for (int i = 0; i < 64; i++) cache.put("key-" + i, result("r" + i));
+    assertTrue(cache.stats().get("size") <= 16, "bounded size");
+    assertEquals(64L - cache.stats().get("size"), cache.stats().get("evictions"), "evictions");
+
+    ParseCache expired = new ParseCache(16, 0, ParseCache.Policy.FIFO);
+    expired.put("k", result("gaby"));
+    assertNull(expired.get("k"), "expired entry");
+    assertEquals(1L, expired.stats().get("expirations"), "expirations");
+  }
+
+  @Test
+  void neverHoldsMoreThanItsCapacity() {
+    for (int capacity : new int[] {1, 3, 17, 100}) {
+      ParseCache cache = new ParseCache(capacity, Long.MAX_VALUE, ParseCache.Policy.LRU);
+      for (int i = 0; i < 500; i++) cache.put("key-" + i, result("r" + i));
+      long size = cache.stats().get("size");
+      assertTrue(size <= capacity, "capacity " + capacity + " holds " + size);
+      assertTrue(size > capacity - 16, "capacity " + capacity + " holds only " + size);
+    }
+    ParseCache one = new ParseCache(1, Long.MAX_VALUE, ParseCache.Policy.FIFO);
+    one.put("a", result("a"));
+    one.put("b", result("b"));
+    assertNull(one.get("a"), "evicted by the second entry");
+    assertEquals("b", one.get("b").recipient);
+  }
+}
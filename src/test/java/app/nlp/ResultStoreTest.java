@@ -0,0 +1,183 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ResultStoreTest {
+
+  private static final long MB = 1 << 20;
+
+  private static NlpService.ParseResult result(String recipient) {
+    NlpService.ParseResult r = new NlpService.ParseResult();
+    r.intent = "send";
+    r.amountText = "$15";
+    r.setAmount(new BigDecimal("15.00"), "USD");
+    r.recipient = recipient;
+    r.tier = NlpService.ParseResult.TIER_CORENLP;
+    r.language = "en";
+    r.input = "send $15 to " + recipient;
+    r.intentEvidence = new NlpService.Evidence("verb", 0.95, 0, 4);
+    r.recipientEvidence = new NlpService.Evidence("preposition", 0.85, 12, r.input.length());
+    return r;
+  }
+
+  private static List<Path> segments(Path dir) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.filter(f -> f.toString().endsWith(".seg")).sorted().toList();
+    }
+  }
+
+  @Test
+  void keepsResultsAcrossReopenAndDropsATornTail(@TempDir Path dir) throws Exception {
+    try (ResultStore store = new ResultStore(dir, "g1", 8 * MB, MB)) {
+      store.put("send $15 to gaby", result("gaby"));
+      store.put("send $15 to ana", result("ana"));
+      assertNull(store.get("send $15 to nobody"));
+    }
+    Path segment = segments(dir).get(0);
+    long intact = Files.size(segment);
+    // A crash mid-write leaves part of a record behind
+    try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+      ch.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}));
+    }
+
+    try (ResultStore store = new ResultStore(dir, "g1", 8 * MB, MB)) {
+      assertEquals(intact, Files.size(segment), "torn record truncated");
+      NlpService.ParseResult r = store.get("send $15 to gaby");
+      assertEquals("gaby", r.recipient);
+      assertEquals(new BigDecimal("15.00"), r.amountExact);
+      assertEquals(15.0, r.amountValue, 1e-9);
+      assertEquals("USD", r.currency);
+      assertEquals("corenlp", r.tier);
+      assertEquals("send $15 to gaby", r.input);
+      assertEquals(new NlpService.Evidence("preposition", 0.85, 12, 16), r.recipientEvidence);
+      assertNull(r.amountEvidence);
+      assertEquals("ana", store.get("send $15 to ana").recipient);
+      assertEquals(2L, store.stats().get("records"));
+      assertThrows(IOException.class, () -> new ResultStore(dir, "g1", 8 * MB, MB), "locked");
+    }
+
+    try (ResultStore store = new ResultStore(dir, "g2", 8 * MB, MB)) {
+      assertNull(store.get("send $15 to gaby"), "other generation discarded");
+      assertEquals(0L, store.stats().get("records"));
+      store.put("k", result("x"));
+      store.reset("g3");
+      assertNull(store.get("k"), "reset drops everything");
+    }
+  }
+
+  @Test
+  void compactsOverwrittenSegmentsAndEvictsTheOldestPastTheCap(@TempDir Path dir) throws Exception {
+    long segment = 4096;
+    try (ResultStore store = new ResultStore(dir, "g", 4 * segment, segment)) {
+      // The same few keys over and over: sealed segments are mostly dead and get compacted
+      for (int i = 0; i < 200; i++) store.put("key " + (i % 5), result("r" + i));
+      store.flush();
+      assertTrue(store.stats().get("compactions") > 0, "compactions " + store.stats());
+      assertEquals(0L, store.stats().get("evictions"));
+      for (int k = 0; k < 5; k++) {
+        assertEquals("r" + (195 + k), store.get("key " + k).recipient, "latest value kept");
+      }
+
+      // Distinct keys: nothing to compact, so the oldest segments go
+      for (int i = 0; i < 400; i++) store.put("distinct " + i, result("d" + i));
+      store.flush();
+      assertTrue(store.bytes() <= 4 * segment, "bytes " + store.bytes());
+      assertTrue(store.stats().get("evictions") > 0, "evictions " + store.stats());
+      assertNull(store.get("distinct 0"), "oldest evicted");
+      assertEquals("d399", store.get("distinct 399").recipient, "newest kept");
+    }
+    try (ResultStore store = new ResultStore(dir, "g", 4 * segment, segment)) {
+      assertEquals("d399", store.get("distinct 399").recipient, "index rebuilt from segments");
+    }
+  }
+
+  @Test
+  void closesItsFilesWhileSuspendedAndReloadsOnResume(@TempDir Path dir) throws Exception {
+    try (ResultStore store = new ResultStore(dir, "g", 8 * MB, MB)) {
+      store.put("send $15 to gaby", result("gaby"));
+      store.suspend();
+      assertNull(store.get("send $15 to gaby"), "nothing served while suspended");
+      store.put("send $15 to ana", result("ana")); // dropped
+      // Files are free: another store can open the directory meanwhile
+      try (ResultStore other = new ResultStore(dir, "g", 8 * MB, MB)) {
+        other.put("send $15 to bob", result("bob"));
+      }
+      store.resume();
+      assertEquals("gaby", store.get("send $15 to gaby").recipient);
+      assertEquals("bob", store.get("send $15 to bob").recipient, "reloaded from disk");
+      assertNull(store.get("send $15 to ana"));
+      assertThrows(IOException.class, () -> new ResultStore(dir, "g", 8 * MB, MB), "locked again");
+    }
+  }
+
+  @Test
+  void keepsWorkingWhenCallersAreInterrupted(@TempDir Path dir) throws Exception {
+    long segment = 64 * 1024;
+    try (ResultStore store = new ResultStore(dir, "g", 4 * segment, segment)) {
+      store.put("send $15 to gaby", result("gaby"));
+      store.flush();
+      // A caller that is already interrupted is served and keeps its interrupt
+      Thread.currentThread().interrupt();
+      assertEquals("gaby", store.get("send $15 to gaby").recipient);
+      store.put("send $15 to ana", result("ana"));
+      assertTrue(Thread.interrupted(), "interrupt kept");
+
+      // Interrupts landing mid-read and mid-write, as from Future.cancel(true)
+      AtomicBoolean stop = new AtomicBoolean();
+      Thread worker =
+          new Thread(
+              () -> {
+                for (int i = 0; !stop.get(); i++) {
+                  store.put("key " + i % 500, result("r" + i));
+                  store.get("key " + i * 7 % 500);
+                  store.get("send $15 to gaby");
+                }
+              });
+      worker.start();
+      long end = System.nanoTime() + 300_000_000L;
+      while (System.nanoTime() < end) {
+        worker.interrupt();
+        LockSupport.parkNanos(20_000);
+      }
+      stop.set(true);
+      worker.join();
+      store.flush();
+
+      assertEquals(0L, store.stats().get("errors"), "" + store.stats());
+      assertEquals("gaby", store.get("send $15 to gaby").recipient);
+      assertEquals("ana", store.get("send $15 to ana").recipient);
+      store.put("send $15 to bob", result("bob"));
+      store.flush();
+      assertEquals("bob", store.get("send $15 to bob").recipient);
+    }
+  }
+
+  @Test
+  void dropsWritesInsteadOfBlockingWhileTheWriterIsBusy(@TempDir Path dir) throws Exception {
+    try (ResultStore store = new ResultStore(dir, "g", 8 * MB, MB, 1)) {
+      // Holding the store's lock stalls the writer on the first write, as a long compaction would
+      synchronized (store) {
+        for (int i = 0; i < 10; i++) store.put("key " + i, result("r" + i));
+      }
+      store.flush();
+      assertEquals(2L, store.stats().get("writes"), "the running write and the queued one");
+      assertEquals(8L, store.stats().get("dropped"), "" + store.stats());
+      assertEquals("r1", store.get("key 1").recipient);
+      assertNull(store.get("key 2"));
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package app.nlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import org.junit.jupiter.api.Test;
+
+public class TextScannerTest {
+
+  @Test
+  void findsIntentByPriorityAndCountsDistinctIntents() {
+    TextScanner.Hits hits = TextScanner.scan("Please PAY, then enviar it; paying is not a keyword");
+    assertEquals("send", hits.intent, "Spanish verbs take priority");
+    assertEquals(2, hits.distinctIntents(), "pay + send");
+    assertNull(TextScanner.scan("prepay the repayment").intent, "word boundaries");
+  }
+
+  @Test
+  void findsMoneyMentionsInOneWalk() {
+    String in = "send about $1,234.50 to Ana and 20 dólares to Luis";
+    TextScanner.Hits hits = TextScanner.scan(in);
+    assertEquals(2, hits.moneyCount, "two mentions");
+    assertEquals("about $1,234.50", hits.money().text(in), "symbol-first wins");
+    assertEquals(new BigDecimal("1234.50"), hits.money().amount(in), "value");
+    assertEquals("USD", hits.wordFirst.currency, "accented currency word");
+    assertEquals("20 dólares", hits.wordFirst.text(in), "word-first text");
+    assertEquals(1, TextScanner.scan("$20 dollars").moneyCount, "overlap counts once");
+    assertEquals(0, TextScanner.scan("feed 20 penguins").moneyCount, "trailing boundary");
+  }
+
+  @Test
+  void parsesAnchoredMoneyAndHelpers() {
+    TextScanner.Money m = TextScanner.parseMoneyAt(" ~€1234");
+    assertEquals("EUR", m.currency, "symbol");
+    assertEquals(
+        new BigDecimal("1234"), m.amount(" ~€1234"), "ungrouped digits are not cut at three");
+    assertEquals("GBP", TextScanner.parseMoneyAt("5 Libra").currency, "singular libra");
+    assertNull(TextScanner.parseMoneyAt("to Ana $5"), "anchored");
+    assertTrue(TextScanner.containsWord("Quiero\nPAGAR ya", "pagar"), "across lines");
+    assertTrue(TextScanner.isAllPunct("?!"), "punct");
+    assertFalse(TextScanner.isAllPunct("@a"), "not punct");
+  }
+}